@@ -0,0 +1,326 @@
+package jenkins.plugins.github.api;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.init.Terminator;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import jenkins.util.SystemProperties;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.authorization.AuthorizationProvider;
+import org.kohsuke.github.authorization.ImmutableAuthorizationProvider;
+
+/**
+ * Hands out shared {@link GitHub} clients keyed by API endpoint and credential, so that the jobs using the same
+ * credential against the same endpoint share one client whose endpoint has been validated once, instead of each
+ * building, validating and discarding its own.
+ * <p>
+ * Clients are leased: a client stays cached while it is leased and is evicted once it has not been leased for
+ * {@link #IDLE_TIMEOUT_SECONDS}. Credentials are identified by their id and a fingerprint of their secret, so that a
+ * lease for a rotated secret gets a new client, while the holders of leases on the previous client may keep using it
+ * until they close their lease.
+ * <pre>
+ * try (GitHubClientRegistry.Lease lease = GitHubClientRegistry.get().acquire(apiUri, credentialsId, token)) {
+ *     GHRepository repo = lease.getGitHub().getRepository("jenkinsci/github-api-plugin");
+ *     ...
+ * }
+ * </pre>
+ */
+public final class GitHubClientRegistry {
+
+    /**
+     * How long a client that is not leased is kept in the registry.
+     */
+    static final long IDLE_TIMEOUT_SECONDS =
+            SystemProperties.getLong(GitHubClientRegistry.class.getName() + ".idleTimeoutSeconds", 600L);
+
+    /**
+     * The controller-wide instance, created on first use.
+     */
+    private static GitHubClientRegistry instance;
+
+    private final GitHubConnectorFactory factory;
+
+    private final long idleTimeoutMillis;
+
+    private final LongSupplier clock;
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    private volatile long nextSweep;
+
+    /**
+     * Constructor.
+     *
+     * @param factory           the factory of the connectors of the clients.
+     * @param idleTimeoutMillis how long a client that is not leased is kept.
+     * @param clock             the current time in milliseconds.
+     */
+    GitHubClientRegistry(@NonNull GitHubConnectorFactory factory, long idleTimeoutMillis, @NonNull LongSupplier clock) {
+        this.factory = factory;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.clock = clock;
+        this.nextSweep = clock.getAsLong() + idleTimeoutMillis;
+    }
+
+    /**
+     * Returns the controller-wide instance.
+     *
+     * @return the controller-wide instance.
+     */
+    @NonNull
+    public static synchronized GitHubClientRegistry get() {
+        if (instance == null) {
+            instance = new GitHubClientRegistry(
+                    GitHubConnectorFactory.get(),
+                    TimeUnit.SECONDS.toMillis(IDLE_TIMEOUT_SECONDS),
+                    System::currentTimeMillis);
+        }
+        return instance;
+    }
+
+    /**
+     * Forgets the clients of the controller-wide instance.
+     */
+    @Terminator
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.entries.clear();
+            instance = null;
+        }
+    }
+
+    /**
+     * Leases an anonymous client.
+     *
+     * @param apiUrl the API endpoint, e.g. {@code https://api.github.com}.
+     * @return the lease, which must be closed once the client is no longer used.
+     * @throws IOException if the endpoint is not a valid GitHub API endpoint.
+     */
+    @NonNull
+    public Lease acquire(@NonNull String apiUrl) throws IOException {
+        return acquire(apiUrl, "", "", AuthorizationProvider.ANONYMOUS);
+    }
+
+    /**
+     * Leases a client authenticated with a personal access token or an OAuth token.
+     *
+     * @param apiUrl        the API endpoint, e.g. {@code https://api.github.com}.
+     * @param credentialsId the id of the credential holding the token.
+     * @param token         the token.
+     * @return the lease, which must be closed once the client is no longer used.
+     * @throws IOException if the endpoint is not a valid GitHub API endpoint.
+     */
+    @NonNull
+    public Lease acquire(@NonNull String apiUrl, @NonNull String credentialsId, @NonNull String token)
+            throws IOException {
+        return acquire(apiUrl, credentialsId, token, ImmutableAuthorizationProvider.fromOauthToken(token));
+    }
+
+    /**
+     * Leases a client authenticated by an {@link AuthorizationProvider}, e.g. that of a GitHub App installation.
+     *
+     * @param apiUrl        the API endpoint, e.g. {@code https://api.github.com}.
+     * @param credentialsId the id of the credential the authorization is derived from.
+     * @param secret        the secret material of the credential, e.g. the app id and private key, only a
+     *                      fingerprint of which is kept to notice when the credential is rotated.
+     * @param authorization the authorization of the client, used only if a new client is built.
+     * @return the lease, which must be closed once the client is no longer used.
+     * @throws IOException if the endpoint is not a valid GitHub API endpoint.
+     */
+    @NonNull
+    public Lease acquire(
+            @NonNull String apiUrl,
+            @NonNull String credentialsId,
+            @NonNull String secret,
+            @NonNull AuthorizationProvider authorization)
+            throws IOException {
+        long now = clock.getAsLong();
+        if (now >= nextSweep) {
+            nextSweep = now + Math.max(1, idleTimeoutMillis / 2);
+            evictIdle(now);
+        }
+        Key key = new Key(apiUrl, credentialsId);
+        String fingerprint = fingerprint(secret);
+        Entry entry = entries.compute(key, (k, current) -> {
+            // a different fingerprint means the credential was rotated, so the client of the old secret is replaced
+            Entry result = current != null && current.fingerprint.equals(fingerprint)
+                    ? current
+                    : new Entry(fingerprint, authorization);
+            result.leases.incrementAndGet();
+            return result;
+        });
+        Lease lease = new Lease(entry);
+        try {
+            entry.client(key.apiUrl, factory);
+        } catch (IOException | RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+        return lease;
+    }
+
+    /**
+     * Drops the clients of a credential, e.g. because it was updated or deleted. Leases on them stay usable until
+     * they are closed.
+     *
+     * @param credentialsId the id of the credential.
+     */
+    public void invalidate(@NonNull String credentialsId) {
+        entries.keySet().removeIf(key -> key.credentialsId.equals(credentialsId));
+    }
+
+    /**
+     * Returns the number of clients in the registry.
+     *
+     * @return the number of clients, leased or idle.
+     */
+    public int getClientCount() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of open leases on all clients in the registry.
+     *
+     * @return the number of open leases.
+     */
+    public int getLeaseCount() {
+        int total = 0;
+        for (Entry entry : entries.values()) {
+            total += entry.leases.get();
+        }
+        return total;
+    }
+
+    private void evictIdle(long now) {
+        for (Key key : entries.keySet()) {
+            // computeIfPresent() makes the check atomic with respect to a concurrent acquire of the same key
+            entries.computeIfPresent(
+                    key,
+                    (k, entry) -> entry.leases.get() == 0 && now - entry.released >= idleTimeoutMillis ? null : entry);
+        }
+    }
+
+    private void release(Entry entry) {
+        entry.released = clock.getAsLong();
+        entry.leases.decrementAndGet();
+    }
+
+    private static String fingerprint(String secret) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+            StringBuilder result = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                result.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    /**
+     * A lease on a shared client.
+     */
+    public final class Lease implements AutoCloseable {
+        private final Entry entry;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        /**
+         * Returns the shared client, which must not be used once this lease is closed.
+         *
+         * @return the shared client.
+         */
+        @NonNull
+        public GitHub getGitHub() {
+            GitHub client = entry.client;
+            if (client == null || closed.get()) {
+                throw new IllegalStateException("The lease is closed");
+            }
+            return client;
+        }
+
+        /**
+         * Returns the client to the registry.
+         */
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                release(entry);
+            }
+        }
+    }
+
+    private static final class Key {
+        private final String apiUrl;
+        private final String credentialsId;
+
+        Key(String apiUrl, String credentialsId) {
+            this.apiUrl = apiUrl.endsWith("/") ? apiUrl.substring(0, apiUrl.length() - 1) : apiUrl;
+            this.credentialsId = credentialsId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return apiUrl.equals(key.apiUrl) && credentialsId.equals(key.credentialsId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(apiUrl, credentialsId);
+        }
+    }
+
+    private static final class Entry {
+        private final String fingerprint;
+        private final AuthorizationProvider authorization;
+        private final AtomicInteger leases = new AtomicInteger();
+        private volatile long released;
+
+        @CheckForNull
+        private volatile GitHub client;
+
+        Entry(String fingerprint, AuthorizationProvider authorization) {
+            this.fingerprint = fingerprint;
+            this.authorization = authorization;
+        }
+
+        /**
+         * Builds and validates the client on first use, outside of the registry map so that leases of other keys are
+         * not held up by the validation request.
+         */
+        synchronized GitHub client(String apiUrl, GitHubConnectorFactory factory) throws IOException {
+            if (client == null) {
+                GitHub github = new GitHubBuilder()
+                        .withEndpoint(apiUrl)
+                        .withConnector(factory.connector())
+                        .withAuthorizationProvider(authorization)
+                        .build();
+                github.checkApiUrlValidity();
+                client = github;
+            }
+            return client;
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package jenkins.plugins.github.api;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.init.Terminator;
+import io.jenkins.plugins.okhttp.api.JenkinsOkHttpClient;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.extras.okhttp3.OkHttpGitHubConnector;
+
+/**
+ * Hands out {@link GitHubConnector} instances backed by a single shared {@link OkHttpClient}, so that every plugin
+ * talking to GitHub through this plugin shares one bounded connection pool, HTTP/2 multiplexing and one size-limited
+ * on-disk response cache under {@code $JENKINS_HOME/caches/github-api}.
+ * <p>
+ * Use {@link #get()} to obtain the controller-wide instance:
+ * <pre>
+ * GitHub github = new GitHubBuilder()
+ *         .withEndpoint(apiUri)
+ *         .withConnector(GitHubConnectorFactory.get().connector())
+ *         .build();
+ * </pre>
+ */
+public final class GitHubConnectorFactory {
+
+    private static final Logger LOGGER = Logger.getLogger(GitHubConnectorFactory.class.getName());
+
+    /**
+     * The maximum number of idle connections kept in the shared pool.
+     */
+    static final int MAX_IDLE_CONNECTIONS =
+            SystemProperties.getInteger(GitHubConnectorFactory.class.getName() + ".maxIdleConnections", 16);
+
+    /**
+     * How long an idle connection is kept in the shared pool.
+     */
+    static final long KEEP_ALIVE_SECONDS =
+            SystemProperties.getLong(GitHubConnectorFactory.class.getName() + ".keepAliveSeconds", 300L);
+
+    /**
+     * The maximum size of the on-disk response cache in bytes, {@code 0} to disable the cache.
+     */
+    static final long CACHE_SIZE =
+            SystemProperties.getLong(GitHubConnectorFactory.class.getName() + ".cacheSize", 50L * 1024 * 1024);
+
+    /**
+     * The controller-wide instance, created on first use.
+     */
+    private static GitHubConnectorFactory instance;
+
+    private final OkHttpClient client;
+
+    @CheckForNull
+    private final Cache cache;
+
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+
+    private final GitHubConnectorMetrics metrics = new GitHubConnectorMetrics();
+
+    private final GitHubRequestCoalescer coalescer = new GitHubRequestCoalescer();
+
+    private final GitHubPagePrefetcher prefetcher = new GitHubPagePrefetcher(coalescer);
+
+    /**
+     * The connector of {@link #connector()}, shared so that identical requests of different clients are coalesced.
+     */
+    private final GitHubConnector connector;
+
+    /**
+     * The connectors of {@link #connector(int)} keyed by the maximum age of the cached responses.
+     */
+    private final Map<Integer, GitHubConnector> connectors = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param builder            the builder to derive the shared client from.
+     * @param cacheDir           the directory of the response cache or {@code null} to disable caching.
+     * @param cacheSize          the maximum size of the response cache in bytes.
+     * @param maxIdleConnections the maximum number of idle connections to keep in the pool.
+     * @param keepAliveSeconds   how long to keep idle connections in the pool.
+     */
+    GitHubConnectorFactory(
+            @NonNull OkHttpClient.Builder builder,
+            @CheckForNull File cacheDir,
+            long cacheSize,
+            int maxIdleConnections,
+            long keepAliveSeconds) {
+        this.cache = cacheDir != null && cacheSize > 0 ? new Cache(cacheDir, cacheSize) : null;
+        this.client = builder.connectionPool(
+                        new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS))
+                .cache(cache)
+                .addInterceptor(new StatsInterceptor())
+                .eventListener(new StatsEventListener())
+                .build();
+        this.connector = metrics.decorate(new OkHttpGitHubConnector(client));
+    }
+
+    /**
+     * Returns the controller-wide instance.
+     *
+     * @return the controller-wide instance.
+     */
+    @NonNull
+    public static synchronized GitHubConnectorFactory get() {
+        if (instance == null) {
+            instance = new GitHubConnectorFactory(
+                    JenkinsOkHttpClient.newClientBuilder(new OkHttpClient()),
+                    new File(Jenkins.get().getRootDir(), "caches/github-api"),
+                    CACHE_SIZE,
+                    MAX_IDLE_CONNECTIONS,
+                    KEEP_ALIVE_SECONDS);
+        }
+        return instance;
+    }
+
+    /**
+     * Releases the pooled connections and closes the response cache of the controller-wide instance.
+     */
+    @Terminator
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    /**
+     * Returns a connector that shares the pooled connections and the response cache of this factory and always
+     * revalidates cached responses with the server. Its identical concurrent {@code GET} requests are coalesced with
+     * those of the other connectors, see {@link #getCoalescer()}, and the lists its clients walk through
+     * {@link #getPrefetcher()} are fetched ahead. The requests it sends, prefetches included, are recorded in
+     * {@link #getMetrics()}.
+     *
+     * @return the connector.
+     */
+    @NonNull
+    public GitHubConnector connector() {
+        return prefetcher.decorate(connector);
+    }
+
+    /**
+     * Returns a connector that shares the pooled connections and the response cache of this factory. Its identical
+     * concurrent {@code GET} requests are coalesced with those of the other connectors with the same maximum age, see
+     * {@link #getCoalescer()}, and the lists its clients walk through {@link #getPrefetcher()} are fetched ahead. The
+     * requests it sends, prefetches included, are recorded in {@link #getMetrics()}.
+     *
+     * @param cacheMaxAge the number of seconds a cached response may be used without revalidation.
+     * @return the connector.
+     */
+    @NonNull
+    public GitHubConnector connector(int cacheMaxAge) {
+        return prefetcher.decorate(connectors.computeIfAbsent(
+                cacheMaxAge, age -> metrics.decorate(new OkHttpGitHubConnector(client, age))));
+    }
+
+    /**
+     * Returns the shared client, callers needing a customized client should use {@link OkHttpClient#newBuilder()}
+     * which keeps sharing the connection pool and the response cache.
+     *
+     * @return the shared client.
+     */
+    @NonNull
+    public OkHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Returns the statistics of each endpoint that has been contacted, keyed by the scheme, host and port of the
+     * endpoint.
+     *
+     * @return the statistics of each endpoint.
+     */
+    @NonNull
+    public Map<String, EndpointStats> getStats() {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    /**
+     * Returns the per route metrics of the requests sent through the connectors of this factory.
+     *
+     * @return the metrics.
+     */
+    @NonNull
+    public GitHubConnectorMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the coalescer of the identical concurrent requests sent through the connectors of this factory.
+     *
+     * @return the coalescer.
+     */
+    @NonNull
+    public GitHubRequestCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    /**
+     * Returns the prefetcher of the pages of the lists walked by the clients of the connectors of this factory.
+     *
+     * @return the prefetcher.
+     */
+    @NonNull
+    public GitHubPagePrefetcher getPrefetcher() {
+        return prefetcher;
+    }
+
+    /**
+     * Returns the number of open connections in the shared pool.
+     *
+     * @return the number of open connections.
+     */
+    public int getConnectionCount() {
+        return client.connectionPool().connectionCount();
+    }
+
+    /**
+     * Returns the number of idle connections in the shared pool.
+     *
+     * @return the number of idle connections.
+     */
+    public int getIdleConnectionCount() {
+        return client.connectionPool().idleConnectionCount();
+    }
+
+    void close() {
+        prefetcher.close();
+        client.connectionPool().evictAll();
+        if (cache != null) {
+            try {
+                cache.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Could not close the GitHub API response cache", e);
+            }
+        }
+    }
+
+    private EndpointStats stats(HttpUrl url) {
+        String endpoint = url.port() == HttpUrl.defaultPort(url.scheme())
+                ? url.scheme() + "://" + url.host()
+                : url.scheme() + "://" + url.host() + ":" + url.port();
+        return stats.computeIfAbsent(endpoint, k -> new EndpointStats());
+    }
+
+    /**
+     * The statistics of a single endpoint.
+     */
+    public static final class EndpointStats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder networkResponses = new LongAdder();
+        private final LongAdder cacheHits = new LongAdder();
+        private final LongAdder conditionalHits = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder connectionsOpened = new LongAdder();
+        /**
+         * The connections to this endpoint that are carrying a request, with the number of calls on each, more
+         * than one when HTTP/2 multiplexes calls on a connection.
+         */
+        private final Map<Connection, Integer> liveConnections = new ConcurrentHashMap<>();
+
+        EndpointStats() {}
+
+        /**
+         * Returns the number of completed requests.
+         *
+         * @return the number of completed requests.
+         */
+        public long getRequests() {
+            return requests.sum();
+        }
+
+        /**
+         * Returns the number of requests that were answered with a full response from the server.
+         *
+         * @return the number of full network responses.
+         */
+        public long getNetworkResponses() {
+            return networkResponses.sum();
+        }
+
+        /**
+         * Returns the number of requests that were answered from the cache without contacting the server.
+         *
+         * @return the number of cache hits.
+         */
+        public long getCacheHits() {
+            return cacheHits.sum();
+        }
+
+        /**
+         * Returns the number of requests that were answered from the cache after the server confirmed with a
+         * {@code 304} that the cached response is still current.
+         *
+         * @return the number of conditional cache hits.
+         */
+        public long getConditionalHits() {
+            return conditionalHits.sum();
+        }
+
+        /**
+         * Returns the number of requests that failed with an {@link IOException}.
+         *
+         * @return the number of failed requests.
+         */
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        /**
+         * Returns the fraction of completed requests whose body was served from the cache.
+         *
+         * @return the cache hit ratio between {@code 0.0} and {@code 1.0}.
+         */
+        public double getCacheHitRatio() {
+            long total = requests.sum();
+            return total == 0 ? 0.0 : (double) (cacheHits.sum() + conditionalHits.sum()) / total;
+        }
+
+        /**
+         * Returns the number of connections (and thus TCP and TLS handshakes) opened to this endpoint.
+         *
+         * @return the number of connections opened.
+         */
+        public long getConnectionsOpened() {
+            return connectionsOpened.sum();
+        }
+
+        /**
+         * Returns the number of connections to this endpoint that are currently carrying a request.
+         *
+         * @return the number of live connections.
+         */
+        public int getLiveConnections() {
+            return liveConnections.size();
+        }
+    }
+
+    private class StatsInterceptor implements Interceptor {
+        @NonNull
+        @Override
+        public Response intercept(@NonNull Chain chain) throws IOException {
+            EndpointStats endpoint = stats(chain.request().url());
+            Response response;
+            try {
+                response = chain.proceed(chain.request());
+            } catch (IOException | RuntimeException e) {
+                endpoint.failures.increment();
+                throw e;
+            }
+            endpoint.requests.increment();
+            if (response.networkResponse() == null) {
+                endpoint.cacheHits.increment();
+            } else if (response.cacheResponse() != null) {
+                endpoint.conditionalHits.increment();
+                metrics.revalidated(chain.request().method(), chain.request().url().url());
+            } else {
+                endpoint.networkResponses.increment();
+            }
+            return response;
+        }
+    }
+
+    private class StatsEventListener extends EventListener {
+        @Override
+        public void connectionAcquired(@NonNull Call call, @NonNull Connection connection) {
+            stats(call.request().url()).liveConnections.merge(connection, 1, Integer::sum);
+        }
+
+        @Override
+        public void connectionReleased(@NonNull Call call, @NonNull Connection connection) {
+            stats(call.request().url())
+                    .liveConnections
+                    .computeIfPresent(connection, (c, calls) -> calls > 1 ? calls - 1 : null);
+        }
+
+        @Override
+        public void connectEnd(
+                @NonNull Call call,
+                @NonNull InetSocketAddress inetSocketAddress,
+                @NonNull Proxy proxy,
+                @CheckForNull Protocol protocol) {
+            stats(call.request().url()).connectionsOpened.increment();
+        }
+    }
+}
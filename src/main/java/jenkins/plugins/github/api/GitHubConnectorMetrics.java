@@ -0,0 +1,566 @@
+package jenkins.plugins.github.api;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+
+/**
+ * What the clients built on a {@link GitHubConnectorFactory} spend their time on: per endpoint and per route template,
+ * such as {@code GET /repos/{owner}/{repo}}, the number of requests, their latency, the size of their responses, their
+ * status codes and how many were answered with {@code 304 Not Modified}, plus the rate limit headroom last reported by
+ * each endpoint. Counters are {@link LongAdder}s, so recording adds no contention between concurrent requests.
+ * <p>
+ * The metrics are recorded by connectors wrapped with {@link #decorate(GitHubConnector)}, which the factory applies to
+ * every connector it hands out.
+ */
+public final class GitHubConnectorMetrics {
+
+    /**
+     * The segments after which the rest of the path is a single parameter, and its placeholder.
+     */
+    private static final Map<String, String> REST = Map.of(
+            "contents", "{path}", "branches", "{branch}", "ref", "{ref}", "refs", "{ref}", "compare", "{basehead}");
+
+    /**
+     * The segments followed by a single parameter segment that is neither a number nor a SHA-1, and its placeholder.
+     */
+    private static final Map<String, String> PARAMETERS = Map.of(
+            "commits", "{ref}",
+            "teams", "{team_slug}",
+            "members", "{user}",
+            "collaborators", "{user}",
+            "following", "{user}",
+            "tags", "{tag}",
+            "trees", "{tree}",
+            "labels", "{name}",
+            "environments", "{environment}");
+
+    /**
+     * The number of routes recorded per endpoint, past which the requests of any new route are recorded together
+     * under {@link #OVERFLOW}, so that paths the templates do not cover cannot grow the metrics without bound.
+     */
+    static final int MAX_ROUTES = 500;
+
+    /**
+     * The route template recording the requests past {@link #MAX_ROUTES}.
+     */
+    static final String OVERFLOW = "{other}";
+
+    private static final Pattern NUMBER = Pattern.compile("[0-9]+");
+
+    private static final Pattern SHA = Pattern.compile("[0-9a-f]{40}");
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    GitHubConnectorMetrics() {}
+
+    /**
+     * Returns a connector that records the requests sent through the supplied connector.
+     *
+     * @param delegate the connector to instrument.
+     * @return the instrumented connector.
+     */
+    @NonNull
+    public GitHubConnector decorate(@NonNull GitHubConnector delegate) {
+        return delegate instanceof InstrumentedConnector && ((InstrumentedConnector) delegate).metrics() == this
+                ? delegate
+                : new InstrumentedConnector(delegate);
+    }
+
+    /**
+     * Returns the metrics of each endpoint that has been contacted, keyed by the scheme, host and port of the
+     * endpoint.
+     *
+     * @return the metrics of each endpoint.
+     */
+    @NonNull
+    public NavigableMap<String, Endpoint> getEndpoints() {
+        return Collections.unmodifiableNavigableMap(new TreeMap<>(endpoints));
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    public void reset() {
+        endpoints.clear();
+    }
+
+    /**
+     * Returns the route template of a request path, replacing the owner, repository, user, organization and team
+     * names, numbers, SHA-1s, refs, comparisons and file paths with placeholders. A GitHub Enterprise Server prefix
+     * such as {@code /api/v3} is kept.
+     *
+     * @param path the request path.
+     * @return the route template, e.g. {@code /repos/{owner}/{repo}/pulls/{number}}.
+     */
+    @NonNull
+    public static String route(@NonNull String path) {
+        String[] segments = path.split("/", -1);
+        StringBuilder result = new StringBuilder(path.length());
+        for (int i = 1; i < segments.length; i++) {
+            String segment = segments[i];
+            String previous = segments[i - 1];
+            String template = segment;
+            if (i >= 2 && "repos".equals(segments[i - 2]) && !"repos".equals(previous)) {
+                template = "{repo}";
+            } else if ("repos".equals(previous)) {
+                template = "{owner}";
+            } else if ("users".equals(previous)) {
+                template = "{user}";
+            } else if ("orgs".equals(previous)) {
+                template = "{org}";
+            } else if (NUMBER.matcher(segment).matches()) {
+                template = "{number}";
+            } else if (SHA.matcher(segment).matches()) {
+                template = "{sha}";
+            } else if (PARAMETERS.containsKey(previous)) {
+                template = PARAMETERS.get(previous);
+            }
+            result.append('/').append(template);
+            String rest = i + 1 < segments.length ? REST.get(segment) : null;
+            if (rest != null) {
+                // file paths, branch names and refs may contain slashes
+                result.append('/').append(rest);
+                break;
+            }
+        }
+        return result.length() == 0 ? "/" : result.toString();
+    }
+
+    /**
+     * Counts a response the server answered with {@code 304 Not Modified} but that reached the caller as the
+     * revalidated cached response.
+     */
+    void revalidated(@NonNull String method, @NonNull URL url) {
+        endpoint(url).route(method, url).notModified.increment();
+    }
+
+    private Endpoint endpoint(URL url) {
+        int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+        String key = port == url.getDefaultPort()
+                ? url.getProtocol() + "://" + url.getHost()
+                : url.getProtocol() + "://" + url.getHost() + ":" + port;
+        return endpoints.computeIfAbsent(key, k -> new Endpoint());
+    }
+
+    /**
+     * The metrics of a single endpoint.
+     */
+    public static final class Endpoint {
+        private final Map<String, Route> routes = new ConcurrentHashMap<>();
+        private final Map<String, Headroom> headroom = new ConcurrentHashMap<>();
+
+        Endpoint() {}
+
+        /**
+         * Returns the metrics of each route that has been requested.
+         *
+         * @return the metrics keyed by method and route template, e.g. {@code GET /users/{user}}.
+         */
+        @NonNull
+        public NavigableMap<String, Route> getRoutes() {
+            return Collections.unmodifiableNavigableMap(new TreeMap<>(routes));
+        }
+
+        /**
+         * Returns the rate limit last reported by this endpoint for each resource.
+         *
+         * @return the rate limits keyed by resource, e.g. {@code core} or {@code search}.
+         */
+        @NonNull
+        public NavigableMap<String, Headroom> getHeadroom() {
+            return Collections.unmodifiableNavigableMap(new TreeMap<>(headroom));
+        }
+
+        /**
+         * Returns the number of requests to all routes.
+         *
+         * @return the number of requests.
+         */
+        public long getRequests() {
+            long total = 0;
+            for (Route route : routes.values()) {
+                total += route.getRequests();
+            }
+            return total;
+        }
+
+        Route route(String method, URL url) {
+            String key = method + " " + GitHubConnectorMetrics.route(url.getPath());
+            Route route = routes.get(key);
+            if (route != null) {
+                return route;
+            }
+            if (routes.size() >= MAX_ROUTES) {
+                key = method + " " + OVERFLOW;
+            }
+            return routes.computeIfAbsent(key, k -> new Route());
+        }
+
+        void rateLimit(GitHubConnectorResponse response) {
+            String limit = response.header("X-RateLimit-Limit");
+            String remaining = response.header("X-RateLimit-Remaining");
+            if (limit == null || remaining == null) {
+                return;
+            }
+            String resource = response.header("X-RateLimit-Resource");
+            try {
+                headroom.computeIfAbsent(resource == null ? "core" : resource, k -> new Headroom())
+                        .record(Long.parseLong(limit.trim()), Long.parseLong(remaining.trim()));
+            } catch (NumberFormatException e) {
+                // not a rate limit GitHub would send
+            }
+        }
+    }
+
+    /**
+     * The metrics of a single route.
+     */
+    public static final class Route {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder notModified = new LongAdder();
+        private final LongAdder bytesRead = new LongAdder();
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        private final Histogram latency = new Histogram();
+        private final Histogram sizes = new Histogram();
+
+        Route() {}
+
+        /**
+         * Returns the number of requests that received a response.
+         *
+         * @return the number of requests.
+         */
+        public long getRequests() {
+            return requests.sum();
+        }
+
+        /**
+         * Returns the number of requests that failed with an {@link IOException} before a response was received.
+         *
+         * @return the number of failed requests.
+         */
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        /**
+         * Returns the number of requests the server answered with {@code 304 Not Modified}, including those that
+         * reached the caller as a revalidated cached response.
+         *
+         * @return the number of not modified responses.
+         */
+        public long getNotModified() {
+            return notModified.sum();
+        }
+
+        /**
+         * Returns the fraction of requests the server answered with {@code 304 Not Modified}.
+         *
+         * @return the ratio between {@code 0.0} and {@code 1.0}.
+         */
+        public double getNotModifiedRatio() {
+            long total = requests.sum();
+            return total == 0 ? 0.0 : Math.min(1.0, (double) notModified.sum() / total);
+        }
+
+        /**
+         * Returns the number of response body bytes read by the callers, after decompression.
+         *
+         * @return the number of bytes read.
+         */
+        public long getBytesRead() {
+            return bytesRead.sum();
+        }
+
+        /**
+         * Returns the number of responses of each status that has been received.
+         *
+         * @return the number of responses keyed by status.
+         */
+        @NonNull
+        public NavigableMap<Integer, Long> getStatusCounts() {
+            NavigableMap<Integer, Long> result = new TreeMap<>();
+            statuses.forEach((status, count) -> result.put(status, count.sum()));
+            return result;
+        }
+
+        /**
+         * Returns the histogram of the time from sending each request to receiving its response headers.
+         *
+         * @return the latency histogram in microseconds.
+         */
+        @NonNull
+        public Histogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * Returns the histogram of the response body sizes.
+         *
+         * @return the size histogram in bytes.
+         */
+        @NonNull
+        public Histogram getSizes() {
+            return sizes;
+        }
+    }
+
+    /**
+     * The rate limit of a resource as last reported by an endpoint, whichever credential the request was made with.
+     */
+    public static final class Headroom {
+        private final AtomicLong limit = new AtomicLong();
+        private final AtomicLong remaining = new AtomicLong();
+        private final AtomicLong lowest = new AtomicLong(Long.MAX_VALUE);
+
+        Headroom() {}
+
+        void record(long limit, long remaining) {
+            this.limit.set(limit);
+            this.remaining.set(remaining);
+            this.lowest.accumulateAndGet(remaining, Math::min);
+        }
+
+        public long getLimit() {
+            return limit.get();
+        }
+
+        public long getRemaining() {
+            return remaining.get();
+        }
+
+        /**
+         * Returns the lowest remaining number of requests reported so far.
+         *
+         * @return the lowest remaining number of requests.
+         */
+        public long getLowest() {
+            return lowest.get();
+        }
+
+        /**
+         * Returns the fraction of the limit that remains.
+         *
+         * @return the fraction between {@code 0.0} and {@code 1.0}.
+         */
+        public double getRatio() {
+            long l = limit.get();
+            return l <= 0 ? 0.0 : (double) remaining.get() / l;
+        }
+    }
+
+    /**
+     * A histogram of non-negative values counted in log-linear buckets that are at most 1/8th of their lower bound
+     * wide, whose counters are only allocated once a value falls into them.
+     */
+    public static final class Histogram {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int HALF = SUB_BUCKETS / 2;
+
+        private final AtomicReferenceArray<LongAdder> counts =
+                new AtomicReferenceArray<>((64 - SUB_BUCKET_BITS) * HALF + SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        Histogram() {}
+
+        void record(long value) {
+            long v = Math.max(0, value);
+            int i = index(v);
+            LongAdder bucket = counts.get(i);
+            if (bucket == null) {
+                counts.compareAndSet(i, null, new LongAdder());
+                bucket = counts.get(i);
+            }
+            bucket.increment();
+            count.increment();
+            sum.add(v);
+            if (v > max.get()) {
+                max.accumulateAndGet(v, Math::max);
+            }
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        public double getMean() {
+            long n = count.sum();
+            return n == 0 ? 0.0 : (double) sum.sum() / n;
+        }
+
+        /**
+         * Returns the value below which the supplied percentage of the values fall.
+         *
+         * @param percentile the percentile between {@code 0.0} and {@code 100.0}.
+         * @return the highest value in the bucket of the percentile, or {@code 0} if no values have been counted.
+         */
+        public long getValueAtPercentile(double percentile) {
+            long total = count.sum();
+            if (total == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(Math.min(100.0, percentile) / 100.0 * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                LongAdder bucket = counts.get(i);
+                seen += bucket == null ? 0 : bucket.sum();
+                if (seen >= target) {
+                    return Math.min(highest(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        static int index(long value) {
+            int bits = 64 - Long.numberOfLeadingZeros(value);
+            if (bits <= SUB_BUCKET_BITS) {
+                return (int) value;
+            }
+            int shift = bits - SUB_BUCKET_BITS;
+            return shift * HALF + (int) (value >>> shift);
+        }
+
+        static long highest(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int shift = index / HALF - 1;
+            long mantissa = index - (long) shift * HALF;
+            return ((mantissa + 1) << shift) - 1;
+        }
+    }
+
+    private final class InstrumentedConnector implements GitHubConnector {
+        private final GitHubConnector delegate;
+
+        InstrumentedConnector(GitHubConnector delegate) {
+            this.delegate = delegate;
+        }
+
+        GitHubConnectorMetrics metrics() {
+            return GitHubConnectorMetrics.this;
+        }
+
+        @Override
+        public GitHubConnectorResponse send(GitHubConnectorRequest request) throws IOException {
+            Endpoint endpoint = endpoint(request.url());
+            Route route = endpoint.route(request.method(), request.url());
+            long start = System.nanoTime();
+            GitHubConnectorResponse response;
+            try {
+                response = delegate.send(request);
+            } catch (IOException | RuntimeException e) {
+                route.failures.increment();
+                throw e;
+            }
+            route.latency.record((System.nanoTime() - start) / 1000);
+            route.requests.increment();
+            route.statuses.computeIfAbsent(response.statusCode(), k -> new LongAdder()).increment();
+            if (response.statusCode() == 304) {
+                route.notModified.increment();
+            }
+            endpoint.rateLimit(response);
+            return new InstrumentedResponse(response, route);
+        }
+    }
+
+    /**
+     * Counts the body bytes read by the caller. The body is read through {@link GitHubConnectorResponse#bodyStream()}
+     * of the delegate, which is already decompressed, so {@code Content-Encoding} is not passed on.
+     */
+    private static final class InstrumentedResponse extends GitHubConnectorResponse {
+        private final GitHubConnectorResponse delegate;
+        private final Route route;
+        private final LongAdder read = new LongAdder();
+        private final AtomicBoolean recorded = new AtomicBoolean();
+
+        InstrumentedResponse(GitHubConnectorResponse delegate, Route route) {
+            super(delegate.request(), delegate.statusCode(), withoutContentEncoding(delegate.allHeaders()));
+            this.delegate = delegate;
+            this.route = route;
+        }
+
+        @Override
+        public InputStream bodyStream() throws IOException {
+            return new FilterInputStream(delegate.bodyStream()) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        read.increment();
+                    } else {
+                        record();
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int n = super.read(b, off, len);
+                    if (n > 0) {
+                        read.add(n);
+                    } else if (n < 0) {
+                        record();
+                    }
+                    return n;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    record();
+                    super.close();
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            record();
+            delegate.close();
+        }
+
+        private void record() {
+            if (recorded.compareAndSet(false, true)) {
+                long n = read.sum();
+                route.bytesRead.add(n);
+                route.sizes.record(n);
+            }
+        }
+
+        private static Map<String, List<String>> withoutContentEncoding(Map<String, List<String>> headers) {
+            Map<String, List<String>> result = new LinkedHashMap<>();
+            headers.forEach((name, values) -> {
+                if (!"Content-Encoding".equalsIgnoreCase(name)) {
+                    result.put(name, values);
+                }
+            });
+            return result;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package jenkins.plugins.github.api;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import hudson.security.Permission;
+import java.util.Locale;
+import java.util.Map;
+import jenkins.model.Jenkins;
+
+/**
+ * Shows the {@link GitHubConnectorMetrics} and connection statistics of the controller-wide
+ * {@link GitHubConnectorFactory} under <em>Manage Jenkins</em>.
+ */
+@Extension
+public class GitHubMetricsLink extends ManagementLink {
+
+    @Override
+    public String getIconFileName() {
+        return "symbol-analytics";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.GitHubMetricsLink_DisplayName();
+    }
+
+    @Override
+    public String getDescription() {
+        return Messages.GitHubMetricsLink_Description();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "github-api-metrics";
+    }
+
+    @NonNull
+    @Override
+    public Category getCategory() {
+        return Category.STATUS;
+    }
+
+    @NonNull
+    @Override
+    public Permission getRequiredPermission() {
+        return Jenkins.SYSTEM_READ;
+    }
+
+    public GitHubConnectorMetrics getMetrics() {
+        return GitHubConnectorFactory.get().getMetrics();
+    }
+
+    public Map<String, GitHubConnectorFactory.EndpointStats> getConnectionStats() {
+        return GitHubConnectorFactory.get().getStats();
+    }
+
+    /**
+     * Formats a duration for display.
+     *
+     * @param micros the duration in microseconds.
+     * @return the duration in milliseconds.
+     */
+    public String millis(double micros) {
+        return String.format(Locale.ROOT, "%.1f", micros / 1000.0);
+    }
+
+    /**
+     * Formats a ratio for display.
+     *
+     * @param ratio the ratio between {@code 0.0} and {@code 1.0}.
+     * @return the ratio as a percentage.
+     */
+    public String percent(double ratio) {
+        return String.format(Locale.ROOT, "%.1f%%", ratio * 100.0);
+    }
+}
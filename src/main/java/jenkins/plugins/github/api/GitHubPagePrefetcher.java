@@ -0,0 +1,471 @@
+package jenkins.plugins.github.api;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import jenkins.util.SystemProperties;
+import org.kohsuke.github.PagedIterable;
+import org.kohsuke.github.RateLimitChecker;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+
+/**
+ * Fetches the next pages of a {@link PagedIterable} in the background while the caller is still consuming the
+ * current one, so that walking a long list such as {@link org.kohsuke.github.GitHub#listAllPublicRepositories()}
+ * overlaps the round trips with the processing of the items instead of paying them one after the other.
+ * <p>
+ * Only the clients using a connector of {@link GitHubConnectorFactory} benefit: the walk watches the pages its
+ * iterator fetches through the connector, follows their {@code Link: rel="next"} header and hands the prefetched
+ * responses to the iterator through the {@link GitHubRequestCoalescer}. Lists paged by number, which also report
+ * their {@code rel="last"} page, are fetched up to {@link #DEPTH} pages ahead at once, lists paged by cursor such as
+ * {@code since} one page after the other.
+ * <pre>
+ * RateLimitChecker checker = GitHubRateLimitScheduler.get().checker(credentialsId, Priority.BACKGROUND);
+ * GitHub github = new GitHubBuilder()
+ *         .withEndpoint(apiUri)
+ *         .withConnector(GitHubConnectorFactory.get().connector())
+ *         .withRateLimitChecker(checker)
+ *         .build();
+ * try (GitHubPagePrefetcher.Walk&lt;GHRepository&gt; walk =
+ *         GitHubConnectorFactory.get().getPrefetcher().prefetch(github.listAllPublicRepositories(), checker)) {
+ *     while (walk.hasNext()) {
+ *         process(walk.next());
+ *     }
+ * }
+ * </pre>
+ * Closing the walk when the caller stops early drops the pages fetched ahead and the requests not sent yet.
+ * <p>
+ * The prefetches are sent by the prefetcher rather than by the client, so they do not go through the
+ * {@link org.kohsuke.github.RateLimitChecker} the client was built with. A walk therefore takes the checker of the
+ * {@link GitHubRateLimitScheduler} the client was built with: each prefetch waits for a permit at the priority of
+ * the client before it is sent, and the permit the client then takes for the prefetched page is handed back.
+ */
+public final class GitHubPagePrefetcher {
+
+    private static final Logger LOGGER = Logger.getLogger(GitHubPagePrefetcher.class.getName());
+
+    /**
+     * The default number of pages fetched ahead of the caller, {@code 0} to disable prefetching.
+     */
+    static final int DEPTH = SystemProperties.getInteger(GitHubPagePrefetcher.class.getName() + ".depth", 2);
+
+    private static final Pattern LINK = Pattern.compile("<([^>]+)>;\\s*rel=\"([^\"]+)\"");
+
+    private static final Pattern PAGE = Pattern.compile("([?&]page=)(\\d+)");
+
+    private final GitHubRequestCoalescer coalescer;
+
+    private final ExecutorService executor;
+
+    /**
+     * The walk whose iterator is fetching a page on the current thread.
+     */
+    private final ThreadLocal<Walk<?>> current = new ThreadLocal<>();
+
+    /**
+     * Constructor.
+     *
+     * @param coalescer the coalescer handing the prefetched responses to the iterators.
+     */
+    GitHubPagePrefetcher(@NonNull GitHubRequestCoalescer coalescer) {
+        this.coalescer = coalescer;
+        this.executor = Executors.newCachedThreadPool(
+                new NamingThreadFactory(new DaemonThreadFactory(), "GitHub page prefetch"));
+    }
+
+    /**
+     * Returns a connector that coalesces its requests with {@link GitHubRequestCoalescer#decorate(GitHubConnector)}
+     * and reports the pages fetched by the walks of this prefetcher.
+     *
+     * @param delegate the connector to send the requests with.
+     * @return the connector.
+     */
+    @NonNull
+    public GitHubConnector decorate(@NonNull GitHubConnector delegate) {
+        return request -> {
+            GitHubConnectorResponse response = coalescer.send(delegate, request);
+            Walk<?> walk = current.get();
+            if (walk != null && response.statusCode() == 200) {
+                walk.fetched(delegate, request, response.header("Link"));
+            }
+            return response;
+        };
+    }
+
+    /**
+     * Walks a list fetching {@link #DEPTH} pages ahead, each prefetch taking a permit of a
+     * {@link GitHubRateLimitScheduler}.
+     *
+     * @param iterable the list, obtained from a client using a connector of {@link GitHubConnectorFactory}.
+     * @param checker  the checker of a {@link GitHubRateLimitScheduler} the client was built with.
+     * @param <T>      the type of the items.
+     * @return the walk, to be closed if the caller stops before the end of the list.
+     * @throws IllegalArgumentException if the checker does not come from a {@link GitHubRateLimitScheduler}.
+     */
+    @NonNull
+    public <T> Walk<T> prefetch(@NonNull PagedIterable<T> iterable, @NonNull RateLimitChecker checker) {
+        return prefetch(iterable, DEPTH, checker);
+    }
+
+    /**
+     * Walks a list fetching some pages ahead, each prefetch taking a permit of a {@link GitHubRateLimitScheduler}.
+     *
+     * @param iterable the list, obtained from a client using a connector of {@link GitHubConnectorFactory}.
+     * @param depth    the number of pages fetched ahead of the caller, {@code 0} to fetch none.
+     * @param checker  the checker of a {@link GitHubRateLimitScheduler} the client was built with.
+     * @param <T>      the type of the items.
+     * @return the walk, to be closed if the caller stops before the end of the list.
+     * @throws IllegalArgumentException if the checker does not come from a {@link GitHubRateLimitScheduler}.
+     */
+    @NonNull
+    public <T> Walk<T> prefetch(@NonNull PagedIterable<T> iterable, int depth, @NonNull RateLimitChecker checker) {
+        if (!(checker instanceof GitHubRateLimitScheduler.Checker)) {
+            throw new IllegalArgumentException("Not a checker of GitHubRateLimitScheduler: " + checker);
+        }
+        return new Walk<>(iterable.iterator(), Math.max(0, depth), (GitHubRateLimitScheduler.Checker) checker);
+    }
+
+    void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Parses the {@code Link} header of a page.
+     *
+     * @param link the header.
+     * @param rel  the relation of the link, e.g. {@code next}.
+     * @return the URL of the link or {@code null} if the header has none.
+     */
+    @CheckForNull
+    static String link(@CheckForNull String link, @NonNull String rel) {
+        if (link == null) {
+            return null;
+        }
+        Matcher matcher = LINK.matcher(link);
+        while (matcher.find()) {
+            if (rel.equals(matcher.group(2))) {
+                return matcher.group(1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the page number of a page URL.
+     *
+     * @param url the URL.
+     * @return the page number or {@code -1} if the list is not paged by number.
+     */
+    static int page(@CheckForNull String url) {
+        if (url == null) {
+            return -1;
+        }
+        Matcher matcher = PAGE.matcher(url);
+        return matcher.find() ? Integer.parseInt(matcher.group(2)) : -1;
+    }
+
+    /**
+     * A walk through a list that fetches the pages ahead of its caller. The walk closes itself at the end of the
+     * list.
+     *
+     * @param <T> the type of the items.
+     */
+    public final class Walk<T> implements Iterator<T>, AutoCloseable {
+        private final Iterator<T> iterator;
+        private final int depth;
+
+        private final GitHubRateLimitScheduler.Checker checker;
+
+        /**
+         * The pages fetched ahead that the iterator has not asked for yet, in list order.
+         */
+        private final Deque<Ahead> ahead = new ArrayDeque<>();
+
+        @CheckForNull
+        private GitHubConnector delegate;
+
+        /**
+         * The last request of the iterator, whose headers the prefetched requests carry.
+         */
+        @CheckForNull
+        private GitHubConnectorRequest template;
+
+        /**
+         * The URL of the page after the last one fetched ahead, {@code null} while waiting for the {@code Link}
+         * header of a page paged by cursor or at the end of the list.
+         */
+        @CheckForNull
+        private String next;
+
+        /**
+         * The last page of a list paged by number, {@code -1} for lists paged by cursor.
+         */
+        private int last = -1;
+
+        private volatile boolean closed;
+
+        Walk(Iterator<T> iterator, int depth, GitHubRateLimitScheduler.Checker checker) {
+            this.iterator = iterator;
+            this.depth = depth;
+            this.checker = checker;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (closed) {
+                return false;
+            }
+            Walk<?> previous = current.get();
+            current.set(this);
+            try {
+                if (iterator.hasNext()) {
+                    return true;
+                }
+            } finally {
+                restore(previous);
+            }
+            close();
+            return false;
+        }
+
+        @Override
+        public T next() {
+            if (closed) {
+                throw new NoSuchElementException();
+            }
+            Walk<?> previous = current.get();
+            current.set(this);
+            try {
+                return iterator.next();
+            } finally {
+                restore(previous);
+            }
+        }
+
+        /**
+         * Drops the pages fetched ahead and the prefetches not sent yet.
+         */
+        @Override
+        public void close() {
+            closed = true;
+            synchronized (this) {
+                for (Ahead page : ahead) {
+                    drop(page);
+                }
+                ahead.clear();
+                next = null;
+            }
+            checker.wake();
+        }
+
+        private void restore(@CheckForNull Walk<?> previous) {
+            if (previous == null) {
+                current.remove();
+            } else {
+                current.set(previous);
+            }
+        }
+
+        /**
+         * Records a page fetched by the iterator and fetches the following pages.
+         *
+         * @param delegate the connector the page was fetched with.
+         * @param request  the request of the page.
+         * @param link     the {@code Link} header of the page.
+         */
+        synchronized void fetched(
+                GitHubConnector delegate, GitHubConnectorRequest request, @CheckForNull String link) {
+            if (closed || depth == 0) {
+                return;
+            }
+            String url = request.url().toString();
+            while (!ahead.isEmpty() && !ahead.peekFirst().url.equals(url)) {
+                drop(ahead.removeFirst());
+            }
+            if (ahead.isEmpty()) {
+                // the first page, or the iterator did not ask for the page we expected: follow its lead
+                this.delegate = delegate;
+                this.template = request;
+                follow(link);
+            } else {
+                Ahead page = ahead.removeFirst();
+                if (page.permit && page.flight.isClaimed()) {
+                    // the page was sent with the permit of the prefetch, the one the client took was not used
+                    checker.release();
+                }
+                if (ahead.isEmpty() && next == null) {
+                    // the chain stopped, e.g. the prefetch failed and the iterator fetched the page again
+                    follow(link);
+                }
+            }
+            pump();
+        }
+
+        private void follow(@CheckForNull String link) {
+            next = link(link, "next");
+            int lastPage = page(link(link, "last"));
+            last = page(next) > 0 ? lastPage : -1;
+        }
+
+        private synchronized void pump() {
+            while (!closed && next != null && ahead.size() < depth) {
+                URL url;
+                try {
+                    url = new URL(next);
+                } catch (MalformedURLException e) {
+                    LOGGER.log(Level.FINE, "Could not prefetch " + next, e);
+                    next = null;
+                    return;
+                }
+                Ahead page = new Ahead(next);
+                GitHubRequestCoalescer.Flight flight = coalescer.prefetch(
+                        delegate, new PrefetchRequest(template, url), executor, () -> proceed(page));
+                if (flight == null) {
+                    // already in flight for another walk, or the prefetcher has been shut down
+                    next = null;
+                    return;
+                }
+                page.flight = flight;
+                ahead.addLast(page);
+                int number = page(next);
+                if (last > 0 && number > 0 && number < last) {
+                    next = PAGE.matcher(next).replaceFirst("$1" + (number + 1));
+                } else if (last > 0) {
+                    next = null;
+                } else {
+                    next = null;
+                    flight.whenReceived(header -> received(page, header));
+                }
+            }
+        }
+
+        /**
+         * Decides whether to send a prefetch, waiting for its permit.
+         *
+         * @param page the page about to be fetched.
+         * @return {@code false} if the page is no longer needed.
+         * @throws InterruptedException if interrupted while waiting for the permit.
+         */
+        private boolean proceed(Ahead page) throws InterruptedException {
+            if (closed || page.dropped) {
+                return false;
+            }
+            if (!checker.acquire(() -> closed || page.dropped)) {
+                return false;
+            }
+            synchronized (this) {
+                if (closed || page.dropped) {
+                    checker.release();
+                    return false;
+                }
+                page.permit = true;
+            }
+            return true;
+        }
+
+        private void drop(Ahead page) {
+            page.dropped = true;
+            coalescer.cancel(page.flight);
+        }
+
+        private synchronized void received(Ahead page, @CheckForNull String header) {
+            if (!closed && ahead.peekLast() == page) {
+                next = link(header, "next");
+                pump();
+            }
+        }
+    }
+
+    /**
+     * A page fetched ahead of the iterator.
+     */
+    private static final class Ahead {
+        private final String url;
+        private GitHubRequestCoalescer.Flight flight;
+
+        /**
+         * Whether the prefetch took a permit of the checker of the walk.
+         */
+        private boolean permit;
+
+        /**
+         * Whether the walk no longer needs the page.
+         */
+        private volatile boolean dropped;
+
+        Ahead(String url) {
+            this.url = url;
+        }
+    }
+
+    /**
+     * A request of the iterator sent to the URL of a following page.
+     */
+    private static final class PrefetchRequest implements GitHubConnectorRequest {
+        private final GitHubConnectorRequest template;
+        private final URL url;
+
+        PrefetchRequest(GitHubConnectorRequest template, URL url) {
+            this.template = template;
+            this.url = url;
+        }
+
+        @NonNull
+        @Override
+        public String method() {
+            return template.method();
+        }
+
+        @NonNull
+        @Override
+        public Map<String, List<String>> allHeaders() {
+            return template.allHeaders();
+        }
+
+        @CheckForNull
+        @Override
+        public String header(String name) {
+            return template.header(name);
+        }
+
+        @CheckForNull
+        @Override
+        public String contentType() {
+            return template.contentType();
+        }
+
+        @CheckForNull
+        @Override
+        public InputStream body() {
+            return null;
+        }
+
+        @NonNull
+        @Override
+        public URL url() {
+            return url;
+        }
+
+        @Override
+        public boolean hasBody() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package jenkins.plugins.github.api;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import jenkins.util.SystemProperties;
+import org.kohsuke.github.GHRateLimit;
+import org.kohsuke.github.RateLimitChecker;
+import org.kohsuke.github.RateLimitTarget;
+
+/**
+ * Shares the rate limit of each credential among every {@link org.kohsuke.github.GitHub} client using it, across all
+ * plugins on the controller. Each client reports the {@code X-RateLimit-*} headers it has seen through the
+ * {@link RateLimitChecker} obtained from {@link #checker(String, Priority)}, and every request takes a permit from the
+ * budget of its credential first.
+ * <p>
+ * Permits are paced so that the remaining requests are spread over the time left until the limit resets, after an
+ * initial burst, instead of letting the clients run into the limit together and then all stop until the reset.
+ * Waiting {@link Priority#INTERACTIVE} requests go ahead of waiting {@link Priority#BACKGROUND} ones, and the last
+ * part of each budget is reserved for interactive requests.
+ * <pre>
+ * GitHub github = new GitHubBuilder()
+ *         .withEndpoint(apiUri)
+ *         .withOAuthToken(token)
+ *         .withRateLimitChecker(GitHubRateLimitScheduler.get().checker(credentialsId, Priority.BACKGROUND))
+ *         .build();
+ * </pre>
+ */
+public final class GitHubRateLimitScheduler {
+
+    /**
+     * The fraction of the limit that may be used at once before requests are paced.
+     */
+    static final double BURST = Double.parseDouble(
+            SystemProperties.getString(GitHubRateLimitScheduler.class.getName() + ".burst", "0.1"));
+
+    /**
+     * The fraction of the limit that is kept for interactive requests.
+     */
+    static final double RESERVE = Double.parseDouble(
+            SystemProperties.getString(GitHubRateLimitScheduler.class.getName() + ".reserve", "0.1"));
+
+    /**
+     * The controller-wide instance, created on first use.
+     */
+    private static GitHubRateLimitScheduler instance;
+
+    private final double burst;
+
+    private final double reserve;
+
+    private final Map<String, Budget> budgets = new ConcurrentHashMap<>();
+
+    /**
+     * The priority of the requests of a client.
+     */
+    public enum Priority {
+        /**
+         * Requests a user is waiting for, e.g. to fill in a form or to start a build.
+         */
+        INTERACTIVE,
+        /**
+         * Requests of scans and other work nobody is waiting for.
+         */
+        BACKGROUND
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param burst   the fraction of the limit that may be used at once before requests are paced.
+     * @param reserve the fraction of the limit that is kept for interactive requests.
+     */
+    GitHubRateLimitScheduler(double burst, double reserve) {
+        this.burst = burst;
+        this.reserve = reserve;
+    }
+
+    /**
+     * Returns the controller-wide instance.
+     *
+     * @return the controller-wide instance.
+     */
+    @NonNull
+    public static synchronized GitHubRateLimitScheduler get() {
+        if (instance == null) {
+            instance = new GitHubRateLimitScheduler(BURST, RESERVE);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns a checker of the {@link RateLimitTarget#CORE} limit, for
+     * {@link org.kohsuke.github.GitHubBuilder#withRateLimitChecker(RateLimitChecker)}.
+     *
+     * @param key      identifies the credential of the client, e.g. its credentials id; clients using the same
+     *                 credential must use the same key to share its budget.
+     * @param priority the priority of the requests of the client.
+     * @return the checker.
+     */
+    @NonNull
+    public RateLimitChecker checker(@NonNull String key, @NonNull Priority priority) {
+        return checker(key, RateLimitTarget.CORE, priority);
+    }
+
+    /**
+     * Returns a checker of a limit, for
+     * {@link org.kohsuke.github.GitHubBuilder#withRateLimitChecker(RateLimitChecker, RateLimitTarget)}.
+     *
+     * @param key      identifies the credential of the client, e.g. its credentials id; clients using the same
+     *                 credential must use the same key to share its budget.
+     * @param target   the limit, e.g. {@link RateLimitTarget#SEARCH}.
+     * @param priority the priority of the requests of the client.
+     * @return the checker.
+     */
+    @NonNull
+    public RateLimitChecker checker(
+            @NonNull String key, @NonNull RateLimitTarget target, @NonNull Priority priority) {
+        return new Checker(budgets.computeIfAbsent(key + "/" + target.name(), k -> new Budget()), priority);
+    }
+
+    /**
+     * Returns the number of requests the scheduler believes a credential has left.
+     *
+     * @param key    identifies the credential.
+     * @param target the limit.
+     * @return the number of requests left or {@code -1} if no client has reported the limit yet.
+     */
+    public int getRemaining(@NonNull String key, @NonNull RateLimitTarget target) {
+        Budget budget = budgets.get(key + "/" + target.name());
+        if (budget == null) {
+            return -1;
+        }
+        synchronized (budget) {
+            return budget.reset == 0 ? -1 : budget.remaining;
+        }
+    }
+
+    /**
+     * Returns the number of requests waiting for a permit.
+     *
+     * @param key      identifies the credential.
+     * @param target   the limit.
+     * @param priority the priority of the requests.
+     * @return the number of waiting requests.
+     */
+    int getWaiting(@NonNull String key, @NonNull RateLimitTarget target, @NonNull Priority priority) {
+        Budget budget = budgets.get(key + "/" + target.name());
+        if (budget == null) {
+            return 0;
+        }
+        synchronized (budget) {
+            return budget.waiting[priority.ordinal()];
+        }
+    }
+
+    /**
+     * The rate limit of a credential, and a token bucket pacing its requests that refills at the remaining requests
+     * over the time left until the reset.
+     */
+    private final class Budget {
+        private int limit;
+        private int remaining;
+        /**
+         * When the limit resets in milliseconds since the epoch, {@code 0} until a client reports the limit.
+         */
+        private long reset;
+        private double tokens;
+        private long refilled;
+        private final int[] waiting = new int[Priority.values().length];
+
+        synchronized void observe(GHRateLimit.Record record, long now) {
+            long observedReset = record.getResetEpochSeconds() * 1000;
+            if (observedReset <= now || record.getClass() != GHRateLimit.Record.class) {
+                // the client has not seen a response since the last reset, or any response at all and reports the
+                // placeholder GHRateLimit.UnknownLimitRecord
+                return;
+            }
+            if (now >= reset || record.getLimit() != limit) {
+                limit = record.getLimit();
+                remaining = record.getRemaining();
+                reset = observedReset;
+                tokens = capacity();
+                refilled = now;
+                notifyAll();
+            } else {
+                // within a window the clients report what they have seen, which may predate requests of other clients
+                remaining = Math.min(remaining, record.getRemaining());
+                reset = Math.max(reset, observedReset);
+            }
+        }
+
+        synchronized boolean acquire(Priority priority, BooleanSupplier cancelled) throws InterruptedException {
+            waiting[priority.ordinal()]++;
+            try {
+                while (true) {
+                    if (cancelled.getAsBoolean()) {
+                        return false;
+                    }
+                    long now = System.currentTimeMillis();
+                    if (now >= reset) {
+                        // unknown until a client reports the limit of the new window
+                        return true;
+                    }
+                    tokens = Math.min(capacity(), tokens + (now - refilled) * (double) remaining / (reset - now));
+                    refilled = now;
+                    long delay;
+                    if (ahead(priority)) {
+                        delay = reset - now;
+                    } else if (remaining <= reserved(priority)) {
+                        delay = reset - now;
+                    } else if (tokens < 1.0) {
+                        delay = (long) Math.ceil((1.0 - tokens) * (reset - now) / remaining);
+                    } else {
+                        tokens -= 1.0;
+                        remaining--;
+                        return true;
+                    }
+                    wait(Math.max(1, delay));
+                }
+            } finally {
+                waiting[priority.ordinal()]--;
+                notifyAll();
+            }
+        }
+
+        synchronized void release() {
+            if (System.currentTimeMillis() < reset) {
+                remaining++;
+                tokens = Math.min(capacity(), tokens + 1.0);
+                notifyAll();
+            }
+        }
+
+        synchronized void wake() {
+            notifyAll();
+        }
+
+        private boolean ahead(Priority priority) {
+            for (int i = 0; i < priority.ordinal(); i++) {
+                if (waiting[i] > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private double capacity() {
+            return Math.max(1.0, limit * burst);
+        }
+
+        private int reserved(Priority priority) {
+            return priority == Priority.INTERACTIVE ? 0 : (int) Math.ceil(limit * reserve);
+        }
+    }
+
+    /**
+     * Takes a permit from the budget of a credential before each request of a client.
+     */
+    static final class Checker extends RateLimitChecker {
+        private final Budget budget;
+        private final Priority priority;
+
+        Checker(Budget budget, Priority priority) {
+            this.budget = budget;
+            this.priority = priority;
+        }
+
+        @Override
+        protected boolean checkRateLimit(GHRateLimit.Record rateLimitRecord, long count) throws InterruptedException {
+            budget.observe(rateLimitRecord, System.currentTimeMillis());
+            budget.acquire(priority, () -> false);
+            // the permit has been taken, so the request must go ahead whether or not it waited for it
+            return false;
+        }
+
+        /**
+         * Takes a permit for a request sent on behalf of the client, such as a prefetch.
+         *
+         * @param cancelled whether the request is no longer needed, checked whenever the wait is woken up.
+         * @return {@code false} if the request was cancelled while waiting for the permit.
+         * @throws InterruptedException if interrupted while waiting for the permit.
+         * @see #wake()
+         */
+        boolean acquire(BooleanSupplier cancelled) throws InterruptedException {
+            return budget.acquire(priority, cancelled);
+        }
+
+        /**
+         * Hands back a permit that was not used by a request.
+         */
+        void release() {
+            budget.release();
+        }
+
+        /**
+         * Wakes up the requests waiting for a permit so that they check whether they were cancelled.
+         */
+        void wake() {
+            budget.wake();
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package jenkins.plugins.github.api;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import jenkins.util.SystemProperties;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+
+/**
+ * Coalesces identical concurrent {@code GET} requests: while a request is in flight, the same request sent through
+ * the same connector with the same headers, and thus the same authorization, waits for the response of the first one
+ * instead of being sent again. Once the response arrives, the first request stops accepting waiters. If any joined,
+ * the response body is buffered once and replayed to every one of them; otherwise the response is passed on as is, so
+ * that downloads nobody else asked for, such as archives, keep streaming.
+ * <p>
+ * Only requests that overlap are coalesced, a request sent after the response of an identical one has been received
+ * is sent again, so a request is never answered with a response received before it was sent. The exception are the
+ * pages prefetched by {@link GitHubPagePrefetcher}: a prefetched response waits for the request it was fetched for,
+ * and is dropped if that request does not claim it within {@link #PREFETCH_TTL_SECONDS}, so it may be that old.
+ */
+public final class GitHubRequestCoalescer {
+
+    /**
+     * How long a prefetched response is kept for the request it was prefetched for.
+     */
+    static final long PREFETCH_TTL_SECONDS =
+            SystemProperties.getLong(GitHubRequestCoalescer.class.getName() + ".prefetchTtlSeconds", 60L);
+
+    private static final long PREFETCH_TTL_NANOS = TimeUnit.SECONDS.toNanos(PREFETCH_TTL_SECONDS);
+
+    private final Map<Key, Flight> flights = new ConcurrentHashMap<>();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    private final LongAdder prefetched = new LongAdder();
+
+    GitHubRequestCoalescer() {}
+
+    /**
+     * Returns a connector that coalesces the identical concurrent {@code GET} requests sent through it.
+     *
+     * @param delegate the connector to send the requests with.
+     * @return the coalescing connector.
+     */
+    @NonNull
+    public GitHubConnector decorate(@NonNull GitHubConnector delegate) {
+        return request -> send(delegate, request);
+    }
+
+    /**
+     * Returns the number of requests that were answered with the response of an identical request in flight.
+     *
+     * @return the number of coalesced requests.
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Returns the number of requests that were answered with a response prefetched by {@link GitHubPagePrefetcher}.
+     *
+     * @return the number of prefetched requests.
+     */
+    public long getPrefetched() {
+        return prefetched.sum();
+    }
+
+    /**
+     * Returns the number of distinct requests currently in flight, including the prefetched responses that have not
+     * been claimed yet.
+     *
+     * @return the number of requests in flight.
+     */
+    public int getInFlight() {
+        return flights.size();
+    }
+
+    GitHubConnectorResponse send(GitHubConnector delegate, GitHubConnectorRequest request) throws IOException {
+        if (!"GET".equals(request.method())) {
+            return delegate.send(request);
+        }
+        expire();
+        Key key = new Key(delegate, request);
+        Flight flight = new Flight(key, false);
+        Flight leader;
+        while ((leader = flights.putIfAbsent(key, flight)) != null) {
+            if (!leader.prefetched) {
+                if (leader.join()) {
+                    coalesced.increment();
+                    return leader.await(request);
+                }
+                // the response has arrived and is being handed out, so send the request again
+                continue;
+            }
+            // a prefetched response is handed to a single request, and a failed prefetch is retried by the request
+            if (flights.remove(key, leader) && !leader.response.isCompletedExceptionally()) {
+                GitHubConnectorResponse response;
+                try {
+                    response = leader.await(request);
+                } catch (IOException | CancellationException e) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw e;
+                    }
+                    // the prefetch failed or was dropped after it was claimed
+                    continue;
+                }
+                leader.claimed = true;
+                prefetched.increment();
+                return response;
+            }
+        }
+        GitHubConnectorResponse response;
+        try {
+            response = delegate.send(request);
+        } catch (IOException | RuntimeException | Error e) {
+            flights.remove(key, flight);
+            flight.seal();
+            flight.fail(e);
+            throw e;
+        }
+        flights.remove(key, flight);
+        if (flight.seal() == 0) {
+            return response;
+        }
+        Buffered buffered;
+        try {
+            buffered = Buffered.read(response);
+        } catch (IOException | RuntimeException | Error e) {
+            flight.fail(e);
+            throw e;
+        }
+        flight.complete(buffered);
+        return new BufferedResponse(request, buffered);
+    }
+
+    /**
+     * Sends a {@code GET} request in the background and keeps its response until an identical request claims it,
+     * joining it while it is in flight, or until it expires after {@link #PREFETCH_TTL_SECONDS}.
+     *
+     * @param delegate the connector to send the request with.
+     * @param request  the request.
+     * @param executor the executor to send the request on.
+     * @param proceed  called on the executor just before the request is sent, returns {@code false} if the request
+     *                 is no longer needed.
+     * @return the prefetch or {@code null} if an identical request is already in flight or prefetched.
+     */
+    @CheckForNull
+    Flight prefetch(
+            GitHubConnector delegate, GitHubConnectorRequest request, Executor executor, Callable<Boolean> proceed) {
+        expire();
+        Key key = new Key(delegate, request);
+        Flight flight = new Flight(key, true);
+        if (flights.putIfAbsent(key, flight) != null) {
+            return null;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    if (!proceed.call()) {
+                        cancel(flight);
+                        flight.fail(new CancellationException("Prefetch of " + request.url() + " cancelled"));
+                        return;
+                    }
+                    flight.complete(Buffered.read(delegate.send(request)));
+                } catch (Throwable e) {
+                    flight.fail(e);
+                    if (e instanceof InterruptedException) {
+                        Thread.currentThread().interrupt();
+                    }
+                    if (e instanceof Error) {
+                        throw (Error) e;
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            flights.remove(key, flight);
+            return null;
+        }
+        return flight;
+    }
+
+    /**
+     * Drops a prefetch that has not been claimed yet.
+     *
+     * @param flight the prefetch.
+     */
+    void cancel(Flight flight) {
+        flights.remove(flight.key, flight);
+    }
+
+    private void expire() {
+        long now = System.nanoTime();
+        flights.values().removeIf(f -> f.prefetched && f.response.isDone() && now - f.completed > PREFETCH_TTL_NANOS);
+    }
+
+    /**
+     * Identifies the requests that get the same response: the connector, URL and all headers.
+     */
+    static final class Key {
+        private final GitHubConnector delegate;
+        private final String url;
+        private final Map<String, List<String>> headers;
+
+        Key(GitHubConnector delegate, GitHubConnectorRequest request) {
+            this.delegate = delegate;
+            this.url = request.url().toString();
+            this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            request.allHeaders().forEach((name, values) -> {
+                if (name != null) {
+                    headers.put(name, values);
+                }
+            });
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return delegate == key.delegate && url.equals(key.url) && headers.equals(key.headers);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(delegate), url, headers);
+        }
+    }
+
+    /**
+     * A request in flight, completed with its buffered response.
+     */
+    static final class Flight {
+        private final Key key;
+        /**
+         * Whether the request was sent ahead of any caller, so that its response is kept until one claims it.
+         */
+        private final boolean prefetched;
+        private final CompletableFuture<Buffered> response = new CompletableFuture<>();
+        /**
+         * The number of requests waiting for the response, {@code -1} once the response has arrived.
+         */
+        private final AtomicInteger waiters = new AtomicInteger();
+        private volatile long completed;
+        /**
+         * Whether a request has been answered with this prefetched response.
+         */
+        private volatile boolean claimed;
+
+        Flight(Key key, boolean prefetched) {
+            this.key = key;
+            this.prefetched = prefetched;
+        }
+
+        /**
+         * Waits for the response of this request.
+         *
+         * @return {@code false} if the response has already arrived and can no longer be shared.
+         */
+        boolean join() {
+            int n;
+            do {
+                n = waiters.get();
+                if (n < 0) {
+                    return false;
+                }
+            } while (!waiters.compareAndSet(n, n + 1));
+            return true;
+        }
+
+        /**
+         * Stops accepting waiters.
+         *
+         * @return the number of requests waiting for the response.
+         */
+        int seal() {
+            return waiters.getAndSet(-1);
+        }
+
+        void complete(Buffered buffered) {
+            completed = System.nanoTime();
+            response.complete(buffered);
+        }
+
+        void fail(Throwable cause) {
+            completed = System.nanoTime();
+            response.completeExceptionally(cause);
+        }
+
+        boolean isClaimed() {
+            return claimed;
+        }
+
+        /**
+         * Runs an action once the response has been received.
+         *
+         * @param action the action, given the {@code Link} header of the response or {@code null}.
+         */
+        void whenReceived(Consumer<String> action) {
+            response.thenAccept(buffered -> action.accept(buffered.header("Link")));
+        }
+
+        GitHubConnectorResponse await(GitHubConnectorRequest request) throws IOException {
+            try {
+                return new BufferedResponse(request, response.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw (IOException) new InterruptedIOException("Interrupted while waiting for " + request.url())
+                        .initCause(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    /**
+     * A response read into memory. The body is read through {@link GitHubConnectorResponse#bodyStream()}, which is
+     * already decompressed, so {@code Content-Encoding} is dropped.
+     */
+    static final class Buffered {
+        private final int statusCode;
+        private final Map<String, List<String>> headers;
+
+        @CheckForNull
+        private final byte[] body;
+
+        Buffered(int statusCode, Map<String, List<String>> headers, @CheckForNull byte[] body) {
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        @CheckForNull
+        String header(String name) {
+            for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+                if (name.equalsIgnoreCase(entry.getKey()) && !entry.getValue().isEmpty()) {
+                    return entry.getValue().get(0);
+                }
+            }
+            return null;
+        }
+
+        static Buffered read(GitHubConnectorResponse response) throws IOException {
+            try (response) {
+                Map<String, List<String>> headers = new LinkedHashMap<>();
+                response.allHeaders().forEach((name, values) -> {
+                    if (!"Content-Encoding".equalsIgnoreCase(name)) {
+                        headers.put(name, values);
+                    }
+                });
+                InputStream stream;
+                try {
+                    stream = response.bodyStream();
+                } catch (IOException e) {
+                    // the response has no body, e.g. 304 Not Modified
+                    return new Buffered(response.statusCode(), headers, null);
+                }
+                try (stream) {
+                    return new Buffered(response.statusCode(), headers, stream.readAllBytes());
+                }
+            }
+        }
+    }
+
+    private static final class BufferedResponse extends GitHubConnectorResponse {
+        private final Buffered buffered;
+
+        BufferedResponse(GitHubConnectorRequest request, Buffered buffered) {
+            super(request, buffered.statusCode, buffered.headers);
+            this.buffered = buffered;
+        }
+
+        @Override
+        public InputStream bodyStream() throws IOException {
+            if (buffered.body == null) {
+                throw new IOException("Response body missing");
+            }
+            return new ByteArrayInputStream(buffered.body);
+        }
+
+        @Override
+        public void close() {}
+    }
+}
@@ -0,0 +1,87 @@
+package jenkins.plugins.github.api;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jenkins.plugins.github.api.mock.MockGitHub;
+import jenkins.plugins.github.api.mock.MockUser;
+import okhttp3.OkHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.github.GitHub;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class GitHubClientRegistryTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private GitHubConnectorFactory factory;
+
+    private GitHubClientRegistry registry;
+
+    @Before
+    public void setUp() {
+        factory = new GitHubConnectorFactory(new OkHttpClient.Builder(), null, 0, 4, 60);
+        registry = new GitHubClientRegistry(factory, 60_000, now::get);
+    }
+
+    @After
+    public void tearDown() {
+        factory.close();
+    }
+
+    @Test
+    public void given__sameCredential__when__leasedRepeatedly__then__validatedOnceUntilIdle() throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            mock.withToken("token1", mock.withUser("user1"));
+            String url = mock.open();
+            Set<GitHub> clients = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (int i = 0; i < 10; i++) {
+                try (GitHubClientRegistry.Lease lease = registry.acquire(url, "cred1", "token1")) {
+                    assertThat(lease.getGitHub().getMyself().getLogin(), is("user1"));
+                    clients.add(lease.getGitHub());
+                }
+            }
+            assertThat(clients.size(), is(1));
+            assertThat(mock.getMetrics().get("/").getRequests(), is(1L));
+            assertThat(registry.getLeaseCount(), is(0));
+
+            now.addAndGet(60_000);
+            registry.acquire(url).close();
+            assertThat(registry.getClientCount(), is(1));
+            try (GitHubClientRegistry.Lease lease = registry.acquire(url + "/", "cred1", "token1")) {
+                assertThat(lease.getGitHub(), not(sameInstance(clients.iterator().next())));
+            }
+            assertThat(mock.getMetrics().get("/").getRequests(), is(3L));
+        }
+    }
+
+    @Test
+    public void given__rotatedCredential__when__leased__then__newClientWhileOldLeaseUsable() throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            MockUser user1 = mock.withUser("user1");
+            mock.withToken("token1", user1);
+            mock.withToken("token2", user1);
+            String url = mock.open();
+            try (GitHubClientRegistry.Lease old = registry.acquire(url, "cred1", "token1");
+                    GitHubClientRegistry.Lease rotated = registry.acquire(url, "cred1", "token2")) {
+                assertThat(rotated.getGitHub(), not(sameInstance(old.getGitHub())));
+                assertThat(old.getGitHub().getMyself().getLogin(), is("user1"));
+                assertThat(registry.getClientCount(), is(1));
+                assertThat(registry.getLeaseCount(), is(1));
+
+                registry.invalidate("cred1");
+                assertThat(registry.getClientCount(), is(0));
+                assertThat(rotated.getGitHub().getMyself().getLogin(), is("user1"));
+            }
+            assertThat(mock.getMetrics().get("/").getRequests(), is(2L));
+        }
+    }
+}
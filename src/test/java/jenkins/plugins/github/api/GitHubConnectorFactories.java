@@ -0,0 +1,30 @@
+package jenkins.plugins.github.api;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Creates {@link GitHubConnectorFactory} instances outside of a Jenkins controller, for the benchmarks, which live in
+ * another package.
+ */
+public final class GitHubConnectorFactories {
+
+    private GitHubConnectorFactories() {}
+
+    /**
+     * Creates a factory without a response cache.
+     *
+     * @return the factory, to be closed with {@link #close(GitHubConnectorFactory)}.
+     */
+    public static GitHubConnectorFactory create() {
+        return new GitHubConnectorFactory(new OkHttpClient.Builder(), null, 0, 16, 60);
+    }
+
+    /**
+     * Closes a factory.
+     *
+     * @param factory the factory.
+     */
+    public static void close(GitHubConnectorFactory factory) {
+        factory.close();
+    }
+}
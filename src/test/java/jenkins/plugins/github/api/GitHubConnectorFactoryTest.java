@@ -0,0 +1,82 @@
+package jenkins.plugins.github.api;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import jenkins.plugins.github.api.mock.MockGitHub;
+import jenkins.plugins.github.api.mock.MockOrganization;
+import okhttp3.OkHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class GitHubConnectorFactoryTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private GitHubConnectorFactory factory;
+
+    @Before
+    public void setUp() throws Exception {
+        factory = new GitHubConnectorFactory(new OkHttpClient.Builder(), tmp.newFolder(), 10 * 1024 * 1024, 4, 60);
+    }
+
+    @After
+    public void tearDown() {
+        factory.close();
+    }
+
+    @Test
+    public void given__twoClientsOnSharedFactory__when__listingRepos__then__secondClientHitsSharedCache()
+            throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            MockOrganization org1 = mock.withOrg("org1");
+            for (int i = 0; i < 95; i++) {
+                org1.withPublicRepo("repo" + i);
+            }
+            String url = mock.open();
+            GitHub first = new GitHubBuilder()
+                    .withConnector(factory.connector())
+                    .withEndpoint(url)
+                    .build();
+            GitHub second = new GitHubBuilder()
+                    .withConnector(factory.connector())
+                    .withEndpoint(url)
+                    .build();
+            Set<String> expected = new TreeSet<>();
+            for (GHRepository r : first.listAllPublicRepositories()) {
+                expected.add(r.getFullName());
+            }
+            long pages = mock.getFullResponseCount();
+            long opened = factory.getStats().get(url).getConnectionsOpened();
+            assertThat(opened, greaterThan(0L));
+            assertThat(opened, lessThanOrEqualTo(2L));
+            Set<String> actual = new TreeSet<>();
+            for (GHRepository r : second.listAllPublicRepositories()) {
+                actual.add(r.getFullName());
+            }
+            assertThat(actual, is(expected));
+            assertThat(mock.getFullResponseCount(), is(pages));
+            assertThat(mock.getNotModifiedCount(), is(pages));
+
+            GitHubConnectorFactory.EndpointStats stats = factory.getStats().get(url);
+            assertThat(stats.getRequests(), is(2 * pages));
+            assertThat(stats.getConditionalHits(), is(pages));
+            assertThat(stats.getCacheHitRatio(), is(0.5));
+            // before Java 21 the JDK HTTP server closes the connection after a response without a body, such as a 304
+            assertThat(stats.getConnectionsOpened(), lessThanOrEqualTo(opened + pages));
+            assertThat(stats.getLiveConnections(), is(0));
+        }
+    }
+}
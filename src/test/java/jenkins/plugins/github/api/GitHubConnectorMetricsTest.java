@@ -0,0 +1,100 @@
+package jenkins.plugins.github.api;
+
+import java.io.FileNotFoundException;
+import java.net.URL;
+import java.time.Duration;
+
+import jenkins.plugins.github.api.mock.MockGitHub;
+import okhttp3.OkHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertThrows;
+
+public class GitHubConnectorMetricsTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private GitHubConnectorFactory factory;
+
+    @Before
+    public void setUp() throws Exception {
+        factory = new GitHubConnectorFactory(new OkHttpClient.Builder(), tmp.newFolder(), 10 * 1024 * 1024, 4, 60);
+    }
+
+    @After
+    public void tearDown() {
+        factory.close();
+    }
+
+    @Test
+    public void given__pathsOfRequests__when__templated__then__namesReplacedByPlaceholders() {
+        assertThat(GitHubConnectorMetrics.route("/repos/o/r/pulls/42"), is("/repos/{owner}/{repo}/pulls/{number}"));
+        assertThat(GitHubConnectorMetrics.route("/api/v3/users/u/repos"), is("/api/v3/users/{user}/repos"));
+        assertThat(GitHubConnectorMetrics.route("/repos/o/r/contents/src/main/A.java"),
+                is("/repos/{owner}/{repo}/contents/{path}"));
+        assertThat(GitHubConnectorMetrics.route("/repos/o/r/commits/0123456789abcdef0123456789abcdef01234567"),
+                is("/repos/{owner}/{repo}/commits/{sha}"));
+        assertThat(GitHubConnectorMetrics.route("/repos/o/r/commits/main"), is("/repos/{owner}/{repo}/commits/{ref}"));
+        assertThat(GitHubConnectorMetrics.route("/repos/o/r/commits/main/status"),
+                is("/repos/{owner}/{repo}/commits/{ref}/status"));
+        assertThat(GitHubConnectorMetrics.route("/repos/o/r/compare/main...feature/x"),
+                is("/repos/{owner}/{repo}/compare/{basehead}"));
+        assertThat(GitHubConnectorMetrics.route("/orgs/o/teams/core/members/u"),
+                is("/orgs/{org}/teams/{team_slug}/members/{user}"));
+        assertThat(GitHubConnectorMetrics.route("/"), is("/"));
+    }
+
+    @Test
+    public void given__untemplatedPaths__when__recorded__then__routesCappedWithOverflow() throws Exception {
+        GitHubConnectorMetrics.Endpoint endpoint = new GitHubConnectorMetrics.Endpoint();
+        for (int i = 0; i < GitHubConnectorMetrics.MAX_ROUTES; i++) {
+            endpoint.route("GET", new URL("https://api.github.com/unknown/name" + i));
+        }
+        GitHubConnectorMetrics.Route overflow = endpoint.route("GET", new URL("https://api.github.com/unknown/more"));
+        assertThat(endpoint.route("GET", new URL("https://api.github.com/unknown/again")), sameInstance(overflow));
+        assertThat(endpoint.getRoutes().get("GET " + GitHubConnectorMetrics.OVERFLOW), sameInstance(overflow));
+        assertThat(endpoint.getRoutes().size(), is(GitHubConnectorMetrics.MAX_ROUTES + 1));
+        // routes recorded before the cap was reached keep their own metrics
+        assertThat(
+                endpoint.route("GET", new URL("https://api.github.com/unknown/name0")),
+                sameInstance(endpoint.getRoutes().get("GET /unknown/name0")));
+    }
+
+    @Test
+    public void given__factoryConnector__when__fetchingRepository__then__recordedPerRoute() throws Exception {
+        try (MockGitHub mock = new MockGitHub().withRateLimit(100, Duration.ofHours(1))) {
+            mock.withUser("user1").withRepo("repo1", false);
+            String url = mock.open();
+            GitHub github = new GitHubBuilder()
+                    .withConnector(factory.connector())
+                    .withEndpoint(url)
+                    .build();
+            github.getRepository("user1/repo1");
+            github.getRepository("user1/repo1");
+            assertThrows(FileNotFoundException.class, () -> github.getRepository("user1/missing"));
+
+            GitHubConnectorMetrics.Endpoint endpoint = factory.getMetrics().getEndpoints().get(url);
+            GitHubConnectorMetrics.Route route = endpoint.getRoutes().get("GET /repos/{owner}/{repo}");
+            assertThat(route.getRequests(), is(3L));
+            assertThat(route.getStatusCounts().get(200), is(2L));
+            assertThat(route.getStatusCounts().get(404), is(1L));
+            assertThat(route.getNotModified(), is(1L));
+            assertThat(route.getLatency().getCount(), is(3L));
+            assertThat(route.getSizes().getCount(), is(3L));
+            assertThat(route.getBytesRead(), greaterThan(0L));
+            assertThat(endpoint.getHeadroom().get("core").getLimit(), is(100L));
+            assertThat(endpoint.getHeadroom().get("core").getRemaining(), is(97L));
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package jenkins.plugins.github.api;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import jenkins.plugins.github.api.GitHubRateLimitScheduler.Priority;
+import jenkins.plugins.github.api.mock.MockGitHub;
+import jenkins.plugins.github.api.mock.MockLatency;
+import jenkins.plugins.github.api.mock.MockOrganization;
+import jenkins.plugins.github.api.mock.MockUser;
+import okhttp3.OkHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.RateLimitChecker;
+import org.kohsuke.github.RateLimitTarget;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class GitHubPagePrefetcherTest {
+
+    private GitHubConnectorFactory factory;
+
+    private RateLimitChecker checker;
+
+    @Before
+    public void setUp() {
+        factory = new GitHubConnectorFactory(new OkHttpClient.Builder(), null, 0, 4, 60);
+        checker = new GitHubRateLimitScheduler(1.0, 0.5).checker("anonymous", Priority.BACKGROUND);
+    }
+
+    @After
+    public void tearDown() {
+        factory.close();
+    }
+
+    @Test
+    public void given__cursorPagedList__when__walkedWithPrefetch__then__sameItemsAndEachPageSentOnce()
+            throws Exception {
+        try (MockGitHub mock = new MockGitHub().withThreads(4)) {
+            MockUser user1 = mock.withUser("user1");
+            for (int i = 0; i < 250; i++) {
+                user1.withPublicRepo("repo" + i);
+            }
+            mock.profile("/repositories").withLatency(MockLatency.fixed(Duration.ofMillis(20)));
+            GitHub github = client(mock.open());
+            List<String> expected = new ArrayList<>();
+            for (GHRepository r : github.listAllPublicRepositories()) {
+                expected.add(r.getFullName());
+            }
+            long pages = mock.getMetrics().get("/repositories").getRequests();
+
+            List<String> actual = new ArrayList<>();
+            try (GitHubPagePrefetcher.Walk<GHRepository> walk =
+                    factory.getPrefetcher().prefetch(github.listAllPublicRepositories(), 2, checker)) {
+                while (walk.hasNext()) {
+                    actual.add(walk.next().getFullName());
+                }
+            }
+            assertThat(actual, is(expected));
+            assertThat(mock.getMetrics().get("/repositories").getRequests(), is(2 * pages));
+            assertThat(factory.getCoalescer().getPrefetched(), is(pages - 1));
+            assertThat(factory.getCoalescer().getInFlight(), is(0));
+        }
+    }
+
+    @Test
+    public void given__numberPagedList__when__walkedWithPrefetch__then__pagesFetchedAhead() throws Exception {
+        try (MockGitHub mock = new MockGitHub().withThreads(8)) {
+            MockOrganization org1 = mock.withOrg("org1");
+            for (int i = 0; i < 100; i++) {
+                org1.withPublicRepo("repo" + i);
+            }
+            String url = mock.open();
+            GitHub github = client(url);
+            List<String> actual = new ArrayList<>();
+            try (GitHubPagePrefetcher.Walk<GHRepository> walk = factory.getPrefetcher()
+                    .prefetch(github.getOrganization("org1").listRepositories().withPageSize(10), 4, checker)) {
+                while (walk.hasNext()) {
+                    actual.add(walk.next().getName());
+                }
+            }
+            assertThat(actual.size(), is(100));
+            assertThat(mock.getMetrics().get("/orgs/{org}/repos").getRequests(), is(10L));
+            // every page but the first was fetched ahead, and the prefetches are recorded like any other request
+            assertThat(factory.getCoalescer().getPrefetched(), is(9L));
+            assertThat(factory.getMetrics().getEndpoints().get(url).getRoutes().get("GET /orgs/{org}/repos")
+                    .getRequests(), is(10L));
+        }
+    }
+
+    @Test
+    public void given__walk__when__closedEarly__then__pagesAheadDropped() throws Exception {
+        try (MockGitHub mock = new MockGitHub().withThreads(8)) {
+            MockOrganization org1 = mock.withOrg("org1");
+            for (int i = 0; i < 100; i++) {
+                org1.withPublicRepo("repo" + i);
+            }
+            mock.profile("/orgs/org1/repos").withLatency(MockLatency.fixed(Duration.ofMillis(100)));
+            GitHub github = client(mock.open());
+            try (GitHubPagePrefetcher.Walk<GHRepository> walk = factory.getPrefetcher()
+                    .prefetch(github.getOrganization("org1").listRepositories().withPageSize(10), 3, checker)) {
+                assertThat(walk.hasNext(), is(true));
+                walk.next();
+            }
+            assertThat(mock.getMetrics().get("/orgs/{org}/repos").getRequests(), lessThanOrEqualTo(4L));
+            assertThat(factory.getCoalescer().getInFlight(), is(0));
+            // the dropped pages are not handed to the next walk through the list
+            assertThat(github.getOrganization("org1").listRepositories().withPageSize(10).toList().size(), is(100));
+            assertThat(factory.getCoalescer().getPrefetched(), is(0L));
+        }
+    }
+
+    @Test
+    public void given__scheduledClient__when__walkedWithPrefetch__then__prefetchesTakePermits() throws Exception {
+        GitHubRateLimitScheduler scheduler = new GitHubRateLimitScheduler(1.0, 0.5);
+        RateLimitChecker checker = scheduler.checker("cred1", Priority.BACKGROUND);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (MockGitHub mock = new MockGitHub().withThreads(8).withRateLimit(20, Duration.ofMinutes(1))) {
+            mock.withToken("token1", mock.withUser("user1"));
+            MockOrganization org1 = mock.withOrg("org1");
+            for (int i = 0; i < 100; i++) {
+                org1.withPublicRepo("repo" + i);
+            }
+            GitHub github = new GitHubBuilder()
+                    .withConnector(factory.connector())
+                    .withEndpoint(mock.open())
+                    .withOAuthToken("token1")
+                    .withRateLimitChecker(checker)
+                    .build();
+            GitHubPagePrefetcher.Walk<GHRepository> walk = factory.getPrefetcher()
+                    .prefetch(github.getOrganization("org1").listRepositories().withPageSize(10), 4, checker);
+            Future<?> scan = executor.submit(() -> {
+                while (walk.hasNext()) {
+                    walk.next();
+                }
+                return null;
+            });
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while ((scheduler.getWaiting("cred1", RateLimitTarget.CORE, Priority.BACKGROUND) < 1
+                            || scheduler.getRemaining("cred1", RateLimitTarget.CORE) > 10)
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            // half of the limit is kept for interactive requests, and the prefetches must not eat into it
+            assertThat(scheduler.getWaiting("cred1", RateLimitTarget.CORE, Priority.BACKGROUND), greaterThan(0));
+            assertThat(mock.getRateLimit().getAccepted(), lessThanOrEqualTo(10L));
+            assertThat(scan.isDone(), is(false));
+
+            walk.close();
+            deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (scheduler.getWaiting("cred1", RateLimitTarget.CORE, Priority.BACKGROUND) > 1
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            // the prefetches waiting for a permit give up once the walk is closed, only the iterator may keep waiting
+            assertThat(
+                    scheduler.getWaiting("cred1", RateLimitTarget.CORE, Priority.BACKGROUND), lessThanOrEqualTo(1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private GitHub client(String url) throws Exception {
+        return new GitHubBuilder()
+                .withConnector(factory.connector())
+                .withEndpoint(url)
+                .build();
+    }
+}
@@ -0,0 +1,77 @@
+package jenkins.plugins.github.api;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import jenkins.plugins.github.api.GitHubRateLimitScheduler.Priority;
+import jenkins.plugins.github.api.mock.MockGitHub;
+import org.junit.Test;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.RateLimitChecker;
+import org.kohsuke.github.RateLimitTarget;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class GitHubRateLimitSchedulerTest {
+
+    @Test
+    public void given__sharedToken__when__backgroundScansSaturate__then__pacedAndInteractiveGoesAhead()
+            throws Exception {
+        GitHubRateLimitScheduler scheduler = new GitHubRateLimitScheduler(0.25, 0.25);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (MockGitHub mock = new MockGitHub().withRateLimit(20, Duration.ofSeconds(2))) {
+            mock.withToken("token1", mock.withUser("user1"));
+            String url = mock.open();
+            List<Future<?>> scans = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                GitHub background = client(url, scheduler.checker("cred1", Priority.BACKGROUND));
+                scans.add(executor.submit(() -> {
+                    for (int j = 0; j < 15; j++) {
+                        // GitHub caches users, drop them so that every call makes a request
+                        background.refreshCache();
+                        background.getUser("user1");
+                    }
+                    return null;
+                }));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while ((scheduler.getRemaining("cred1", RateLimitTarget.CORE) > 5
+                            || scheduler.getWaiting("cred1", RateLimitTarget.CORE, Priority.BACKGROUND) < 2)
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(scheduler.getWaiting("cred1", RateLimitTarget.CORE, Priority.BACKGROUND), is(2));
+
+            GitHub interactive = client(url, scheduler.checker("cred1", Priority.INTERACTIVE));
+            long start = System.nanoTime();
+            interactive.getUser("user1");
+            assertThat(System.nanoTime() - start, lessThan(TimeUnit.SECONDS.toNanos(1)));
+            assertThat(scheduler.getWaiting("cred1", RateLimitTarget.CORE, Priority.BACKGROUND), is(2));
+
+            for (Future<?> scan : scans) {
+                scan.get(30, TimeUnit.SECONDS);
+            }
+            assertThat(mock.getRateLimit().getRejected(), is(0L));
+            assertThat(mock.getRateLimit().getAccepted(), greaterThanOrEqualTo(31L));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static GitHub client(String url, RateLimitChecker checker) throws Exception {
+        return new GitHubBuilder()
+                .withEndpoint(url)
+                .withOAuthToken("token1")
+                .withRateLimitChecker(checker)
+                .build();
+    }
+}
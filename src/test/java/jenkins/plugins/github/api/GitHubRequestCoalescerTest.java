@@ -0,0 +1,225 @@
+package jenkins.plugins.github.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import jenkins.plugins.github.api.mock.MockGitHub;
+import jenkins.plugins.github.api.mock.MockLatency;
+import jenkins.plugins.github.api.mock.MockUser;
+import okhttp3.OkHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class GitHubRequestCoalescerTest {
+
+    private GitHubConnectorFactory factory;
+
+    @Before
+    public void setUp() {
+        factory = new GitHubConnectorFactory(new OkHttpClient.Builder(), null, 0, 4, 60);
+    }
+
+    @After
+    public void tearDown() {
+        factory.close();
+    }
+
+    @Test
+    public void given__concurrentIdenticalGets__when__sameToken__then__sentOnceAndReplayed() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(20);
+        try (MockGitHub mock = new MockGitHub().withThreads(8)) {
+            MockUser user1 = mock.withUser("user1");
+            user1.withRepo("repo1", false);
+            mock.withToken("token1", user1);
+            mock.withToken("token2", user1);
+            mock.profile("/repos").withLatency(MockLatency.fixed(Duration.ofMillis(500)));
+            String url = mock.open();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                GitHub github = client(url, "token1");
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return github.getRepository("user1/repo1").getFullName();
+                }));
+            }
+            start.countDown();
+            for (Future<String> result : results) {
+                assertThat(result.get(), is("user1/repo1"));
+            }
+            long sent = mock.getMetrics().get("/repos/{owner}/{repo}").getRequests();
+            assertThat(sent, lessThanOrEqualTo(2L));
+            assertThat(factory.getCoalescer().getCoalesced(), is(20 - sent));
+            assertThat(factory.getCoalescer().getInFlight(), is(0));
+
+            client(url, "token1").getRepository("user1/repo1");
+            client(url, "token2").getRepository("user1/repo1");
+            assertThat(mock.getMetrics().get("/repos/{owner}/{repo}").getRequests(), is(sent + 2));
+            assertThat(factory.getMetrics().getEndpoints().get(url).getRoutes().get("GET /repos/{owner}/{repo}")
+                    .getRequests(), is(sent + 2));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void given__download__when__nobodyJoins__then__streamedWithoutBuffering() throws Exception {
+        GitHubRequestCoalescer coalescer = new GitHubRequestCoalescer();
+        long size = 1024 * 1024 + 1;
+        AtomicLong served = new AtomicLong();
+        AtomicReference<GitHubConnectorResponse> sent = new AtomicReference<>();
+        GitHubConnector delegate = request -> {
+            sent.set(new GitHubConnectorResponse(request, 200, Map.of("Content-Type", List.of("application/zip"))) {
+                @Override
+                public InputStream bodyStream() {
+                    return new InputStream() {
+                        @Override
+                        public int read() {
+                            byte[] b = new byte[1];
+                            return read(b, 0, 1) < 0 ? -1 : b[0];
+                        }
+
+                        @Override
+                        public int read(byte[] b, int off, int len) {
+                            int n = (int) Math.min(len, size - served.get());
+                            if (n <= 0) {
+                                return -1;
+                            }
+                            served.addAndGet(n);
+                            return n;
+                        }
+                    };
+                }
+
+                @Override
+                public void close() {}
+            });
+            return sent.get();
+        };
+
+        GitHubConnectorResponse response =
+                coalescer.decorate(delegate).send(get("https://api.github.com/repos/user1/repo1/zipball"));
+        assertThat(response, sameInstance(sent.get()));
+        assertThat(served.get(), is(0L));
+        assertThat(coalescer.getInFlight(), is(0));
+        long read = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream body = response.bodyStream()) {
+            for (int n; (n = body.read(buffer)) > 0; ) {
+                read += n;
+            }
+        }
+        assertThat(read, is(size));
+    }
+
+    @Test
+    public void given__claimedPrefetch__when__prefetchFails__then__requestSentAgain() throws Exception {
+        GitHubRequestCoalescer coalescer = new GitHubRequestCoalescer();
+        AtomicInteger calls = new AtomicInteger();
+        GitHubConnector delegate = request -> {
+            if (calls.incrementAndGet() == 1) {
+                // the prefetch fails once the request has claimed it
+                while (coalescer.getInFlight() > 0) {
+                    Thread.onSpinWait();
+                }
+                throw new IOException("Connection reset");
+            }
+            return new GitHubConnectorResponse(request, 200, Map.of()) {
+                @Override
+                public InputStream bodyStream() {
+                    return new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8));
+                }
+
+                @Override
+                public void close() {}
+            };
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            GitHubConnectorRequest request = get("https://api.github.com/repositories?since=100");
+            assertThat(coalescer.prefetch(delegate, request, executor, () -> true), notNullValue());
+            GitHubConnectorResponse response = coalescer.send(delegate, request);
+            assertThat(response.statusCode(), is(200));
+            assertThat(calls.get(), is(2));
+            assertThat(coalescer.getPrefetched(), is(0L));
+            assertThat(coalescer.getInFlight(), is(0));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static GitHubConnectorRequest get(String url) throws MalformedURLException {
+        URL u = new URL(url);
+        return new GitHubConnectorRequest() {
+            @Override
+            public String method() {
+                return "GET";
+            }
+
+            @Override
+            public Map<String, List<String>> allHeaders() {
+                return Map.of("Accept", List.of("application/vnd.github+json"));
+            }
+
+            @Override
+            public String header(String name) {
+                return "Accept".equalsIgnoreCase(name) ? "application/vnd.github+json" : null;
+            }
+
+            @Override
+            public String contentType() {
+                return null;
+            }
+
+            @Override
+            public InputStream body() {
+                return null;
+            }
+
+            @Override
+            public URL url() {
+                return u;
+            }
+
+            @Override
+            public boolean hasBody() {
+                return false;
+            }
+        };
+    }
+
+    private GitHub client(String url, String token) throws Exception {
+        return new GitHubBuilder()
+                .withConnector(factory.connector())
+                .withEndpoint(url)
+                .withOAuthToken(token)
+                .build();
+    }
+}
@@ -2,8 +2,13 @@ package jenkins.plugins.github.api;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import jenkins.plugins.github.api.mock.MockGitHub;
 import jenkins.plugins.github.api.mock.MockOrganization;
@@ -84,6 +89,21 @@ public class SmokeTest {
         }
     }
 
+    @Test
+    public void given__replacedOwners__when__listingRepos__then__onlyReplacementReposListed() throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            mock.withOrg("org1").withPublicRepo("repo1");
+            mock.withUser("user1").withPublicRepo("repo2");
+            mock.withOrg("org1").withPublicRepo("repo3");
+            mock.withUser("user1");
+            Set<String> names = new TreeSet<>();
+            for (GHRepository r: openAndConnect(mock).listAllPublicRepositories()) {
+                names.add(r.getFullName());
+            }
+            assertThat(names, contains("org1/repo3"));
+        }
+    }
+
     @Test
     public void given__veryBasicMockGitHub__when__listingManyRepos__then__reposListed() throws Exception {
         try (MockGitHub mock = new MockGitHub()) {
@@ -98,7 +118,7 @@ public class SmokeTest {
             for (GHRepository r: openAndConnect(mock).listAllPublicRepositories()) {
                 actual.add(r.getFullName());
             }
-            assertThat(actual, is(actual));
+            assertThat(actual, is(expected));
         }
     }
 
@@ -146,4 +166,92 @@ public class SmokeTest {
             assertThat(actual.getPublicRepoCount(), is(expected.getPublicRepos()));
         }
     }
+
+    @Test
+    public void given__threadedMockGitHub__when__gettingUsersConcurrentlyWhileMutating__then__usersReturned()
+            throws Exception {
+        try (MockGitHub mock = new MockGitHub().withThreads(8)) {
+            for (int i = 0; i < 16; i++) {
+                mock.withUser("user" + i).withPublicRepo("repo");
+            }
+            GitHub github = openAndConnect(mock);
+            ExecutorService clients = Executors.newFixedThreadPool(16);
+            try {
+                List<Future<String>> logins = new ArrayList<>();
+                for (int i = 0; i < 16; i++) {
+                    String login = "user" + i;
+                    logins.add(clients.submit(() -> github.getUser(login).getLogin()));
+                }
+                for (int i = 0; i < 16; i++) {
+                    mock.getUsers().get("user" + i).withPublicRepo("another").withName("User " + i);
+                }
+                for (int i = 0; i < 16; i++) {
+                    assertThat(logins.get(i).get(), is("user" + i));
+                }
+            } finally {
+                clients.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    public void given__usersFollowingEachOther__when__gettingFollowers__then__countsAndListsMatch() throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            mock.withUser("user1");
+            for (int i = 2; i <= 40; i++) {
+                mock.withUser("user" + i).withFollowing(Set.of("user1"));
+            }
+            mock.getUsers().get("user2").withFollowing(Set.of("user1", "user3"));
+            mock.getUsers().get("user40").withFollowing(Set.of());
+            GitHub github = openAndConnect(mock);
+            GHUser user1 = github.getUser("user1");
+            assertThat(user1.getFollowersCount(), is(38));
+            Set<String> followers = user1.listFollowers().toList().stream()
+                    .map(GHUser::getLogin)
+                    .collect(Collectors.toCollection(TreeSet::new));
+            assertThat(followers.size(), is(38));
+            assertThat(followers.contains("user40"), is(false));
+            assertThat(github.getUser("user3").getFollowersCount(), is(1));
+            assertThat(github.getUser("user2").getFollowingCount(), is(2));
+        }
+    }
+
+    @Test
+    public void given__manyFollowers__when__listingWithSmallPages__then__listedInLoginOrder() throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            mock.withUser("user1");
+            List<String> logins = new ArrayList<>();
+            for (int i = 0; i < 250; i++) {
+                String login = String.format("follower%03d", i);
+                mock.withUser(login).withFollowing(Set.of("user1"));
+                logins.add(login);
+            }
+            mock.getUsers().get("user1").withFollowing(Set.copyOf(logins));
+            GHUser user1 = openAndConnect(mock).getUser("user1");
+            assertThat(user1.listFollowers().withPageSize(10).toList().stream()
+                    .map(GHUser::getLogin)
+                    .collect(Collectors.toList()), is(logins));
+            assertThat(user1.listFollows().withPageSize(10).toList().stream()
+                    .map(GHUser::getLogin)
+                    .collect(Collectors.toList()), is(logins));
+            assertThat(mock.getMetrics().get("/users/{user}/followers").getRequests(), is(25L));
+        }
+    }
+
+    @Test
+    public void given__orgWithManyRepos__when__listingWithLargePages__then__reposListed() throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            MockOrganization org1 = mock.withOrg("org1").withPrivateRepo("secret");
+            Set<String> expected = new TreeSet<>();
+            for (int i = 0; i < 250; i++) {
+                org1.withPublicRepo("repo" + i);
+                expected.add("org1/repo" + i);
+            }
+            Set<String> actual = new TreeSet<>();
+            for (GHRepository r : openAndConnect(mock).getOrganization("org1").listRepositories().withPageSize(100)) {
+                actual.add(r.getFullName());
+            }
+            assertThat(actual, is(expected));
+        }
+    }
 }
@@ -0,0 +1,44 @@
+package jenkins.plugins.github.api.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the JMH benchmarks in this package at 1, 8 and 64 threads, reporting throughput and, through the GC profiler,
+ * allocation rate. Not matched by the default surefire includes, run it with {@code mvn -P benchmark test}; the
+ * results are written to {@code target/jmh-report-<threads>.json}.
+ */
+public class BenchmarkRunner {
+
+    private static final int[] THREADS = {1, 8, 64};
+
+    @Test
+    public void runJmhBenchmarks() throws Exception {
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                    .include(BenchmarkRunner.class.getPackage().getName() + "\\..*Benchmark")
+                    .threads(threads)
+                    .forks(1)
+                    // the forks do not inherit the system properties surefire sets, see the pom
+                    .jvmArgsAppend("-Dsun.net.httpserver.nodelay=true")
+                    .warmupIterations(3)
+                    .warmupTime(TimeValue.seconds(2))
+                    .measurementIterations(5)
+                    .measurementTime(TimeValue.seconds(5))
+                    .timeUnit(TimeUnit.SECONDS)
+                    .addProfiler(GCProfiler.class)
+                    .shouldFailOnError(true)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("target/jmh-report-" + threads + ".json")
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package jenkins.plugins.github.api.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import jenkins.plugins.github.api.mock.MockGitHub;
+import jenkins.plugins.github.api.mock.MockOrganization;
+import okhttp3.OkHttpClient;
+import org.kohsuke.github.GHOrganization;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GHUser;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.extras.okhttp3.OkHttpGitHubConnector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the bundled github-api client against {@link MockGitHub} with the library's default connector and with
+ * {@link OkHttpGitHubConnector}. Run with {@code mvn -P benchmark test}, see {@link BenchmarkRunner}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GitHubClientBenchmark {
+
+    /**
+     * The mock, shared by all benchmark threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Mock {
+        @Param({"1000"})
+        public int repositories;
+
+        /**
+         * The gzip level of the mock's responses, {@code 0} to measure uncompressed responses.
+         */
+        @Param({"-1", "0"})
+        public int compression;
+
+        MockGitHub mock;
+        String url;
+        OkHttpClient okHttpClient;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            // enough server threads that the mock is never the bottleneck at 64 client threads
+            mock = new MockGitHub().withThreads(64).withCompression(compression);
+            mock.withUser("user1")
+                    .withName("User One")
+                    .withAvatarUrl("http://avatar.test/user1")
+                    .withBlog("https://user1.test")
+                    .withPublicRepo("repo1");
+            MockOrganization org1 = mock.withOrg("org1")
+                    .withDescription("Organization One")
+                    .withAvatarUrl("http://avatar.test/org1");
+            for (int i = 0; i < repositories; i++) {
+                org1.withPublicRepo("repo" + i);
+            }
+            url = mock.open();
+            okHttpClient = new OkHttpClient();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            okHttpClient.connectionPool().evictAll();
+            okHttpClient.dispatcher().executorService().shutdown();
+            mock.close();
+        }
+    }
+
+    /**
+     * The client, one per benchmark thread so that the threads do not contend on the client's caches.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+        @Param({"default", "okhttp"})
+        public String connector;
+
+        GitHub github;
+
+        @Setup(Level.Trial)
+        public void setUp(Mock mock) throws IOException {
+            if ("okhttp".equals(connector)) {
+                github = new GitHubBuilder()
+                        .withConnector(new OkHttpGitHubConnector(mock.okHttpClient))
+                        .withEndpoint(mock.url)
+                        .build();
+            } else {
+                github = GitHub.connectToEnterpriseAnonymously(mock.url);
+            }
+        }
+    }
+
+    @Benchmark
+    public GHUser getUser(Client client) throws IOException {
+        // GitHub caches users and organizations, drop them so that every invocation makes a request
+        client.github.refreshCache();
+        return client.github.getUser("user1");
+    }
+
+    @Benchmark
+    public GHOrganization getOrganization(Client client) throws IOException {
+        client.github.refreshCache();
+        return client.github.getOrganization("org1");
+    }
+
+    @Benchmark
+    public void listAllPublicRepositories(Client client, Blackhole blackhole) {
+        for (GHRepository r : client.github.listAllPublicRepositories()) {
+            blackhole.consume(r);
+        }
+    }
+}
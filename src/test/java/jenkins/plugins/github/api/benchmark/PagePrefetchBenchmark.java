@@ -0,0 +1,116 @@
+package jenkins.plugins.github.api.benchmark;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import jenkins.plugins.github.api.GitHubConnectorFactories;
+import jenkins.plugins.github.api.GitHubConnectorFactory;
+import jenkins.plugins.github.api.GitHubPagePrefetcher;
+import jenkins.plugins.github.api.GitHubRateLimitScheduler;
+import jenkins.plugins.github.api.GitHubRateLimitScheduler.Priority;
+import jenkins.plugins.github.api.mock.MockGitHub;
+import jenkins.plugins.github.api.mock.MockLatency;
+import jenkins.plugins.github.api.mock.MockOrganization;
+import jenkins.plugins.github.api.mock.MockUser;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.PagedIterable;
+import org.kohsuke.github.RateLimitChecker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures walking long lists through {@link GitHubPagePrefetcher} against a {@link MockGitHub} answering every page
+ * after a fixed latency, while the caller spends some time on each item. A depth of {@code 0} is the plain walk that
+ * pays each round trip after processing the previous page. Run with {@code mvn -P benchmark test}, see
+ * {@link BenchmarkRunner}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class PagePrefetchBenchmark {
+
+    @Param({"0", "2", "4"})
+    public int depth;
+
+    /**
+     * The latency of each page in milliseconds.
+     */
+    @Param({"50"})
+    public int latency;
+
+    /**
+     * The CPU spent on each item, in {@link Blackhole#consumeCPU(long)} tokens.
+     */
+    @Param({"10000"})
+    public long work;
+
+    MockGitHub mock;
+    GitHubConnectorFactory factory;
+    RateLimitChecker checker;
+    GitHub github;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mock = new MockGitHub().withThreads(16);
+        MockUser user1 = mock.withUser("user1");
+        MockOrganization org1 = mock.withOrg("org1");
+        for (int i = 0; i < 1000; i++) {
+            user1.withPublicRepo("repo" + i);
+            org1.withPublicRepo("repo" + i);
+        }
+        mock.profile("/repositories").withLatency(MockLatency.fixed(Duration.ofMillis(latency)));
+        mock.profile("/orgs/org1/repos").withLatency(MockLatency.fixed(Duration.ofMillis(latency)));
+        String url = mock.open();
+        factory = GitHubConnectorFactories.create();
+        checker = GitHubRateLimitScheduler.get().checker("benchmark", Priority.BACKGROUND);
+        github = new GitHubBuilder()
+                .withConnector(factory.connector())
+                .withEndpoint(url)
+                .withRateLimitChecker(checker)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        GitHubConnectorFactories.close(factory);
+        mock.close();
+    }
+
+    /**
+     * The cursor paged list, whose pages are fetched one after the other.
+     */
+    @Benchmark
+    public void listAllPublicRepositories(Blackhole blackhole) throws IOException {
+        walk(github.listAllPublicRepositories().withPageSize(100), blackhole);
+    }
+
+    /**
+     * The number paged list, whose pages are fetched up to {@link #depth} at once.
+     */
+    @Benchmark
+    public void listOrganizationRepositories(Blackhole blackhole) throws IOException {
+        walk(github.getOrganization("org1").listRepositories().withPageSize(100), blackhole);
+    }
+
+    private void walk(PagedIterable<GHRepository> iterable, Blackhole blackhole) {
+        try (GitHubPagePrefetcher.Walk<GHRepository> walk =
+                factory.getPrefetcher().prefetch(iterable, depth, checker)) {
+            while (walk.hasNext()) {
+                blackhole.consume(walk.next());
+                Blackhole.consumeCPU(work);
+            }
+        }
+    }
+}
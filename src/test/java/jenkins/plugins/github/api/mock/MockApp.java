@@ -0,0 +1,321 @@
+package jenkins.plugins.github.api.mock;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A GitHub App registered with a {@link MockGitHub}, see {@link MockGitHub#withApp(long, String, PublicKey)}.
+ * <p>
+ * Requests to {@code /app} and {@code /app/installations/...} must carry a JSON web token signed with RS256 by the
+ * private key of the app, issued by the app id and valid for no more than 10 minutes, as on GitHub.
+ * {@code POST /app/installations/{id}/access_tokens} exchanges such a token for an installation token that expires
+ * after {@link #withTokenLifetime(Duration)} and authenticates {@code /installation/repositories}. The counters let
+ * tests and benchmarks assert how often a client minted and exchanged tokens.
+ */
+public final class MockApp {
+    private static final Duration MAX_JWT_LIFETIME = Duration.ofMinutes(10);
+    private static final Duration CLOCK_SKEW = Duration.ofSeconds(60);
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    private final MockGitHub github;
+    private final long id;
+    private final String slug;
+    private final PublicKey publicKey;
+    private final long created = System.currentTimeMillis();
+    private final NavigableMap<Long, Installation> installations = new ConcurrentSkipListMap<>();
+    private final Map<String, Token> tokens = new ConcurrentHashMap<>();
+    /**
+     * The signatures of the JSON web tokens seen so far, each of which a client had to mint.
+     */
+    private final Set<String> jwts = ConcurrentHashMap.newKeySet();
+    private final AtomicLong jwtRequests = new AtomicLong();
+    private final AtomicLong exchanges = new AtomicLong();
+    private final AtomicLong tokenRequests = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final SecureRandom random = new SecureRandom();
+    private volatile Duration tokenLifetime = Duration.ofHours(1);
+
+    MockApp(MockGitHub github, long id, String slug, PublicKey publicKey) {
+        this.github = github;
+        this.id = id;
+        this.slug = slug;
+        this.publicKey = publicKey;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getSlug() {
+        return slug;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * Sets how long installation tokens are valid, one hour by default as on GitHub.
+     *
+     * @param tokenLifetime the lifetime of the installation tokens issued from now on.
+     * @return {@code this} for method chaining.
+     */
+    public MockApp withTokenLifetime(Duration tokenLifetime) {
+        this.tokenLifetime = tokenLifetime;
+        return this;
+    }
+
+    /**
+     * Installs this app on the repositories of an owner.
+     *
+     * @param account the user or organization.
+     * @return the id of the installation.
+     */
+    public long withInstallation(MockOwner<?> account) {
+        long installationId = github.nextId();
+        installations.put(installationId, new Installation(installationId, account, System.currentTimeMillis()));
+        return installationId;
+    }
+
+    public NavigableMap<Long, Installation> installations() {
+        return Collections.unmodifiableNavigableMap(installations);
+    }
+
+    /**
+     * Returns the installation of this app on the repositories of an owner.
+     *
+     * @param login the login of the owner.
+     * @return the installation or {@code null} if the app is not installed for the owner.
+     */
+    public Installation installation(String login) {
+        for (Installation installation : installations.values()) {
+            if (installation.account.getLogin().equals(login)) {
+                return installation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of distinct JSON web tokens that clients minted and presented.
+     *
+     * @return the number of minted JSON web tokens.
+     */
+    public long getJwtCount() {
+        return jwts.size();
+    }
+
+    /**
+     * Returns the number of requests that were authenticated with a valid JSON web token.
+     *
+     * @return the number of requests.
+     */
+    public long getJwtRequests() {
+        return jwtRequests.get();
+    }
+
+    /**
+     * Returns the number of installation tokens issued.
+     *
+     * @return the number of exchanges of a JSON web token for an installation token.
+     */
+    public long getTokenExchanges() {
+        return exchanges.get();
+    }
+
+    /**
+     * Returns the number of requests that were authenticated with a valid installation token.
+     *
+     * @return the number of requests.
+     */
+    public long getTokenRequests() {
+        return tokenRequests.get();
+    }
+
+    /**
+     * Returns the number of requests refused because of a missing, malformed, badly signed or expired credential.
+     *
+     * @return the number of refused requests.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Checks the JSON web token in the {@code Authorization} header of a request.
+     *
+     * @param authorization the header.
+     * @param factory       the factory to parse the claims with.
+     * @return {@code null} if the token is valid, otherwise the reason it is not.
+     */
+    String verifyJwt(String authorization, JsonFactory factory) {
+        String reason = checkJwt(authorization, factory);
+        (reason == null ? jwtRequests : rejected).incrementAndGet();
+        return reason;
+    }
+
+    private String checkJwt(String authorization, JsonFactory factory) {
+        if (authorization == null || !authorization.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return "A JSON web token could not be decoded";
+        }
+        String jwt = authorization.substring(7).trim();
+        String[] parts = jwt.split("\\.", -1);
+        if (parts.length != 3) {
+            return "A JSON web token could not be decoded";
+        }
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        try {
+            Map<String, Object> header = claims(factory, decoder.decode(parts[0]));
+            if (!"RS256".equals(header.get("alg"))) {
+                return "'alg' must be RS256";
+            }
+            Signature signature = Signature.getInstance("SHA256withRSA");
+            signature.initVerify(publicKey);
+            signature.update((parts[0] + "." + parts[1]).getBytes(StandardCharsets.US_ASCII));
+            if (!signature.verify(decoder.decode(parts[2]))) {
+                return "A JSON web token could not be decoded";
+            }
+            Map<String, Object> claims = claims(factory, decoder.decode(parts[1]));
+            if (!String.valueOf(id).equals(String.valueOf(claims.get("iss")))) {
+                return "'Issuer' claim ('iss') must match the app id";
+            }
+            if (!(claims.get("iat") instanceof Long iat) || !(claims.get("exp") instanceof Long exp)) {
+                return "'Issued at' claim ('iat') and 'Expiration time' claim ('exp') must be numeric values";
+            }
+            long now = System.currentTimeMillis() / 1000;
+            if (iat > now + CLOCK_SKEW.getSeconds()) {
+                return "'Issued at' claim ('iat') must be an Integer representing a time in the past";
+            }
+            if (exp <= now) {
+                return "'Expiration time' claim ('exp') must be a numeric value representing the future time at "
+                        + "which the assertion expires";
+            }
+            if (exp - iat > MAX_JWT_LIFETIME.getSeconds()) {
+                return "'Expiration time' claim ('exp') is too far in the future";
+            }
+        } catch (IOException | IllegalArgumentException | GeneralSecurityException e) {
+            return "A JSON web token could not be decoded";
+        }
+        jwts.add(parts[2]);
+        return null;
+    }
+
+    private static Map<String, Object> claims(JsonFactory factory, byte[] json) throws IOException {
+        Map<String, Object> claims = new ConcurrentHashMap<>();
+        try (JsonParser p = factory.createParser(json)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Not a JSON object");
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String name = p.currentName();
+                JsonToken value = p.nextToken();
+                if (value == JsonToken.VALUE_NUMBER_INT) {
+                    claims.put(name, p.getLongValue());
+                } else if (value.isScalarValue() && value != JsonToken.VALUE_NULL) {
+                    claims.put(name, p.getText());
+                } else {
+                    p.skipChildren();
+                }
+            }
+        }
+        return claims;
+    }
+
+    /**
+     * Issues an installation token.
+     *
+     * @param installation the installation.
+     * @return the token.
+     */
+    Token exchange(Installation installation) {
+        long now = System.currentTimeMillis();
+        tokens.values().removeIf(t -> t.expires <= now);
+        StringBuilder value = new StringBuilder("ghs_");
+        for (int i = 0; i < 36; i++) {
+            value.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        Token token = new Token(value.toString(), installation, now + tokenLifetime.toMillis());
+        tokens.put(token.token, token);
+        exchanges.incrementAndGet();
+        return token;
+    }
+
+    /**
+     * Returns the installation that the installation token in the {@code Authorization} header of a request belongs
+     * to.
+     *
+     * @param authorization the header.
+     * @return the installation or {@code null} if the header holds no current installation token of this app.
+     */
+    Installation verifyToken(String authorization) {
+        if (authorization == null) {
+            return null;
+        }
+        int index = authorization.indexOf(' ');
+        Token token = tokens.get(index < 0 ? authorization : authorization.substring(index + 1).trim());
+        if (token == null || token.expires <= System.currentTimeMillis()) {
+            return null;
+        }
+        tokenRequests.incrementAndGet();
+        return token.installation;
+    }
+
+    void rejected() {
+        rejected.incrementAndGet();
+    }
+
+    /**
+     * An installation of the app on the repositories of a user or organization.
+     */
+    public static final class Installation {
+        private final long id;
+        private final MockOwner<?> account;
+        private final long created;
+
+        Installation(long id, MockOwner<?> account, long created) {
+            this.id = id;
+            this.account = account;
+            this.created = created;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public MockOwner<?> getAccount() {
+            return account;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+    }
+
+    static final class Token {
+        final String token;
+        final Installation installation;
+        final long expires;
+
+        Token(String token, Installation installation, long expires) {
+            this.token = token;
+            this.installation = installation;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package jenkins.plugins.github.api.mock;
+
+/**
+ * A branch of a {@link MockRepository}. Branches are values: moving or protecting a branch replaces it.
+ */
+public final class MockBranch {
+    private final String name;
+    private final String sha;
+    private final boolean _protected;
+
+    MockBranch(String name, String sha, boolean _protected) {
+        this.name = name;
+        this.sha = sha;
+        this._protected = _protected;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the commit that the branch points at.
+     *
+     * @return the SHA-1 of the head commit.
+     */
+    public String getSha() {
+        return sha;
+    }
+
+    public boolean isProtected() {
+        return _protected;
+    }
+}
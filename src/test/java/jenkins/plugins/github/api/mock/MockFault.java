@@ -0,0 +1,93 @@
+package jenkins.plugins.github.api.mock;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A failure injected into the handling of a request in place of, or around, the normal response.
+ */
+@FunctionalInterface
+public interface MockFault {
+
+    /**
+     * Handles the request in a faulty way.
+     *
+     * @param he    the exchange.
+     * @param chain the rest of the chain, for faults that degrade rather than replace the normal response.
+     * @throws IOException if the exchange fails.
+     */
+    void inject(HttpExchange he, Filter.Chain chain) throws IOException;
+
+    /**
+     * Answers with a server error, as GitHub does with the occasional {@code 502} from its load balancers.
+     *
+     * @param status the status, e.g. {@code 502}.
+     * @return the fault.
+     */
+    static MockFault status(int status) {
+        byte[] body = "{\"message\":\"Server Error\"}".getBytes(StandardCharsets.UTF_8);
+        return (he, chain) -> {
+            he.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+            he.sendResponseHeaders(status, body.length);
+            he.getResponseBody().write(body);
+            he.close();
+        };
+    }
+
+    /**
+     * Drops the connection without sending a response.
+     *
+     * @return the fault.
+     */
+    static MockFault reset() {
+        // closing an exchange before the response headers are sent closes the underlying connection
+        return (he, chain) -> he.close();
+    }
+
+    /**
+     * Sends the normal response but trickles its body out in small chunks.
+     *
+     * @param chunkSize the number of bytes sent at a time.
+     * @param interval  the pause after each chunk.
+     * @return the fault.
+     */
+    static MockFault slowDrip(int chunkSize, Duration interval) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        long nanos = interval.toNanos();
+        return (he, chain) -> {
+            he.setStreams(null, new FilterOutputStream(he.getResponseBody()) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    while (len > 0) {
+                        int n = Math.min(len, chunkSize);
+                        out.write(b, off, n);
+                        out.flush();
+                        off += n;
+                        len -= n;
+                        try {
+                            TimeUnit.NANOSECONDS.sleep(nanos);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new InterruptedIOException();
+                        }
+                    }
+                }
+
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[] {(byte) b}, 0, 1);
+                }
+            });
+            chain.doFilter(he);
+        };
+    }
+}
@@ -0,0 +1,554 @@
+package jenkins.plugins.github.api.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The files of the default branch of a {@link MockRepository}: explicit files, such as a {@code Jenkinsfile}, laid
+ * over a synthetic tree generated from a seed. The synthetic files live under {@code src/} in directories of at most
+ * {@link #withFanOut(int)} entries and their content is generated on demand, so a tree of hundreds of thousands of
+ * files costs no memory and can be listed and read by streaming.
+ * <p>
+ * Explicit files have their git blob SHA-1. Synthetic entries have SHA-1 shaped ids that encode their position in the
+ * tree, so that they can be looked up without an index, and are not hashes of their content.
+ */
+public final class MockFileTree {
+    private static final String ROOT = "src";
+    private static final byte FILE = 1;
+    private static final byte DIRECTORY = 2;
+
+    private final long seed;
+    private final int files;
+    private volatile int fanOut = 32;
+    private volatile int minSize = 64;
+    private volatile int maxSize = 16 * 1024;
+    /**
+     * The content of the explicit files keyed by path.
+     */
+    private final NavigableMap<String, byte[]> explicit = new ConcurrentSkipListMap<>();
+    /**
+     * The paths of the explicit files and their directories keyed by SHA-1.
+     */
+    private final Map<String, String> explicitShas = new ConcurrentHashMap<>();
+
+    private MockFileTree(long seed, int files) {
+        if (files < 0) {
+            throw new IllegalArgumentException("File count must not be negative: " + files);
+        }
+        this.seed = seed;
+        this.files = files;
+    }
+
+    /**
+     * Creates a tree with no synthetic files.
+     *
+     * @return the tree.
+     */
+    public static MockFileTree empty() {
+        return new MockFileTree(0, 0);
+    }
+
+    /**
+     * Creates a tree of synthetic files.
+     *
+     * @param seed  the seed that the names, sizes and content of the files are generated from.
+     * @param files the number of synthetic files.
+     * @return the tree.
+     */
+    public static MockFileTree synthetic(long seed, int files) {
+        return new MockFileTree(seed, files);
+    }
+
+    /**
+     * Sets the maximum number of entries of each synthetic directory.
+     *
+     * @param fanOut the number of files per directory and of directories per parent directory.
+     * @return {@code this} for method chaining.
+     */
+    public MockFileTree withFanOut(int fanOut) {
+        if (fanOut < 2) {
+            throw new IllegalArgumentException("Fan out must be at least 2: " + fanOut);
+        }
+        this.fanOut = fanOut;
+        return this;
+    }
+
+    /**
+     * Sets the range of the sizes of the synthetic files, which are drawn log-uniformly so that small files dominate.
+     *
+     * @param minSize the smallest size in bytes.
+     * @param maxSize the largest size in bytes.
+     * @return {@code this} for method chaining.
+     */
+    public MockFileTree withFileSizes(int minSize, int maxSize) {
+        if (minSize < 0 || maxSize < minSize) {
+            throw new IllegalArgumentException("Invalid file size range: " + minSize + ".." + maxSize);
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    /**
+     * Adds or replaces an explicit file.
+     *
+     * @param path    the path of the file, e.g. {@code Jenkinsfile}.
+     * @param content the content of the file.
+     * @return {@code this} for method chaining.
+     */
+    public MockFileTree withFile(String path, String content) {
+        String normalized = normalize(path);
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException("A file needs a path");
+        }
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        explicit.put(normalized, bytes);
+        explicitShas.put(gitSha("blob", bytes), normalized);
+        for (int slash = normalized.lastIndexOf('/'); slash > 0; slash = normalized.lastIndexOf('/', slash - 1)) {
+            String dir = normalized.substring(0, slash);
+            explicitShas.put(explicitTreeSha(dir), dir);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the number of files in the tree.
+     *
+     * @return the number of synthetic and explicit files.
+     */
+    public long getFileCount() {
+        long count = files;
+        for (String path : explicit.keySet()) {
+            Entry synthetic = syntheticEntry(path);
+            if (synthetic == null || synthetic.isDirectory()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the SHA-1 of the root tree.
+     *
+     * @return the SHA-1 of the root tree.
+     */
+    public String getRootSha() {
+        return id(DIRECTORY, 0, -1);
+    }
+
+    /**
+     * Returns the entry at a path.
+     *
+     * @param path the path, the empty string for the root.
+     * @return the entry or {@code null} if there is no such file or directory.
+     */
+    public Entry entry(String path) {
+        String normalized = normalize(path);
+        if (normalized.isEmpty()) {
+            return new Entry("", true, 0, getRootSha(), -1, 0);
+        }
+        byte[] content = explicit.get(normalized);
+        if (content != null) {
+            return new Entry(normalized, false, content.length, gitSha("blob", content), -1, 0);
+        }
+        Entry synthetic = syntheticEntry(normalized);
+        if (synthetic != null) {
+            return synthetic;
+        }
+        String prefix = normalized + "/";
+        String next = explicit.ceilingKey(prefix);
+        return next != null && next.startsWith(prefix)
+                ? new Entry(normalized, true, 0, explicitTreeSha(normalized), -1, 0)
+                : null;
+    }
+
+    /**
+     * Returns the entry with a SHA-1.
+     *
+     * @param sha the SHA-1 of a file or directory.
+     * @return the entry or {@code null} if there is no such file or directory.
+     */
+    public Entry entryBySha(String sha) {
+        String path = explicitShas.get(sha);
+        if (path != null) {
+            return entry(path);
+        }
+        if (sha.equals(getRootSha())) {
+            return entry("");
+        }
+        byte[] bytes;
+        try {
+            bytes = HexFormat.of().parseHex(sha);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (bytes.length != 20 || !sha.equals(id(bytes[4], ByteBuffer.wrap(bytes, 5, 8).getLong(), bytes[13]))) {
+            return null;
+        }
+        long number = ByteBuffer.wrap(bytes, 5, 8).getLong();
+        return bytes[4] == FILE ? syntheticFile(number) : syntheticDirectory(bytes[13], number);
+    }
+
+    /**
+     * Lists the entries below a directory depth first, each directory followed by its entries in name order, without
+     * materializing the listing.
+     *
+     * @param directory the directory.
+     * @param recursive {@code true} to list the entries of the subdirectories too.
+     * @return the entries.
+     */
+    public Iterator<Entry> list(Entry directory, boolean recursive) {
+        Deque<Iterator<Entry>> stack = new ArrayDeque<>();
+        stack.push(children(directory).iterator());
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                while (!stack.isEmpty() && !stack.peek().hasNext()) {
+                    stack.pop();
+                }
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public Entry next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Entry entry = stack.peek().next();
+                if (recursive && entry.isDirectory()) {
+                    stack.push(children(entry).iterator());
+                }
+                return entry;
+            }
+        };
+    }
+
+    /**
+     * Opens the content of a file, which for synthetic files is generated as it is read.
+     *
+     * @param file the file.
+     * @return the content.
+     */
+    public InputStream open(Entry file) {
+        if (file.isDirectory()) {
+            throw new IllegalArgumentException(file.getPath() + " is a directory");
+        }
+        byte[] content = explicit.get(file.getPath());
+        if (content != null) {
+            return new ByteArrayInputStream(content);
+        }
+        return new SyntheticContent(new SplittableRandom(mix(seed, FILE, file.number)), file.getSize());
+    }
+
+    /**
+     * Returns the immediate entries of a directory in name order, at most {@link #fanOut} synthetic entries plus the
+     * explicit ones.
+     */
+    private List<Entry> children(Entry directory) {
+        TreeMap<String, Entry> result = new TreeMap<>();
+        int f = fanOut;
+        int levels = levels();
+        if (directory.getPath().isEmpty()) {
+            if (files > 0) {
+                result.put(ROOT, syntheticDirectory(0, 0));
+            }
+        } else if (directory.level >= 0 && directory.level < levels) {
+            for (int c = 0; c < f; c++) {
+                long child = directory.number * f + c;
+                if (child * pow(f, levels - directory.level - 1) >= leaves()) {
+                    break;
+                }
+                Entry entry = syntheticDirectory(directory.level + 1, child);
+                result.put(entry.getName(), entry);
+            }
+        } else if (directory.level == levels) {
+            for (int c = 0; c < f; c++) {
+                long file = directory.number * f + c;
+                if (file >= files) {
+                    break;
+                }
+                Entry entry = syntheticFile(file);
+                result.put(entry.getName(), entry);
+            }
+        }
+        String prefix = directory.getPath().isEmpty() ? "" : directory.getPath() + "/";
+        for (String path : explicit.tailMap(prefix, true).keySet()) {
+            if (!path.startsWith(prefix)) {
+                break;
+            }
+            int slash = path.indexOf('/', prefix.length());
+            String name = path.substring(prefix.length(), slash < 0 ? path.length() : slash);
+            if (!result.containsKey(name) || slash < 0) {
+                result.put(name, entry(prefix + name));
+            }
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    private Entry syntheticEntry(String path) {
+        if (files == 0 || !(path.equals(ROOT) || path.startsWith(ROOT + "/"))) {
+            return null;
+        }
+        String[] segments = path.split("/");
+        int f = fanOut;
+        int levels = levels();
+        long number = 0;
+        for (int level = 1; level < segments.length; level++) {
+            String segment = segments[level];
+            boolean file = level == levels + 1;
+            String expected = file ? "f" : "d";
+            int digits = digits(f);
+            if (level > levels + 1
+                    || !segment.startsWith(expected)
+                    || segment.length() != digits + 1 + (file ? 4 : 0)
+                    || (file && !segment.endsWith(".txt"))) {
+                return null;
+            }
+            int c;
+            try {
+                c = Integer.parseInt(segment.substring(1, 1 + digits));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (c >= f) {
+                return null;
+            }
+            number = number * f + c;
+            if (file) {
+                return number < files ? syntheticFile(number) : null;
+            }
+        }
+        int level = segments.length - 1;
+        return number * pow(f, levels - level) < leaves() ? syntheticDirectory(level, number) : null;
+    }
+
+    private Entry syntheticDirectory(int level, long number) {
+        StringBuilder path = new StringBuilder(ROOT);
+        int f = fanOut;
+        for (int l = level; l >= 1; l--) {
+            path.insert(ROOT.length(), "/d" + pad(number / pow(f, level - l) % f, f));
+        }
+        return new Entry(path.toString(), true, 0, id(DIRECTORY, number, level), level, number);
+    }
+
+    private Entry syntheticFile(long number) {
+        int f = fanOut;
+        Entry parent = syntheticDirectory(levels(), number / f);
+        String path = parent.getPath() + "/f" + pad(number % f, f) + ".txt";
+        SplittableRandom random = new SplittableRandom(mix(seed, FILE, number));
+        double logMin = Math.log(Math.max(1, minSize));
+        double logMax = Math.log(Math.max(1, maxSize));
+        double log = logMin + random.nextDouble() * (logMax - logMin);
+        long size = minSize == maxSize ? minSize : Math.min(maxSize, Math.max(minSize, (long) Math.exp(log)));
+        return new Entry(path, false, size, id(FILE, number, 0), -1, number);
+    }
+
+    /**
+     * Returns the number of synthetic leaf directories, which hold the synthetic files.
+     */
+    private long leaves() {
+        return (files + fanOut - 1) / fanOut;
+    }
+
+    /**
+     * Returns the number of levels of synthetic directories below {@code src}, the leaves being at the last level.
+     */
+    private int levels() {
+        int levels = 0;
+        for (long capacity = 1; capacity < leaves(); capacity *= fanOut) {
+            levels++;
+        }
+        return levels;
+    }
+
+    private static long pow(int base, int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= base;
+        }
+        return result;
+    }
+
+    private static int digits(int fanOut) {
+        return Integer.toString(fanOut - 1).length();
+    }
+
+    private static String pad(long value, int fanOut) {
+        StringBuilder result = new StringBuilder(Long.toString(value));
+        while (result.length() < digits(fanOut)) {
+            result.insert(0, '0');
+        }
+        return result.toString();
+    }
+
+    private String id(byte kind, long number, int level) {
+        ByteBuffer bytes = ByteBuffer.allocate(20);
+        bytes.putInt((int) mix(seed, 0, 0));
+        bytes.put(kind);
+        bytes.putLong(number);
+        bytes.put((byte) level);
+        long check = mix(seed, kind, number);
+        bytes.putShort((short) check);
+        bytes.putInt((int) (check >>> 16));
+        return HexFormat.of().formatHex(bytes.array(), 0, 20);
+    }
+
+    private String explicitTreeSha(String dir) {
+        return gitSha("tree", (seed + ":" + dir).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long mix(long seed, int kind, long number) {
+        long z = seed + 0x9E3779B97F4A7C15L * (31L * kind + number + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static String gitSha(String type, byte[] content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update((type + " " + content.length + "\0").getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(digest.digest(content));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-1 is a mandatory JCA algorithm", e);
+        }
+    }
+
+    private static String normalize(String path) {
+        String result = path;
+        while (result.startsWith("/")) {
+            result = result.substring(1);
+        }
+        while (result.endsWith("/")) {
+            result = result.substring(0, result.length() - 1);
+        }
+        return result;
+    }
+
+    /**
+     * A file or directory.
+     */
+    public static final class Entry {
+        private final String path;
+        private final boolean directory;
+        private final long size;
+        private final String sha;
+        /**
+         * The level of a synthetic directory, {@code -1} for the root and explicit entries.
+         */
+        private final int level;
+        /**
+         * The number of a synthetic file or directory at its level.
+         */
+        private final long number;
+
+        Entry(String path, boolean directory, long size, String sha, int level, long number) {
+            this.path = path;
+            this.directory = directory;
+            this.size = size;
+            this.sha = sha;
+            this.level = directory && path.startsWith(ROOT) && level >= 0 ? level : -1;
+            this.number = number;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getName() {
+            return path.substring(path.lastIndexOf('/') + 1);
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        /**
+         * Returns the size of a file.
+         *
+         * @return the size in bytes, {@code 0} for a directory.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        public String getSha() {
+            return sha;
+        }
+    }
+
+    /**
+     * Lines of pseudo random lowercase words, generated as they are read.
+     */
+    private static final class SyntheticContent extends InputStream {
+        private final SplittableRandom random;
+        private long remaining;
+        private int column;
+
+        SyntheticContent(SplittableRandom random, long size) {
+            this.random = random;
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() {
+            if (remaining <= 0) {
+                return -1;
+            }
+            remaining--;
+            return next();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = (int) Math.min(len, remaining);
+            for (int i = 0; i < n; i++) {
+                // count each byte before generating it, as read() does, so that next() sees the same remaining
+                remaining--;
+                b[off + i] = (byte) next();
+            }
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, remaining);
+        }
+
+        /**
+         * Generates the next byte, once {@link #remaining} no longer counts it, so that the last byte is a newline.
+         */
+        private int next() {
+            if (remaining == 0 || column >= 72) {
+                column = 0;
+                return '\n';
+            }
+            column++;
+            int r = random.nextInt(32);
+            return r < 6 ? ' ' : 'a' + (r - 6);
+        }
+    }
+}
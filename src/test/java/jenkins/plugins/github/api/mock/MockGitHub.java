@@ -2,41 +2,149 @@ package jenkins.plugins.github.api.mock;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpPrincipal;
 import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.text.SimpleDateFormat;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
 import java.util.Objects;
-import java.util.TimeZone;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 public class MockGitHub implements Closeable {
+    private static final DateTimeFormatter TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'").withZone(ZoneOffset.UTC);
+
     private AtomicLong nextId = new AtomicLong();
-    private Map<String, MockUser> users = new HashMap<>();
-    private Map<String, MockOrganization> organizations = new HashMap<>();
+    private Map<String, MockUser> users = new ConcurrentHashMap<>();
+    private Map<String, MockOrganization> organizations = new ConcurrentHashMap<>();
+    /**
+     * All public repositories of all owners, keyed by {@link MockObject#getId()} so that {@code /repositories} can
+     * serve each page with a tail lookup rather than collecting and sorting every repository.
+     */
+    private NavigableMap<Long, MockRepository> publicRepositories = new ConcurrentSkipListMap<>();
+    /**
+     * The users that the tokens accepted in the {@code Authorization} header authenticate as.
+     */
+    private final Map<String, MockUser> tokens = new ConcurrentHashMap<>();
+    /**
+     * The reverse of {@link MockOwner#getFollowingLogins()}, keyed by the login being followed.
+     */
+    private final Map<String, Followers> followers = new ConcurrentHashMap<>();
+    /**
+     * The owners and repositories keyed by {@link MockObject#getId()}, for GraphQL {@code node} lookups.
+     */
+    private final Map<Long, MockObject> nodes = new ConcurrentHashMap<>();
 
     private HttpServer server;
+    /**
+     * The executor that requests are served on, {@code null} to serve every request on the dispatcher thread.
+     */
+    private Executor executor;
+    /**
+     * The thread pool created by {@link #withThreads(int)}, which we own and therefore shut down on {@link #close()}.
+     */
+    private ExecutorService ownedExecutor;
 
     private String url;
     private JsonFactory factory = new JsonFactory();
 
+    /**
+     * The simulated rate limit, {@code null} to serve requests without rate limiting.
+     */
+    private volatile MockRateLimit rateLimit;
+    /**
+     * The latency and fault profiles keyed by route, see {@link #profile(String)}.
+     */
+    private final Map<String, MockProfile> profiles = new ConcurrentHashMap<>();
+    /**
+     * The gzip compression level of responses to clients that accept it, {@code 0} to never compress.
+     */
+    private volatile int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    /**
+     * Whether {@code /orgs/{org}} and {@code /users/{user}} redirect to the form with a trailing slash.
+     */
+    private volatile boolean redirects;
+    /**
+     * The seed of the random generators of the {@link #profiles}.
+     */
+    private volatile long seed;
+
+    private final MockMetrics metrics = new MockMetrics();
+    private final MockWebhooks webhooks = new MockWebhooks(this);
+    private final MockSearchIndex search = new MockSearchIndex();
+    /**
+     * The GitHub App that JSON web tokens are verified against, {@code null} if none is registered.
+     */
+    private volatile MockApp app;
+
+    private final AtomicLong fullResponseCount = new AtomicLong();
+    private final AtomicLong notModifiedCount = new AtomicLong();
+
     public String open() throws IOException {
         server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
-        server.createContext("/", new RootHandler(this));
-        server.createContext("/orgs", new OrgsHandler(this));
-        server.createContext("/users", new UsersHandler(this));
-        server.createContext("/repositories", new RepositoriesHandler(this));
+        createContext("/", new RootHandler(this));
+        createContext("/orgs", new OrgsHandler(this));
+        createContext("/user", new UserHandler(this));
+        createContext("/users", new UsersHandler(this));
+        createContext("/repositories", new RepositoriesHandler(this));
+        createContext("/repos", new ReposHandler(this));
+        createContext("/raw", new RawHandler(this));
+        createContext("/search", new SearchHandler(this));
+        createContext("/graphql", new GraphQLHandler(this));
+        createContext("/app", new AppHandler(this));
+        createContext("/installation", new InstallationHandler(this));
+        // like GitHub, checking the rate limit does not count against the rate limit
+        server.createContext("/rate_limit", new RateLimitHandler(this)).getFilters().add(new MetricsFilter(this));
+        server.createContext("/_mock/metrics", new MetricsHandler(this));
+        server.setExecutor(executor);
         server.start();
 
         InetSocketAddress address = server.getAddress();
@@ -44,54 +152,1876 @@ public class MockGitHub implements Closeable {
         return url;
     }
 
-    @Override
-    public void close() {
-        server.stop(1);
+    private HttpContext createContext(String path, HttpHandler handler) {
+        HttpContext context = server.createContext(path, handler);
+        context.getFilters().add(new MetricsFilter(this));
+        context.getFilters().add(new CompressionFilter(this));
+        context.getFilters().add(new ProfileFilter(this));
+        context.getFilters().add(new RateLimitFilter(this));
+        return context;
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(1);
+        }
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdownNow();
+            ownedExecutor = null;
+        }
+        webhooks.close();
+    }
+
+    /**
+     * Serves requests on the supplied executor, e.g. {@code Executors.newVirtualThreadPerTaskExecutor()} when running
+     * on Java 21+. The caller remains responsible for shutting the executor down. Must be called before
+     * {@link #open()}.
+     *
+     * @param executor the executor or {@code null} to serve every request on the dispatcher thread.
+     * @return {@code this} for method chaining.
+     */
+    public MockGitHub withExecutor(Executor executor) {
+        if (server != null) {
+            throw new IllegalStateException("The executor must be configured before the mock is opened");
+        }
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdownNow();
+            ownedExecutor = null;
+        }
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Serves requests on a bounded pool of daemon threads that is shut down when the mock is closed. Must be called
+     * before {@link #open()}.
+     *
+     * @param threads the number of threads to serve requests on.
+     * @return {@code this} for method chaining.
+     */
+    public MockGitHub withThreads(int threads) {
+        // checked before the pool is created, so that a misplaced call does not leave a pool nobody shuts down
+        if (server != null) {
+            throw new IllegalStateException("The executor must be configured before the mock is opened");
+        }
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "MockGitHub-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        withExecutor(pool);
+        ownedExecutor = pool;
+        return this;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public Map<String, MockUser> getUsers() {
+        return users;
+    }
+
+    public Map<String, MockOrganization> getOrgs() {
+        return organizations;
+    }
+
+    /**
+     * Simulates GitHub's rate limit with a token bucket per {@code Authorization} header that refills continuously,
+     * answering with a {@code 403} once a bucket is empty.
+     *
+     * @param limit  the number of requests each token may make per window.
+     * @param window the window over which a bucket refills completely.
+     * @return {@code this} for method chaining.
+     */
+    public MockGitHub withRateLimit(int limit, Duration window) {
+        return withRateLimit(new MockRateLimit(limit, window, HttpURLConnection.HTTP_FORBIDDEN));
+    }
+
+    /**
+     * Simulates GitHub's rate limit.
+     *
+     * @param rateLimit the rate limit model or {@code null} to remove rate limiting.
+     * @return {@code this} for method chaining.
+     */
+    public MockGitHub withRateLimit(MockRateLimit rateLimit) {
+        this.rateLimit = rateLimit;
+        return this;
+    }
+
+    /**
+     * Compresses the responses to clients that send {@code Accept-Encoding: gzip}, as GitHub does. On by default at
+     * the default level, responses of known length below 256 bytes are sent as they are.
+     *
+     * @param level the gzip level from {@code 1} (fastest) to {@code 9} (smallest), {@code -1} for the default or
+     *              {@code 0} to never compress.
+     * @return {@code this} for method chaining.
+     */
+    public MockGitHub withCompression(int level) {
+        if (level < -1 || level > 9) {
+            throw new IllegalArgumentException("Compression level must be between -1 and 9: " + level);
+        }
+        this.compressionLevel = level;
+        return this;
+    }
+
+    /**
+     * Redirects {@code /orgs/{org}} and {@code /users/{user}} to the form with a trailing slash, for tests of redirect
+     * handling. Off by default, so that every lookup of an owner takes a single round trip as it does on GitHub.
+     *
+     * @param redirects {@code true} to answer the form without a trailing slash with a {@code 302}.
+     * @return {@code this} for method chaining.
+     */
+    public MockGitHub withRedirects(boolean redirects) {
+        this.redirects = redirects;
+        return this;
+    }
+
+    /**
+     * Seeds the random generators that draw the latency and faults of each request, see {@link MockProfile}.
+     *
+     * @param seed the seed.
+     * @return {@code this} for method chaining.
+     */
+    public MockGitHub withSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Returns the latency and fault profile of a route, creating it if necessary. A request uses the profile of the
+     * longest route that is a prefix of its path on segment boundaries, e.g. {@code /users/user1/repos} uses the
+     * profile of {@code /users/user1/repos}, else {@code /users/user1}, else {@code /users}, else {@code /}.
+     * Requests are delayed before the rate limit is applied and served on the request thread, so use
+     * {@link #withThreads(int)} to serve concurrent requests with latency.
+     *
+     * @param route the route, e.g. {@code /} for all requests or {@code /orgs} for the organization endpoints.
+     * @return the profile.
+     */
+    public MockProfile profile(String route) {
+        String key = route.length() > 1 && route.endsWith("/") ? route.substring(0, route.length() - 1) : route;
+        return profiles.computeIfAbsent(key, MockProfile::new);
+    }
+
+    private MockProfile profileOf(String path) {
+        if (profiles.isEmpty()) {
+            return null;
+        }
+        String route = path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        while (true) {
+            MockProfile profile = profiles.get(route);
+            if (profile != null || route.equals("/")) {
+                return profile;
+            }
+            int slash = route.lastIndexOf('/');
+            route = slash <= 0 ? "/" : route.substring(0, slash);
+        }
+    }
+
+    /**
+     * Returns what clients did against this mock, also served as JSON from {@code /_mock/metrics}.
+     *
+     * @return the metrics.
+     */
+    public MockMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the webhook deliveries of the hooks registered with {@link MockOrganization#withHook(String, String)}
+     * and {@link MockRepository#withHook(String, String)}.
+     *
+     * @return the webhooks.
+     */
+    public MockWebhooks getWebhooks() {
+        return webhooks;
+    }
+
+    MockSearchIndex search() {
+        return search;
+    }
+
+    public MockRateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * Returns the number of {@code 200} responses with a body served by the endpoints that support conditional
+     * requests.
+     *
+     * @return the number of full responses.
+     */
+    public long getFullResponseCount() {
+        return fullResponseCount.get();
+    }
+
+    /**
+     * Returns the number of {@code 304} responses served by the endpoints that support conditional requests.
+     *
+     * @return the number of not modified responses.
+     */
+    public long getNotModifiedCount() {
+        return notModifiedCount.get();
+    }
+
+    public long nextId() {
+        return nextId.incrementAndGet();
+    }
+
+    /**
+     * Ensures that {@link #nextId()} never hands out an id that was restored from a snapshot.
+     *
+     * @param id the restored id.
+     * @return the restored id.
+     */
+    long reserveId(long id) {
+        nextId.accumulateAndGet(id, Math::max);
+        return id;
+    }
+
+    /**
+     * Loads users, organizations and repositories from a JSON array or newline delimited JSON snapshot, keeping their
+     * original ids and timestamps. The snapshot is streamed, so memory use does not grow with its size. See
+     * {@link SnapshotLoader} for the format.
+     *
+     * @param in the snapshot.
+     * @return {@code this} for method chaining.
+     * @throws IOException if the snapshot could not be read or is malformed.
+     */
+    public MockGitHub load(InputStream in) throws IOException {
+        try (JsonParser parser = factory.createParser(in)) {
+            new SnapshotLoader(this).load(parser);
+        }
+        return this;
+    }
+
+    /**
+     * Adds an owner restored from a snapshot, replacing any owner of the same type with the same login.
+     *
+     * @param owner the owner.
+     */
+    void restore(MockOwner<?> owner) {
+        nodes.put(owner.getId(), owner);
+        if (owner instanceof MockUser user) {
+            replaced(users.put(user.getLogin(), user));
+        } else {
+            replaced(organizations.put(owner.getLogin(), (MockOrganization) owner));
+        }
+        search.update(owner);
+    }
+
+    public static String tz(long time) {
+        return TIMESTAMP.format(Instant.ofEpochMilli(time));
+    }
+
+    public MockUser withUser(String login) {
+        MockUser result = new MockUser(this, login);
+        nodes.put(result.getId(), result);
+        replaced(users.put(login, result));
+        search.update(result);
+        return result;
+    }
+
+    /**
+     * Registers the GitHub App that {@code /app} and the installation endpoints authenticate, replacing any previous
+     * app.
+     *
+     * @param id        the app id, which JSON web tokens must be issued by.
+     * @param slug      the URL friendly name of the app.
+     * @param publicKey the public half of the key pair that JSON web tokens must be signed with.
+     * @return the app.
+     */
+    public MockApp withApp(long id, String slug, PublicKey publicKey) {
+        MockApp result = new MockApp(this, id, slug, publicKey);
+        app = result;
+        return result;
+    }
+
+    public MockApp getApp() {
+        return app;
+    }
+
+    public MockOrganization withOrg(String login) {
+        MockOrganization result = new MockOrganization(this, login);
+        nodes.put(result.getId(), result);
+        replaced(organizations.put(login, result));
+        search.update(result);
+        return result;
+    }
+
+    public NavigableMap<Long, MockRepository> publicRepositories() {
+        return publicRepositories;
+    }
+
+    /**
+     * Brings the {@link #publicRepositories()} index in line with the current state of the supplied repository.
+     *
+     * @param repo the repository that was added or changed visibility.
+     */
+    synchronized void reindex(MockRepository repo) {
+        boolean attached = repo.owner().repositories().get(repo.getName()) == repo;
+        if (!repo.isPrivate() && attached) {
+            publicRepositories.put(repo.getId(), repo);
+            repo.owner().indexPublic(repo);
+        } else {
+            unindex(repo);
+        }
+        if (attached) {
+            search.update(repo);
+        } else {
+            search.remove(repo);
+        }
+    }
+
+    /**
+     * Removes the supplied repository from the {@link #publicRepositories()} index.
+     *
+     * @param repo the repository that was replaced.
+     */
+    synchronized void unindex(MockRepository repo) {
+        publicRepositories.remove(repo.getId(), repo);
+        repo.owner().unindexPublic(repo);
+    }
+
+    /**
+     * Accepts a token, sent as {@code Authorization: token ...} or {@code Authorization: Bearer ...}, as
+     * authenticating the supplied user.
+     *
+     * @param token the token.
+     * @param user  the user.
+     * @return {@code this} for method chaining.
+     */
+    public MockGitHub withToken(String token, MockUser user) {
+        tokens.put(token, Objects.requireNonNull(user));
+        return this;
+    }
+
+    /**
+     * Returns the user that a request is authenticated as.
+     *
+     * @param he the exchange.
+     * @return the user or {@code null} if the request is anonymous or the token is unknown.
+     */
+    MockUser authenticated(HttpExchange he) {
+        String authorization = he.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null) {
+            return null;
+        }
+        int index = authorization.indexOf(' ');
+        return tokens.get(index < 0 ? authorization : authorization.substring(index + 1).trim());
+    }
+
+    /**
+     * Removes the repositories of a replaced owner from the {@link #publicRepositories()} index, as its replacement
+     * starts out owning none of them.
+     *
+     * @param previous the owner that was replaced.
+     */
+    synchronized void unindex(MockOwner<?> previous) {
+        for (MockRepository repo : previous.repositories().values()) {
+            unindex(repo);
+        }
+    }
+
+    private void replaced(MockOwner<?> previous) {
+        if (previous != null) {
+            // the replacement starts out following nobody
+            follow(previous.getLogin(), Set.copyOf(previous.getFollowingLogins()), Set.of(), true);
+            // and owns none of the repositories
+            unindex(previous);
+            for (MockRepository repo : previous.repositories().values()) {
+                search.remove(repo);
+                nodes.remove(repo.getId(), repo);
+            }
+            nodes.remove(previous.getId(), previous);
+            search.remove(previous);
+        }
+    }
+
+    /**
+     * Makes a repository reachable by its id, replacing any previous repository of its owner with the same name.
+     *
+     * @param repo     the repository.
+     * @param previous the replaced repository or {@code null}.
+     */
+    void attached(MockRepository repo, MockRepository previous) {
+        if (previous != null) {
+            unindex(previous);
+            search.remove(previous);
+            nodes.remove(previous.getId(), previous);
+        }
+        nodes.put(repo.getId(), repo);
+        reindex(repo);
+    }
+
+    /**
+     * Returns the user, organization or repository with the supplied id.
+     *
+     * @param id the id.
+     * @return the object or {@code null} if there is no such object.
+     */
+    MockObject node(long id) {
+        return nodes.get(id);
+    }
+
+    /**
+     * Returns the user or organization with the supplied login.
+     *
+     * @param login the login.
+     * @return the owner or {@code null} if there is no such owner.
+     */
+    public MockOwner<?> owner(String login) {
+        MockUser user = users.get(login);
+        return user != null ? user : organizations.get(login);
+    }
+
+    /**
+     * Returns the logins following the supplied login, in login order.
+     *
+     * @param login the login being followed.
+     * @return the logins of the followers.
+     */
+    public NavigableSet<String> followers(String login) {
+        Followers result = followers.get(login);
+        return result == null ? Collections.emptyNavigableSet() : result.logins.map().navigableKeySet();
+    }
+
+    /**
+     * Returns the logins following the supplied login, in login order, as a list to page through by position.
+     *
+     * @param login the login being followed.
+     * @return an immutable copy of the logins of the followers.
+     */
+    List<String> followerList(String login) {
+        Followers result = followers.get(login);
+        return result == null ? List.of() : result.logins.list();
+    }
+
+    /**
+     * Returns the number of logins following the supplied login.
+     *
+     * @param login the login being followed.
+     * @return the number of followers.
+     */
+    public int followerCount(String login) {
+        Followers result = followers.get(login);
+        return result == null ? 0 : result.count.get();
+    }
+
+    /**
+     * Updates the reverse follow index when an owner changes whom they follow.
+     *
+     * @param follower the login of the owner.
+     * @param before   the logins previously followed.
+     * @param after    the logins now followed.
+     * @param touchFollowed {@code true} to touch the owners whose follower count changes, {@code false} to only drop
+     *                      their cached representations.
+     */
+    void follow(String follower, Set<String> before, Set<String> after, boolean touchFollowed) {
+        for (String login : before) {
+            if (!after.contains(login)) {
+                Followers f = followers.get(login);
+                if (f != null && f.logins.remove(follower) != null) {
+                    f.count.decrementAndGet();
+                    touchOwner(login, touchFollowed);
+                }
+            }
+        }
+        for (String login : after) {
+            if (!before.contains(login)) {
+                Followers f = followers.computeIfAbsent(login, k -> new Followers());
+                if (f.logins.put(follower, follower) == null) {
+                    f.count.incrementAndGet();
+                    touchOwner(login, touchFollowed);
+                }
+            }
+        }
+    }
+
+    private void touchOwner(String login, boolean touch) {
+        // the followers count is part of the owner's representation
+        MockOwner<?> owner = owner(login);
+        if (owner != null && touch) {
+            owner.touch();
+        } else if (owner != null) {
+            owner.invalidate();
+        }
+    }
+
+    private static final class Followers {
+        private final MockPagedIndex<String, String> logins = new MockPagedIndex<>(Comparator.naturalOrder());
+        // ConcurrentSkipListMap.size() is linear, so keep the count separately
+        private final AtomicInteger count = new AtomicInteger();
+    }
+
+    public List<MockOwner<?>> owners() {
+        List<MockOwner<?>> result = new ArrayList<>(organizations.size() + users.size());
+        result.addAll(users.values());
+        result.addAll(organizations.values());
+        return result;
+    }
+
+    /**
+     * Answers with a {@code 302} to the supplied path. The redirect carries a body, as on GitHub, because before Java
+     * 21 the JDK server closes the connection after a response without one and a client reusing the connection in the
+     * meantime then gets no response at all.
+     *
+     * @param he   the exchange.
+     * @param path the path to redirect to.
+     * @throws IOException if the response could not be sent.
+     */
+    void redirect(HttpExchange he, String path) throws IOException {
+        he.getResponseHeaders().set("Location", path);
+        he.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+        he.sendResponseHeaders(HttpURLConnection.HTTP_MOVED_TEMP, 0);
+        try (JsonGenerator o = factory.createGenerator(he.getResponseBody())) {
+            o.writeStartObject();
+            o.writeStringField("message", "Moved Temporarily");
+            o.writeStringField("url", getUrl() + path);
+            o.writeEndObject();
+        }
+    }
+
+    /**
+     * Sets the validators of a response and answers the request with a {@code 304} if the client already holds the
+     * current representation. {@code If-Modified-Since} is only considered when there is no {@code If-None-Match}.
+     *
+     * @param he           the exchange.
+     * @param etag         the entity tag of the current representation.
+     * @param lastModified the time the current representation was last modified.
+     * @return {@code true} if a {@code 304} was sent and the exchange needs no body, {@code false} if the handler
+     * should send the full response.
+     * @throws IOException if the response could not be sent.
+     */
+    private boolean notModified(HttpExchange he, String etag, long lastModified) throws IOException {
+        he.getResponseHeaders().set("ETag", etag);
+        he.getResponseHeaders().set("Last-Modified", httpDate(lastModified));
+        he.getResponseHeaders().set("Cache-Control", "private, max-age=60, s-maxage=60");
+        he.getResponseHeaders().set("Vary", "Accept, Authorization, Cookie");
+        String ifNoneMatch = he.getRequestHeaders().getFirst("If-None-Match");
+        boolean notModified;
+        if (ifNoneMatch != null) {
+            notModified = false;
+            for (String candidate : ifNoneMatch.split(",")) {
+                candidate = candidate.trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals("*") || candidate.equals(etag)) {
+                    notModified = true;
+                    break;
+                }
+            }
+        } else {
+            String ifModifiedSince = he.getRequestHeaders().getFirst("If-Modified-Since");
+            notModified = ifModifiedSince != null && lastModified / 1000 <= parseHttpDate(ifModifiedSince) / 1000;
+        }
+        if (notModified) {
+            notModifiedCount.incrementAndGet();
+            he.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+        } else {
+            fullResponseCount.incrementAndGet();
+        }
+        return notModified;
+    }
+
+    /**
+     * Writes a JSON representation.
+     */
+    @FunctionalInterface
+    interface PayloadWriter {
+        void write(JsonGenerator o) throws IOException;
+    }
+
+    /**
+     * Serializes a JSON representation.
+     *
+     * @param writer the writer of the representation.
+     * @return the UTF-8 encoded JSON.
+     * @throws IOException if the representation could not be written.
+     */
+    byte[] serialize(PayloadWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        try (JsonGenerator o = factory.createGenerator(bytes)) {
+            writer.write(o);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Joins serialized JSON values into a JSON array.
+     *
+     * @param items the UTF-8 encoded JSON values.
+     * @return the UTF-8 encoded JSON array.
+     */
+    private static byte[] array(List<byte[]> items) {
+        int length = 2 + Math.max(0, items.size() - 1);
+        for (byte[] item : items) {
+            length += item.length;
+        }
+        byte[] result = new byte[length];
+        int index = 0;
+        result[index++] = '[';
+        for (byte[] item : items) {
+            if (index > 1) {
+                result[index++] = ',';
+            }
+            System.arraycopy(item, 0, result, index, item.length);
+            index += item.length;
+        }
+        result[index] = ']';
+        return result;
+    }
+
+    /**
+     * Sends a {@code 200} response with a JSON body of known length.
+     *
+     * @param he   the exchange.
+     * @param body the UTF-8 encoded JSON.
+     * @throws IOException if the response could not be sent.
+     */
+    void respond(HttpExchange he, byte[] body) throws IOException {
+        he.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+        he.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length);
+        he.getResponseBody().write(body);
+    }
+
+    /**
+     * Parses the query parameters of a request.
+     *
+     * @param he the exchange.
+     * @return the query parameters.
+     */
+    static Map<String, String> query(HttpExchange he) {
+        Map<String, String> result = new HashMap<>();
+        String query = he.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                int index = param.indexOf('=');
+                if (index > 0) {
+                    result.put(
+                            URLDecoder.decode(param.substring(0, index), StandardCharsets.UTF_8),
+                            URLDecoder.decode(param.substring(index + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the requested page size, which like GitHub defaults to 30 and is capped at 100.
+     *
+     * @param query the query parameters.
+     * @return the page size.
+     */
+    static int perPage(Map<String, String> query) {
+        return Math.max(1, Math.min(100, intParam(query, "per_page", 30)));
+    }
+
+    /**
+     * Returns the requested page number, counting from 1.
+     *
+     * @param query the query parameters.
+     * @return the page number.
+     */
+    static int page(Map<String, String> query) {
+        return Math.max(1, intParam(query, "page", 1));
+    }
+
+    private static int intParam(Map<String, String> query, String name, int defaultValue) {
+        try {
+            String value = query.get(name);
+            return value == null ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Sets the {@code Link} header of a page of a paginated list.
+     *
+     * @param he      the exchange.
+     * @param path    the path of the list.
+     * @param query   the query parameters of the request, which are carried over to the links.
+     * @param page    the page number, counting from 1.
+     * @param perPage the page size.
+     * @param total   the number of items in the list.
+     */
+    void pageLinks(HttpExchange he, String path, Map<String, String> query, int page, int perPage, int total) {
+        StringBuilder base = new StringBuilder(url).append(path).append('?');
+        for (Map.Entry<String, String> param : new TreeMap<>(query).entrySet()) {
+            if (!"page".equals(param.getKey()) && !"per_page".equals(param.getKey())) {
+                base.append(URLEncoder.encode(param.getKey(), StandardCharsets.UTF_8))
+                        .append('=')
+                        .append(URLEncoder.encode(param.getValue(), StandardCharsets.UTF_8))
+                        .append('&');
+            }
+        }
+        int last = Math.max(1, (total + perPage - 1) / perPage);
+        List<String> links = new ArrayList<>(4);
+        if (page < last) {
+            links.add(pageLink(base, page + 1, perPage, "next"));
+            links.add(pageLink(base, last, perPage, "last"));
+        }
+        if (page > 1) {
+            links.add(pageLink(base, 1, perPage, "first"));
+            links.add(pageLink(base, Math.min(page - 1, last), perPage, "prev"));
+        }
+        if (!links.isEmpty()) {
+            he.getResponseHeaders().set("Link", String.join(", ", links));
+        }
+    }
+
+    private static String pageLink(CharSequence base, int page, int perPage, String rel) {
+        return String.format("<%spage=%d&per_page=%d>; rel=\"%s\"", base, page, perPage, rel);
+    }
+
+    /**
+     * Sends a page of a paginated list of repositories.
+     *
+     * @param he           the exchange.
+     * @param path         the path of the list.
+     * @param repositories the repositories in list order.
+     * @throws IOException if the response could not be sent.
+     */
+    void sendRepositories(HttpExchange he, String path, List<MockRepository> repositories) throws IOException {
+        Map<String, String> query = query(he);
+        int page = page(query);
+        int perPage = perPage(query);
+        List<byte[]> items = new ArrayList<>(perPage);
+        for (MockRepository r : page(repositories, false, page, perPage)) {
+            items.add(r.payload("summary", r.owner().getUpdated(), o -> writeRepositorySummary(o, r)));
+        }
+        pageLinks(he, path, query, page, perPage, repositories.size());
+        respond(he, array(items));
+    }
+
+    /**
+     * Answers a request with the message of an error, as GitHub does.
+     *
+     * @param he      the exchange.
+     * @param status  the status.
+     * @param message the message.
+     * @throws IOException if the response could not be written.
+     */
+    void error(HttpExchange he, int status, String message) throws IOException {
+        byte[] body = serialize(o -> {
+            o.writeStartObject();
+            o.writeStringField("message", message);
+            o.writeStringField("documentation_url", "https://docs.github.com/rest");
+            o.writeEndObject();
+        });
+        he.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+        he.sendResponseHeaders(status, body.length);
+        he.getResponseBody().write(body);
+    }
+
+    /**
+     * Answers a request for the installation of the {@link #getApp()} on the repositories of an owner, which requires
+     * a JSON web token of the app.
+     *
+     * @param he    the exchange.
+     * @param login the login of the owner.
+     * @throws IOException if the response could not be written.
+     */
+    void sendInstallation(HttpExchange he, String login) throws IOException {
+        MockApp app = this.app;
+        if (app == null) {
+            he.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+            return;
+        }
+        String reason = app.verifyJwt(he.getRequestHeaders().getFirst("Authorization"), factory);
+        if (reason != null) {
+            error(he, HttpURLConnection.HTTP_UNAUTHORIZED, reason);
+            return;
+        }
+        MockApp.Installation installation = app.installation(login);
+        if (installation == null) {
+            error(he, HttpURLConnection.HTTP_NOT_FOUND, "Not Found");
+        } else {
+            respond(he, serialize(o -> writeInstallation(o, this, app, installation)));
+        }
+    }
+
+    /**
+     * Returns a repository if the request may see it: public repositories are visible to everyone, private ones only
+     * to their owner and to installation tokens of the {@link #getApp()} installed on their owner.
+     *
+     * @param he    the exchange.
+     * @param owner the login of the owner.
+     * @param name  the name of the repository.
+     * @return the repository or {@code null} if it does not exist or the request may not see it.
+     */
+    MockRepository visibleRepository(HttpExchange he, String owner, String name) {
+        MockOwner<?> account = owner(owner);
+        MockRepository repo = account == null ? null : account.repositories().get(name);
+        if (repo == null || !repo.isPrivate() || authenticated(he) == account) {
+            return repo;
+        }
+        MockApp app = this.app;
+        MockApp.Installation installation =
+                app == null ? null : app.verifyToken(he.getRequestHeaders().getFirst("Authorization"));
+        return installation != null && installation.getAccount() == account ? repo : null;
+    }
+
+    /**
+     * Sends a {@code 200} response whose JSON body is written to the client as it is generated, for payloads that are
+     * too large to buffer such as recursive trees.
+     *
+     * @param he     the exchange.
+     * @param writer the writer of the body.
+     * @throws IOException if the response could not be sent.
+     */
+    void stream(HttpExchange he, PayloadWriter writer) throws IOException {
+        he.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+        he.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+        try (JsonGenerator o = factory.createGenerator(he.getResponseBody())) {
+            writer.write(o);
+        }
+    }
+
+    /**
+     * Sends the content of a file as it is read.
+     *
+     * @param he    the exchange.
+     * @param files the tree of the file.
+     * @param file  the file.
+     * @throws IOException if the response could not be sent.
+     */
+    static void sendRaw(HttpExchange he, MockFileTree files, MockFileTree.Entry file) throws IOException {
+        he.getResponseHeaders().set("Content-Type", "text/plain;charset=utf-8");
+        he.sendResponseHeaders(HttpURLConnection.HTTP_OK, file.getSize() == 0 ? -1 : file.getSize());
+        try (InputStream in = files.open(file)) {
+            in.transferTo(he.getResponseBody());
+        }
+    }
+
+    /**
+     * Returns a page of an iteration.
+     *
+     * @param items   the items in list order.
+     * @param page    the page number, counting from 1.
+     * @param perPage the page size.
+     * @return the items on the page.
+     */
+    static <T> List<T> page(Iterable<T> items, int page, int perPage) {
+        List<T> result = new ArrayList<>(perPage);
+        Iterator<T> iterator = items.iterator();
+        for (long skip = (long) (page - 1) * perPage; skip > 0 && iterator.hasNext(); skip--) {
+            iterator.next();
+        }
+        while (result.size() < perPage && iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+
+    /**
+     * Returns a page of a list that supports lookups by position, without skipping the items before the page.
+     *
+     * @param items      the items.
+     * @param descending {@code true} to page through the items from last to first.
+     * @param page       the page number, counting from 1.
+     * @param perPage    the page size.
+     * @return the items on the page.
+     */
+    static <T> List<T> page(List<T> items, boolean descending, int page, int perPage) {
+        int size = items.size();
+        long from = (long) (page - 1) * perPage;
+        List<T> result = new ArrayList<>(perPage);
+        for (long i = from; i < size && i < from + perPage; i++) {
+            result.add(items.get((int) (descending ? size - 1 - i : i)));
+        }
+        return result;
+    }
+
+    private static void writeOrganization(JsonGenerator o, MockGitHub github, MockOrganization org)
+            throws IOException {
+        o.writeStartObject();
+        o.writeStringField("login", org.getLogin());
+        o.writeNumberField("id", org.getId());
+        o.writeStringField("url", github.getUrl() + "/users/" + org.getLogin());
+        o.writeStringField("repos_url", github.getUrl() + "/orgs/" + org.getLogin() + "/repos");
+        o.writeStringField("events_url", github.getUrl() + "/orgs/" + org.getLogin() + "/events");
+        o.writeStringField("hooks_url", github.getUrl() + "/orgs/" + org.getLogin() + "/hooks");
+        o.writeStringField("issues_url", github.getUrl() + "/orgs/" + org.getLogin() + "/issues");
+        o.writeStringField(
+                "members_url", github.getUrl() + "/orgs/" + org.getLogin() + "/members{/member}");
+        o.writeStringField(
+                "public_members_url",
+                github.getUrl() + "/orgs/" + org.getLogin() + "/public_members{/member}");
+        o.writeStringField("avatar_url", org.getAvatarUrl());
+        o.writeStringField("description", org.getDescription());
+        o.writeStringField("name", org.getName());
+        o.writeNullField("company");
+        o.writeStringField("blog", org.getBlog());
+        o.writeStringField("location", org.getLocation());
+        o.writeStringField("email", org.getEmail());
+        o.writeBooleanField("has_organization_projects", true);
+        o.writeBooleanField("has_repository_projects", true);
+        o.writeNumberField("public_repos", org.getPublicRepos());
+        o.writeNumberField("public_gists", 0);
+        o.writeNumberField("followers", org.getFollowers());
+        o.writeNumberField("following", org.getFollowing());
+        o.writeStringField("created_at", tz(org.getCreated()));
+        o.writeStringField("updated_at", tz(org.getUpdated()));
+        o.writeStringField("type", org.getType());
+        o.writeEndObject();
+    }
+
+    private static void writeRepository(JsonGenerator o, MockGitHub github, MockRepository r) throws IOException {
+        String fullName = r.owner().getLogin() + "/" + r.getName();
+        String url = github.getUrl() + "/repos/" + fullName;
+        o.writeStartObject();
+        o.writeNumberField("id", r.getId());
+        o.writeStringField("name", r.getName());
+        o.writeStringField("full_name", fullName);
+        o.writeFieldName("owner");
+        writeOwnerSummary(o, github, r.owner());
+        o.writeBooleanField("private", r.isPrivate());
+        o.writeStringField("html_url", "https://github.com/" + fullName);
+        o.writeStringField("description", r.getDescription());
+        o.writeBooleanField("fork", r.isFork());
+        o.writeStringField("url", url);
+        o.writeStringField("contents_url", url + "/contents/{+path}");
+        o.writeStringField("trees_url", url + "/git/trees{/sha}");
+        o.writeStringField("blobs_url", url + "/git/blobs{/sha}");
+        o.writeStringField("clone_url", "https://github.com/" + fullName + ".git");
+        o.writeStringField("homepage", r.getHomepage());
+        o.writeStringField("language", r.getLanguage());
+        o.writeArrayFieldStart("topics");
+        if (r.getTopics() != null) {
+            for (String topic : r.getTopics()) {
+                o.writeString(topic);
+            }
+        }
+        o.writeEndArray();
+        o.writeStringField("visibility", r.isPrivate() ? "private" : "public");
+        o.writeStringField("default_branch", r.getDefaultBranch());
+        o.writeBooleanField("archived", false);
+        o.writeStringField("created_at", tz(r.getCreated()));
+        o.writeStringField("updated_at", tz(r.getUpdated()));
+        o.writeStringField("pushed_at", tz(r.getUpdated()));
+        o.writeEndObject();
+    }
+
+    private static void writeBranch(
+            JsonGenerator o, MockGitHub github, MockRepository r, MockBranch branch, boolean details)
+            throws IOException {
+        String url = github.getUrl() + "/repos/" + r.owner().getLogin() + "/" + r.getName();
+        o.writeStartObject();
+        o.writeStringField("name", branch.getName());
+        o.writeObjectFieldStart("commit");
+        o.writeStringField("sha", branch.getSha());
+        o.writeStringField("url", url + "/commits/" + branch.getSha());
+        o.writeEndObject();
+        o.writeBooleanField("protected", branch.isProtected());
+        if (details) {
+            o.writeObjectFieldStart("_links");
+            o.writeStringField("self", url + "/branches/" + branch.getName());
+            o.writeStringField(
+                    "html", "https://github.com/" + r.owner().getLogin() + "/" + r.getName() + "/tree/"
+                            + branch.getName());
+            o.writeEndObject();
+            o.writeStringField("protection_url", url + "/branches/" + branch.getName() + "/protection");
+        }
+        o.writeEndObject();
+    }
+
+    private static void writePullRequest(JsonGenerator o, MockGitHub github, MockPullRequest p) throws IOException {
+        MockRepository r = p.repository();
+        String fullName = r.owner().getLogin() + "/" + r.getName();
+        o.writeStartObject();
+        o.writeStringField("url", github.getUrl() + "/repos/" + fullName + "/pulls/" + p.getNumber());
+        o.writeNumberField("id", p.getId());
+        o.writeStringField("html_url", "https://github.com/" + fullName + "/pull/" + p.getNumber());
+        o.writeNumberField("number", p.getNumber());
+        o.writeStringField("state", p.isOpen() ? "open" : "closed");
+        o.writeBooleanField("locked", false);
+        o.writeStringField("title", p.getTitle());
+        o.writeFieldName("user");
+        writeOwnerSummary(o, github, p.getUser() == null ? r.owner() : p.getUser());
+        o.writeStringField("body", p.getBody());
+        o.writeStringField("created_at", tz(p.getCreated()));
+        o.writeStringField("updated_at", tz(p.getUpdated()));
+        if (p.isOpen()) {
+            o.writeNullField("closed_at");
+        } else {
+            o.writeStringField("closed_at", tz(p.getClosed()));
+        }
+        o.writeNullField("merged_at");
+        o.writeNullField("merge_commit_sha");
+        o.writeBooleanField("draft", p.isDraft());
+        o.writeFieldName("head");
+        writePullRequestRef(o, github, p.getHeadRepository(), p.getHeadRef(), p.getHeadSha());
+        MockBranch base = r.getBranch(p.getBaseRef());
+        o.writeFieldName("base");
+        writePullRequestRef(o, github, r, p.getBaseRef(), base == null ? null : base.getSha());
+        o.writeEndObject();
+    }
+
+    private static void writePullRequestRef(
+            JsonGenerator o, MockGitHub github, MockRepository r, String ref, String sha) throws IOException {
+        o.writeStartObject();
+        o.writeStringField("label", r.owner().getLogin() + ":" + ref);
+        o.writeStringField("ref", ref);
+        o.writeStringField("sha", sha);
+        o.writeFieldName("user");
+        writeOwnerSummary(o, github, r.owner());
+        o.writeFieldName("repo");
+        writeRepositorySummary(o, r);
+        o.writeEndObject();
+    }
+
+    private static void writeStatus(JsonGenerator o, MockGitHub github, MockRepository r, MockStatus status)
+            throws IOException {
+        o.writeStartObject();
+        o.writeStringField(
+                "url",
+                github.getUrl() + "/repos/" + r.owner().getLogin() + "/" + r.getName() + "/statuses/"
+                        + status.getSha());
+        o.writeNumberField("id", status.getId());
+        o.writeStringField("state", status.getState());
+        o.writeStringField("description", status.getDescription());
+        o.writeStringField("target_url", status.getTargetUrl());
+        o.writeStringField("context", status.getContext());
+        o.writeStringField("created_at", tz(status.getCreated()));
+        o.writeStringField("updated_at", tz(status.getCreated()));
+        if (status.getCreator() != null) {
+            o.writeFieldName("creator");
+            writeOwnerSummary(o, github, status.getCreator());
+        }
+        o.writeEndObject();
+    }
+
+    private static void writeContent(
+            JsonGenerator o, MockGitHub github, MockRepository r, MockFileTree.Entry entry, String ref)
+            throws IOException {
+        String fullName = r.owner().getLogin() + "/" + r.getName();
+        String url = github.getUrl() + "/repos/" + fullName;
+        String type = entry.isDirectory() ? "tree" : "blob";
+        o.writeStringField("type", entry.isDirectory() ? "dir" : "file");
+        o.writeNumberField("size", entry.getSize());
+        o.writeStringField("name", entry.getName());
+        o.writeStringField("path", entry.getPath());
+        o.writeStringField("sha", entry.getSha());
+        o.writeStringField("url", url + "/contents/" + entry.getPath() + "?ref=" + ref);
+        o.writeStringField("git_url", url + "/git/" + type + "s/" + entry.getSha());
+        o.writeStringField(
+                "html_url", "https://github.com/" + fullName + "/" + type + "/" + ref + "/" + entry.getPath());
+        if (entry.isDirectory()) {
+            o.writeNullField("download_url");
+        } else {
+            o.writeStringField(
+                    "download_url", github.getUrl() + "/raw/" + fullName + "/" + ref + "/" + entry.getPath());
+        }
+    }
+
+    private static void writeUser(JsonGenerator o, MockGitHub github, MockOwner<?> owner) throws IOException {
+        o.writeStartObject();
+        o.writeStringField("login", owner.getLogin());
+        o.writeNumberField("id", owner.getId());
+        o.writeStringField("avatar_url", owner.getAvatarUrl());
+        o.writeStringField("gravatar_id", "");
+        o.writeStringField("url", github.getUrl() + "/users/" + owner.getLogin());
+        o.writeStringField("html_url", "https://github.com/" + owner.getLogin());
+        o.writeStringField(
+                "followers_url", github.getUrl() + "/users/" + owner.getLogin() + "/followers");
+        o.writeStringField(
+                "following_url",
+                github.getUrl() + "/users/" + owner.getLogin() + "/following{/other_user}");
+        o.writeStringField(
+                "gists_url", github.getUrl() + "/users/" + owner.getLogin() + "/gists{/gist_id}");
+        o.writeStringField(
+                "starred_url",
+                github.getUrl() + "/users/" + owner.getLogin() + "/starred{/owner}{/repo}");
+        o.writeStringField(
+                "subscriptions_url", github.getUrl() + "/users/" + owner.getLogin() + "/subscriptions");
+        o.writeStringField(
+                "organizations_url", github.getUrl() + "/users/" + owner.getLogin() + "/orgs");
+        o.writeStringField("repos_url", github.getUrl() + "/users/" + owner.getLogin() + "/repos");
+        o.writeStringField(
+                "events_url", github.getUrl() + "/users/" + owner.getLogin() + "/events{/privacy}");
+        o.writeStringField(
+                "received_events_url",
+                github.getUrl() + "/users/" + owner.getLogin() + "/received_events");
+        o.writeStringField("type", owner.getType());
+        if (owner instanceof MockUser user) {
+            o.writeBooleanField("site_admin", user.isSiteAdmin());
+        } else {
+            o.writeBooleanField("site_admin", false);
+        }
+        o.writeStringField("name", owner.getName());
+        if (owner instanceof MockUser user) {
+            o.writeStringField("company", user.getCompany());
+        } else {
+            o.writeNullField("company");
+        }
+        o.writeStringField("blog", owner.getBlog());
+        o.writeStringField("location", owner.getLocation());
+        o.writeStringField("email", owner.getEmail());
+        if (owner instanceof MockUser user) {
+            o.writeBooleanField("hireable", user.isHireable());
+            o.writeStringField("bio", user.getBio());
+        } else {
+            o.writeBooleanField("hireable", false);
+            o.writeNullField("bio");
+        }
+        o.writeNumberField("public_repos", owner.getPublicRepos());
+        o.writeNumberField("public_gists", 0);
+        o.writeNumberField("followers", owner.getFollowers());
+        o.writeNumberField("following", owner.getFollowing());
+        o.writeStringField("created_at", tz(owner.getCreated()));
+        o.writeStringField("updated_at", tz(owner.getUpdated()));
+        o.writeEndObject();
+    }
+
+    private static void writeApp(JsonGenerator o, MockApp app) throws IOException {
+        o.writeStartObject();
+        o.writeNumberField("id", app.getId());
+        o.writeStringField("slug", app.getSlug());
+        o.writeStringField("name", app.getSlug());
+        o.writeStringField("description", "");
+        o.writeStringField("external_url", "https://" + app.getSlug() + ".test");
+        o.writeStringField("html_url", "https://github.com/apps/" + app.getSlug());
+        o.writeStringField("created_at", tz(app.getCreated()));
+        o.writeStringField("updated_at", tz(app.getCreated()));
+        writePermissions(o);
+        o.writeArrayFieldStart("events");
+        o.writeString("push");
+        o.writeString("repository");
+        o.writeEndArray();
+        o.writeNumberField("installations_count", app.installations().size());
+        o.writeEndObject();
+    }
+
+    private static void writeInstallation(
+            JsonGenerator o, MockGitHub github, MockApp app, MockApp.Installation installation) throws IOException {
+        o.writeStartObject();
+        o.writeNumberField("id", installation.getId());
+        o.writeFieldName("account");
+        writeOwnerSummary(o, github, installation.getAccount());
+        o.writeStringField(
+                "access_tokens_url",
+                github.getUrl() + "/app/installations/" + installation.getId() + "/access_tokens");
+        o.writeStringField("repositories_url", github.getUrl() + "/installation/repositories");
+        o.writeStringField(
+                "html_url", "https://github.com/settings/installations/" + installation.getId());
+        o.writeNumberField("app_id", app.getId());
+        o.writeStringField("app_slug", app.getSlug());
+        o.writeNumberField("target_id", installation.getAccount().getId());
+        o.writeStringField("target_type", installation.getAccount().getType());
+        writePermissions(o);
+        o.writeArrayFieldStart("events");
+        o.writeString("push");
+        o.writeString("repository");
+        o.writeEndArray();
+        o.writeStringField("created_at", tz(installation.getCreated()));
+        o.writeStringField("updated_at", tz(installation.getCreated()));
+        o.writeStringField("repository_selection", "all");
+        o.writeEndObject();
+    }
+
+    private static void writePermissions(JsonGenerator o) throws IOException {
+        o.writeObjectFieldStart("permissions");
+        o.writeStringField("checks", "write");
+        o.writeStringField("contents", "read");
+        o.writeStringField("metadata", "read");
+        o.writeStringField("pull_requests", "write");
+        o.writeStringField("statuses", "write");
+        o.writeEndObject();
+    }
+
+    static void writeOwnerSummary(JsonGenerator o, MockGitHub github, MockOwner<?> owner)
+            throws IOException {
+        o.writeStartObject();
+        o.writeStringField("login", owner.getLogin());
+        o.writeNumberField("id", owner.getId());
+        o.writeStringField("avatar_url", owner.getAvatarUrl());
+        o.writeStringField("url", github.getUrl() + "/users/" + owner.getLogin());
+        o.writeStringField("html_url", "https://github.com/" + owner.getLogin());
+        o.writeStringField("type", owner.getType());
+        o.writeBooleanField("site_admin", owner instanceof MockUser user && user.isSiteAdmin());
+        o.writeEndObject();
+    }
+
+    static void writeRepositorySummary(JsonGenerator o, MockRepository r) throws IOException {
+        o.writeStartObject();
+        o.writeNumberField("id", r.getId());
+        o.writeStringField("name", r.getName());
+        o.writeStringField("full_name", r.owner().getLogin() + "/" + r.getName());
+        o.writeFieldName("owner");
+        o.writeStartObject();
+        o.writeStringField("login", r.owner().getLogin());
+        o.writeNumberField("id", r.owner().getId());
+        o.writeStringField("avatar_url", r.owner().getAvatarUrl());
+        o.writeStringField("type", r.owner().getType());
+        o.writeEndObject();
+        o.writeBooleanField("private", r.isPrivate());
+        o.writeStringField(
+                "html_url", "https://github.com/" + r.owner().getLogin() + "/" + r.getName());
+        o.writeEndObject();
+    }
+
+    private static String httpDate(long time) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(time).atOffset(ZoneOffset.UTC));
+    }
+
+    private static long parseHttpDate(String value) {
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            // an unparseable date is ignored, see RFC 9110 section 13.1.3
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static void setRateLimitHeaders(HttpExchange he, MockRateLimit limit, MockRateLimit.Snapshot snapshot) {
+        he.getResponseHeaders().set("X-RateLimit-Limit", Integer.toString(limit.getLimit()));
+        he.getResponseHeaders().set("X-RateLimit-Remaining", Integer.toString(snapshot.getRemaining()));
+        he.getResponseHeaders().set("X-RateLimit-Reset", Long.toString(snapshot.getReset()));
+        he.getResponseHeaders().set("X-RateLimit-Used", Integer.toString(snapshot.getUsed()));
+        he.getResponseHeaders().set("X-RateLimit-Resource", "core");
+    }
+
+    private static class MetricsFilter extends Filter {
+        private final MockGitHub github;
+
+        public MetricsFilter(MockGitHub github) {
+            this.github = Objects.requireNonNull(github);
+        }
+
+        @Override
+        public void doFilter(HttpExchange he, Chain chain) throws IOException {
+            long start = System.nanoTime();
+            CountingOutputStream body = new CountingOutputStream(he.getResponseBody());
+            he.setStreams(null, body);
+            String path = he.getRequestURI().getPath();
+            // the response is counted before its headers are sent, so that a client that has received it always
+            // finds it counted
+            boolean[] responded = new boolean[1];
+            HttpExchange exchange = new ForwardingExchange(he) {
+                @Override
+                public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+                    if (!responded[0]) {
+                        responded[0] = true;
+                        github.metrics.responded(path, rCode, System.nanoTime() - start);
+                    }
+                    super.sendResponseHeaders(rCode, responseLength);
+                }
+            };
+            try {
+                chain.doFilter(exchange);
+            } finally {
+                int status = Math.max(0, he.getResponseCode());
+                if (!responded[0]) {
+                    github.metrics.responded(path, status, System.nanoTime() - start);
+                }
+                github.metrics.completed(he.getRequestMethod(), path, status, body.count, System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public String description() {
+            return "Records request metrics";
+        }
+    }
+
+    private static class CompressionFilter extends Filter {
+        /**
+         * Responses of known length below this size are not worth compressing.
+         */
+        private static final int MIN_SIZE = 256;
+
+        private final MockGitHub github;
+
+        public CompressionFilter(MockGitHub github) {
+            this.github = Objects.requireNonNull(github);
+        }
+
+        @Override
+        public void doFilter(HttpExchange he, Chain chain) throws IOException {
+            int level = github.compressionLevel;
+            if (level == 0 || !acceptsGzip(he.getRequestHeaders().get("Accept-Encoding"))) {
+                chain.doFilter(he);
+                return;
+            }
+            CompressingExchange exchange = new CompressingExchange(he, level, MIN_SIZE);
+            try {
+                chain.doFilter(exchange);
+            } finally {
+                exchange.close();
+            }
+        }
+
+        static boolean acceptsGzip(List<String> acceptEncoding) {
+            if (acceptEncoding == null) {
+                return false;
+            }
+            for (String header : acceptEncoding) {
+                for (String coding : header.split(",")) {
+                    String[] parts = coding.trim().split(";");
+                    String name = parts[0].trim();
+                    if (!"gzip".equalsIgnoreCase(name) && !"*".equals(name)) {
+                        continue;
+                    }
+                    boolean acceptable = true;
+                    for (int i = 1; i < parts.length; i++) {
+                        String parameter = parts[i].trim();
+                        if (parameter.startsWith("q=")) {
+                            try {
+                                acceptable = Double.parseDouble(parameter.substring(2)) > 0.0;
+                            } catch (NumberFormatException e) {
+                                acceptable = false;
+                            }
+                        }
+                    }
+                    if (acceptable) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String description() {
+            return "Compresses responses";
+        }
+    }
+
+    /**
+     * Decides when the response headers are sent whether to compress the body, because the handlers announce the
+     * uncompressed length. The body is compressed into the stream installed by the filters behind this one, such as
+     * {@link MockFault#slowDrip(int, Duration)}, so that they see what goes on the wire.
+     */
+    private static class CompressingExchange extends ForwardingExchange {
+        private final int level;
+        private final int minSize;
+        /**
+         * The stream installed with {@link #setStreams(InputStream, OutputStream)} before the headers were sent.
+         */
+        private OutputStream out;
+        /**
+         * The stream the handler writes the body to once the headers are sent.
+         */
+        private OutputStream body;
+        private boolean closed;
+
+        CompressingExchange(HttpExchange delegate, int level, int minSize) {
+            super(delegate);
+            this.level = level;
+            this.minSize = minSize;
+        }
+
+        @Override
+        public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+            Headers headers = delegate.getResponseHeaders();
+            headers.add("Vary", "Accept-Encoding");
+            if (responseLength < 0
+                    || (responseLength > 0 && responseLength < minSize)
+                    || rCode == HttpURLConnection.HTTP_NOT_MODIFIED
+                    || rCode == HttpURLConnection.HTTP_NO_CONTENT
+                    || "HEAD".equals(delegate.getRequestMethod())
+                    || headers.containsKey("Content-Encoding")) {
+                delegate.sendResponseHeaders(rCode, responseLength);
+                return;
+            }
+            headers.set("Content-Encoding", "gzip");
+            delegate.sendResponseHeaders(rCode, 0);
+            body = new GZIPOutputStream(out != null ? out : delegate.getResponseBody(), 8192) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            if (body != null) {
+                return body;
+            }
+            return out != null ? out : delegate.getResponseBody();
+        }
+
+        @Override
+        public void setStreams(InputStream i, OutputStream o) {
+            if (i != null) {
+                delegate.setStreams(i, null);
+            }
+            if (o == null) {
+                return;
+            }
+            if (body != null) {
+                body = o;
+            } else {
+                out = o;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            OutputStream stream = body != null ? body : out;
+            if (stream != null) {
+                try {
+                    // finishes the gzip trailer and ends the exchange
+                    stream.close();
+                } catch (IOException e) {
+                    // the client went away, the exchange is closed below
+                }
+            }
+            delegate.close();
+        }
+    }
+
+    /**
+     * Passes everything on to another exchange, for the filters that need to see what the handlers do with theirs.
+     */
+    private abstract static class ForwardingExchange extends HttpExchange {
+        protected final HttpExchange delegate;
+
+        ForwardingExchange(HttpExchange delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+            delegate.sendResponseHeaders(rCode, responseLength);
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            return delegate.getResponseBody();
+        }
+
+        @Override
+        public void setStreams(InputStream i, OutputStream o) {
+            delegate.setStreams(i, o);
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+
+        @Override
+        public Headers getRequestHeaders() {
+            return delegate.getRequestHeaders();
+        }
+
+        @Override
+        public Headers getResponseHeaders() {
+            return delegate.getResponseHeaders();
+        }
+
+        @Override
+        public URI getRequestURI() {
+            return delegate.getRequestURI();
+        }
+
+        @Override
+        public String getRequestMethod() {
+            return delegate.getRequestMethod();
+        }
+
+        @Override
+        public HttpContext getHttpContext() {
+            return delegate.getHttpContext();
+        }
+
+        @Override
+        public InputStream getRequestBody() {
+            return delegate.getRequestBody();
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return delegate.getRemoteAddress();
+        }
+
+        @Override
+        public int getResponseCode() {
+            return delegate.getResponseCode();
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return delegate.getLocalAddress();
+        }
+
+        @Override
+        public String getProtocol() {
+            return delegate.getProtocol();
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return delegate.getAttribute(name);
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+            delegate.setAttribute(name, value);
+        }
+
+        @Override
+        public HttpPrincipal getPrincipal() {
+            return delegate.getPrincipal();
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private static class MetricsHandler implements HttpHandler {
+        private final MockGitHub github;
+
+        public MetricsHandler(MockGitHub github) {
+            this.github = Objects.requireNonNull(github);
+        }
+
+        @Override
+        public void handle(HttpExchange he) throws IOException {
+            MockMetrics metrics = github.metrics;
+            he.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+            he.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+            try (JsonGenerator o = github.factory.createGenerator(he.getResponseBody())) {
+                o.writeStartObject();
+                o.writeNumberField("requests", metrics.getRequests());
+                o.writeNumberField("bytes_written", metrics.getBytesWritten());
+                o.writeFieldName("routes");
+                o.writeStartObject();
+                for (Map.Entry<String, MockMetrics.Route> e : metrics.getRoutes().entrySet()) {
+                    MockMetrics.Route route = e.getValue();
+                    o.writeFieldName(e.getKey());
+                    o.writeStartObject();
+                    o.writeNumberField("requests", route.getRequests());
+                    o.writeNumberField("bytes_written", route.getBytesWritten());
+                    o.writeFieldName("statuses");
+                    o.writeStartObject();
+                    for (Map.Entry<Integer, Long> s : route.getStatusCounts().entrySet()) {
+                        o.writeNumberField(Integer.toString(s.getKey()), s.getValue());
+                    }
+                    o.writeEndObject();
+                    MockHistogram latency = route.getLatency();
+                    o.writeFieldName("latency_ms");
+                    o.writeStartObject();
+                    o.writeNumberField("mean", latency.getMean() / 1e6);
+                    o.writeNumberField("p50", latency.getValueAtPercentile(50) / 1e6);
+                    o.writeNumberField("p90", latency.getValueAtPercentile(90) / 1e6);
+                    o.writeNumberField("p99", latency.getValueAtPercentile(99) / 1e6);
+                    o.writeNumberField("max", latency.getMax() / 1e6);
+                    o.writeEndObject();
+                    o.writeEndObject();
+                }
+                o.writeEndObject();
+                o.writeEndObject();
+            }
+            he.close();
+        }
+    }
+
+    private static class ProfileFilter extends Filter {
+        private final MockGitHub github;
+
+        public ProfileFilter(MockGitHub github) {
+            this.github = Objects.requireNonNull(github);
+        }
+
+        @Override
+        public void doFilter(HttpExchange he, Chain chain) throws IOException {
+            MockProfile profile = github.profileOf(he.getRequestURI().getPath());
+            if (profile == null) {
+                chain.doFilter(he);
+                return;
+            }
+            SplittableRandom random = profile.next(github.seed);
+            long delay = profile.delay(random);
+            MockFault fault = profile.fault(random);
+            if (delay > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            if (fault == null) {
+                chain.doFilter(he);
+            } else {
+                fault.inject(he, chain);
+            }
+        }
+
+        @Override
+        public String description() {
+            return "Simulates latency and faults";
+        }
+    }
+
+    private static class RateLimitFilter extends Filter {
+        private final MockGitHub github;
+
+        public RateLimitFilter(MockGitHub github) {
+            this.github = Objects.requireNonNull(github);
+        }
+
+        @Override
+        public void doFilter(HttpExchange he, Chain chain) throws IOException {
+            MockRateLimit limit = github.rateLimit;
+            if (limit == null) {
+                chain.doFilter(he);
+                return;
+            }
+            MockRateLimit.Snapshot snapshot = limit.consume(he.getRequestHeaders().getFirst("Authorization"));
+            setRateLimitHeaders(he, limit, snapshot);
+            if (snapshot.isAllowed()) {
+                chain.doFilter(he);
+                return;
+            }
+            byte[] body = ("{\"message\":\"API rate limit exceeded\",\"documentation_url\":"
+                            + "\"https://docs.github.com/rest/using-the-rest-api/rate-limits-for-the-rest-api\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+            he.getResponseHeaders().set("Retry-After", Long.toString(Math.max(1, snapshot.getRetryAfter())));
+            he.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+            he.sendResponseHeaders(limit.getExhaustedStatus(), body.length);
+            he.getResponseBody().write(body);
+            he.close();
+        }
+
+        @Override
+        public String description() {
+            return "Simulates the GitHub rate limit";
+        }
+    }
+
+    private static class RateLimitHandler implements HttpHandler {
+        private final MockGitHub github;
+
+        public RateLimitHandler(MockGitHub github) {
+            this.github = Objects.requireNonNull(github);
+        }
+
+        @Override
+        public void handle(HttpExchange he) throws IOException {
+            MockRateLimit limit = github.rateLimit;
+            if (limit == null) {
+                // GitHub Enterprise answers with a 404 when rate limiting is disabled
+                he.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+                he.close();
+                return;
+            }
+            MockRateLimit.Snapshot snapshot = limit.peek(he.getRequestHeaders().getFirst("Authorization"));
+            setRateLimitHeaders(he, limit, snapshot);
+            he.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+            he.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+            try (JsonGenerator o = github.factory.createGenerator(he.getResponseBody())) {
+                o.writeStartObject();
+                o.writeFieldName("resources");
+                o.writeStartObject();
+                for (String resource : new String[] {"core", "search", "graphql", "integration_manifest"}) {
+                    o.writeFieldName(resource);
+                    writeRate(o, limit, snapshot, resource);
+                }
+                o.writeEndObject();
+                o.writeFieldName("rate");
+                writeRate(o, limit, snapshot, "core");
+                o.writeEndObject();
+            }
+            he.close();
+        }
+
+        private static void writeRate(
+                JsonGenerator o, MockRateLimit limit, MockRateLimit.Snapshot snapshot, String resource)
+                throws IOException {
+            o.writeStartObject();
+            o.writeNumberField("limit", limit.getLimit());
+            o.writeNumberField("remaining", snapshot.getRemaining());
+            o.writeNumberField("reset", snapshot.getReset());
+            o.writeNumberField("used", snapshot.getUsed());
+            o.writeStringField("resource", resource);
+            o.writeEndObject();
+        }
     }
 
-    public String getUrl() {
-        return url;
-    }
+    private static class AppHandler implements HttpHandler {
+        private final MockGitHub github;
 
-    public Map<String, MockUser> getUsers() {
-        return users;
-    }
+        public AppHandler(MockGitHub github) {
+            this.github = Objects.requireNonNull(github);
+        }
 
-    public Map<String, MockOrganization> getOrgs() {
-        return organizations;
-    }
+        @Override
+        public void handle(HttpExchange he) throws IOException {
+            MockApp app = github.app;
+            String path = he.getRequestURI().getPath();
+            String[] segments = path.substring(1).split("/");
+            String reason;
+            if (app == null || !"app".equals(segments[0])) {
+                he.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+            } else if ((reason = app.verifyJwt(he.getRequestHeaders().getFirst("Authorization"), github.factory))
+                    != null) {
+                github.error(he, HttpURLConnection.HTTP_UNAUTHORIZED, reason);
+            } else if (segments.length == 1) {
+                // Handle /app
+                github.respond(he, github.serialize(o -> writeApp(o, app)));
+            } else if (segments.length == 2 && "installations".equals(segments[1])) {
+                // Handle /app/installations
+                Map<String, String> query = query(he);
+                int page = page(query);
+                int perPage = perPage(query);
+                List<MockApp.Installation> installations = page(app.installations().values(), page, perPage);
+                github.pageLinks(he, path, query, page, perPage, app.installations().size());
+                github.respond(he, github.serialize(o -> {
+                    o.writeStartArray();
+                    for (MockApp.Installation installation : installations) {
+                        writeInstallation(o, github, app, installation);
+                    }
+                    o.writeEndArray();
+                }));
+            } else if (segments.length >= 3 && "installations".equals(segments[1])) {
+                MockApp.Installation installation = installation(app, segments[2]);
+                if (installation == null) {
+                    github.error(he, HttpURLConnection.HTTP_NOT_FOUND, "Not Found");
+                } else if (segments.length == 3) {
+                    // Handle /app/installations/{id}
+                    github.respond(he, github.serialize(o -> writeInstallation(o, github, app, installation)));
+                } else if (segments.length == 4
+                        && "access_tokens".equals(segments[3])
+                        && "POST".equals(he.getRequestMethod())) {
+                    // Handle POST /app/installations/{id}/access_tokens
+                    MockApp.Token token = app.exchange(installation);
+                    byte[] body = github.serialize(o -> {
+                        o.writeStartObject();
+                        o.writeStringField("token", token.token);
+                        o.writeStringField("expires_at", tz(token.expires));
+                        writePermissions(o);
+                        o.writeStringField("repository_selection", "all");
+                        o.writeEndObject();
+                    });
+                    he.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+                    he.sendResponseHeaders(HttpURLConnection.HTTP_CREATED, body.length);
+                    he.getResponseBody().write(body);
+                } else {
+                    he.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+                }
+            } else {
+                he.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+            }
+            he.close();
+        }
 
-    public long nextId() {
-        return nextId.incrementAndGet();
+        private static MockApp.Installation installation(MockApp app, String id) {
+            try {
+                return app.installations().get(Long.parseLong(id));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
     }
 
-    public static String tz(long time) {
-        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
-        format.setTimeZone(TimeZone.getTimeZone("UTC"));
-        return format.format(new Date(time));
-    }
+    private static class InstallationHandler implements HttpHandler {
+        private final MockGitHub github;
 
-    public MockUser withUser(String login) {
-        MockUser result = new MockUser(this, login);
-        users.put(login, result);
-        return result;
-    }
+        public InstallationHandler(MockGitHub github) {
+            this.github = Objects.requireNonNull(github);
+        }
 
-    public MockOrganization withOrg(String login) {
-        MockOrganization result = new MockOrganization(this, login);
-        organizations.put(login, result);
-        return result;
+        @Override
+        public void handle(HttpExchange he) throws IOException {
+            MockApp app = github.app;
+            String path = he.getRequestURI().getPath();
+            MockApp.Installation installation =
+                    app == null ? null : app.verifyToken(he.getRequestHeaders().getFirst("Authorization"));
+            if (installation == null) {
+                if (app != null) {
+                    app.rejected();
+                }
+                github.error(he, HttpURLConnection.HTTP_UNAUTHORIZED, "Bad credentials");
+            } else if ("/installation/repositories".equals(path)) {
+                // Handle /installation/repositories, every repository of the account as the selection is "all"
+                MockOwner<?> account = installation.getAccount();
+                Map<String, String> query = query(he);
+                int page = page(query);
+                int perPage = perPage(query);
+                List<MockRepository> repositories = account.repositoryList();
+                int total = repositories.size();
+                List<byte[]> items = new ArrayList<>(perPage);
+                for (MockRepository r : page(repositories, false, page, perPage)) {
+                    items.add(r.payload("summary", r.owner().getUpdated(), o -> writeRepositorySummary(o, r)));
+                }
+                github.pageLinks(he, path, query, page, perPage, total);
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                body.write(("{\"total_count\":" + total + ",\"repository_selection\":\"all\",\"repositories\":")
+                        .getBytes(StandardCharsets.UTF_8));
+                body.write(array(items));
+                body.write('}');
+                github.respond(he, body.toByteArray());
+            } else {
+                he.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+            }
+            he.close();
+        }
     }
 
-    public List<MockOwner<?>> owners() {
-        List<MockOwner<?>> result = new ArrayList<>(organizations.size() + users.size());
-        result.addAll(users.values());
-        result.addAll(organizations.values());
-        return result;
+    private static class GraphQLHandler implements HttpHandler {
+        private final MockGitHub github;
+
+        public GraphQLHandler(MockGitHub github) {
+            this.github = Objects.requireNonNull(github);
+        }
+
+        @Override
+        public void handle(HttpExchange he) throws IOException {
+            if (!"POST".equals(he.getRequestMethod()) || !"/graphql".equals(he.getRequestURI().getPath())) {
+                he.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+                he.close();
+                return;
+            }
+            // unlike GitHub, anonymous queries are answered, with the public data only
+            MockGraphQL graphQL = new MockGraphQL(github, github.authenticated(he));
+            byte[] body;
+            try (JsonParser p = github.factory.createParser(he.getRequestBody())) {
+                body = github.serialize(o -> graphQL.execute(p, o));
+            } catch (JsonProcessingException e) {
+                body = "{\"message\":\"Problems parsing JSON\"}".getBytes(StandardCharsets.UTF_8);
+                he.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+                he.sendResponseHeaders(HttpURLConnection.HTTP_BAD_REQUEST, body.length);
+                he.getResponseBody().write(body);
+                he.close();
+                return;
+            }
+            github.respond(he, body);
+            he.close();
+        }
     }
 
     private static class RootHandler implements HttpHandler {
         private final MockGitHub github;
+        private volatile byte[] root;
 
         public RootHandler(MockGitHub github) {
             this.github = Objects.requireNonNull(github);
@@ -99,55 +2029,62 @@ public class MockGitHub implements Closeable {
 
         @Override
         public void handle(HttpExchange he) throws IOException {
-            he.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
-            he.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
-            try (JsonGenerator o = github.factory.createGenerator(he.getResponseBody())) {
-                o.writeStartObject();
-                o.writeStringField("current_user_url", github.getUrl() + "/user");
-                o.writeStringField(
-                        "current_user_authorizations_html_url",
-                        "https://github.com/settings/connections/applications{/client_id}");
-                o.writeStringField("authorizations_url", github.getUrl() + "/authorizations");
-                o.writeStringField(
-                        "code_search_url", github.getUrl() + "/search/code?q={query}{&page,per_page,sort,order}");
-                o.writeStringField(
-                        "commit_search_url", github.getUrl() + "/search/commits?q={query}{&page,per_page,sort,order}");
-                o.writeStringField("emails_url", github.getUrl() + "/user/emails");
-                o.writeStringField("emojis_url", github.getUrl() + "/emojis");
-                o.writeStringField("events_url", github.getUrl() + "/events");
-                o.writeStringField("feeds_url", github.getUrl() + "/feeds");
-                o.writeStringField("followers_url", github.getUrl() + "/user/followers");
-                o.writeStringField("following_url", github.getUrl() + "/user/following{/target}");
-                o.writeStringField("gists_url", github.getUrl() + "/gists{/gist_id}");
-                o.writeStringField("hub_url", github.getUrl() + "/hub");
-                o.writeStringField(
-                        "issue_search_url", github.getUrl() + "/search/issues?q={query}{&page,per_page,sort,order}");
-                o.writeStringField("issues_url", github.getUrl() + "/issues");
-                o.writeStringField("keys_url", github.getUrl() + "/user/keys");
-                o.writeStringField("notifications_url", github.getUrl() + "/notifications");
-                o.writeStringField(
-                        "organization_repositories_url",
-                        github.getUrl() + "/orgs/{org}/repos{?type,page,per_page,sort}");
-                o.writeStringField("organization_url", github.getUrl() + "/orgs/{org}");
-                o.writeStringField("public_gists_url", github.getUrl() + "/gists/public");
-                o.writeStringField("rate_limit_url", github.getUrl() + "/rate_limit");
-                o.writeStringField("repository_url", github.getUrl() + "/repos/{owner}/{repo}");
-                o.writeStringField(
-                        "repository_search_url",
-                        github.getUrl() + "/search/repositories?q={query}{&page,per_page,sort,order}");
-                o.writeStringField(
-                        "current_user_repositories_url", github.getUrl() + "/user/repos{?type,page,per_page,sort}");
-                o.writeStringField("starred_url", github.getUrl() + "/user/starred{/owner}{/repo}");
-                o.writeStringField("starred_gists_url", github.getUrl() + "/gists/starred");
-                o.writeStringField("team_url", github.getUrl() + "/teams");
-                o.writeStringField("user_url", github.getUrl() + "/users/{user}");
-                o.writeStringField("user_organizations_url", github.getUrl() + "/user/orgs");
-                o.writeStringField(
-                        "user_repositories_url", github.getUrl() + "/users/{user}/repos{?type,page,per_page,sort}");
-                o.writeStringField(
-                        "user_search_url", github.getUrl() + "/search/users?q={query}{&page,per_page,sort,order}");
-                o.writeEndObject();
+            byte[] body = root;
+            if (body == null) {
+                // the root document only depends on the URL, which is fixed once the mock is open
+                body = github.serialize(o -> {
+                    o.writeStartObject();
+                    o.writeStringField("current_user_url", github.getUrl() + "/user");
+                    o.writeStringField(
+                            "current_user_authorizations_html_url",
+                            "https://github.com/settings/connections/applications{/client_id}");
+                    o.writeStringField("authorizations_url", github.getUrl() + "/authorizations");
+                    o.writeStringField(
+                            "code_search_url",
+                            github.getUrl() + "/search/code?q={query}{&page,per_page,sort,order}");
+                    o.writeStringField(
+                            "commit_search_url",
+                            github.getUrl() + "/search/commits?q={query}{&page,per_page,sort,order}");
+                    o.writeStringField("emails_url", github.getUrl() + "/user/emails");
+                    o.writeStringField("emojis_url", github.getUrl() + "/emojis");
+                    o.writeStringField("events_url", github.getUrl() + "/events");
+                    o.writeStringField("feeds_url", github.getUrl() + "/feeds");
+                    o.writeStringField("followers_url", github.getUrl() + "/user/followers");
+                    o.writeStringField("following_url", github.getUrl() + "/user/following{/target}");
+                    o.writeStringField("gists_url", github.getUrl() + "/gists{/gist_id}");
+                    o.writeStringField("hub_url", github.getUrl() + "/hub");
+                    o.writeStringField(
+                            "issue_search_url",
+                            github.getUrl() + "/search/issues?q={query}{&page,per_page,sort,order}");
+                    o.writeStringField("issues_url", github.getUrl() + "/issues");
+                    o.writeStringField("keys_url", github.getUrl() + "/user/keys");
+                    o.writeStringField("notifications_url", github.getUrl() + "/notifications");
+                    o.writeStringField(
+                            "organization_repositories_url",
+                            github.getUrl() + "/orgs/{org}/repos{?type,page,per_page,sort}");
+                    o.writeStringField("organization_url", github.getUrl() + "/orgs/{org}");
+                    o.writeStringField("public_gists_url", github.getUrl() + "/gists/public");
+                    o.writeStringField("rate_limit_url", github.getUrl() + "/rate_limit");
+                    o.writeStringField("repository_url", github.getUrl() + "/repos/{owner}/{repo}");
+                    o.writeStringField(
+                            "repository_search_url",
+                            github.getUrl() + "/search/repositories?q={query}{&page,per_page,sort,order}");
+                    o.writeStringField(
+                            "current_user_repositories_url", github.getUrl() + "/user/repos{?type,page,per_page,sort}");
+                    o.writeStringField("starred_url", github.getUrl() + "/user/starred{/owner}{/repo}");
+                    o.writeStringField("starred_gists_url", github.getUrl() + "/gists/starred");
+                    o.writeStringField("team_url", github.getUrl() + "/teams");
+                    o.writeStringField("user_url", github.getUrl() + "/users/{user}");
+                    o.writeStringField("user_organizations_url", github.getUrl() + "/user/orgs");
+                    o.writeStringField(
+                            "user_repositories_url", github.getUrl() + "/users/{user}/repos{?type,page,per_page,sort}");
+                    o.writeStringField(
+                            "user_search_url", github.getUrl() + "/search/users?q={query}{&page,per_page,sort,order}");
+                    o.writeEndObject();
+                });
+                root = body;
             }
+            github.respond(he, body);
             he.close();
         }
     }
@@ -162,53 +2099,26 @@ public class MockGitHub implements Closeable {
         @Override
         public void handle(HttpExchange he) throws IOException {
             String path = he.getRequestURI().getPath();
-            if (path.endsWith("/")) {
-                // Handle /orgs/{org}/
-                String orgName = path.substring("/orgs/".length(), path.length() - 1);
-                MockOrganization org = github.getOrgs().get(orgName);
-                if (org != null) {
-                    he.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
-                    he.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
-                    try (JsonGenerator o = github.factory.createGenerator(he.getResponseBody())) {
-                        o.writeStartObject();
-                        o.writeStringField("login", org.getLogin());
-                        o.writeNumberField("id", org.getId());
-                        o.writeStringField("url", github.getUrl() + "/users/" + org.getLogin());
-                        o.writeStringField("repos_url", github.getUrl() + "/orgs/" + org.getLogin() + "/repos");
-                        o.writeStringField("events_url", github.getUrl() + "/orgs/" + org.getLogin() + "/events");
-                        o.writeStringField("hooks_url", github.getUrl() + "/orgs/" + org.getLogin() + "/hooks");
-                        o.writeStringField("issues_url", github.getUrl() + "/orgs/" + org.getLogin() + "/issues");
-                        o.writeStringField(
-                                "members_url", github.getUrl() + "/orgs/" + org.getLogin() + "/members{/member}");
-                        o.writeStringField(
-                                "public_members_url",
-                                github.getUrl() + "/orgs/" + org.getLogin() + "/public_members{/member}");
-                        o.writeStringField("avatar_url", org.getAvatarUrl());
-                        o.writeStringField("description", org.getDescription());
-                        o.writeStringField("name", org.getName());
-                        o.writeNullField("company");
-                        o.writeStringField("blog", org.getBlog());
-                        o.writeStringField("location", org.getLocation());
-                        o.writeStringField("email", org.getEmail());
-                        o.writeBooleanField("has_organization_projects", true);
-                        o.writeBooleanField("has_repository_projects", true);
-                        o.writeNumberField("public_repos", org.getPublicRepos());
-                        o.writeNumberField("public_gists", 0);
-                        o.writeNumberField("followers", org.getFollowers());
-                        o.writeNumberField("following", org.getFollowing());
-                        o.writeStringField("created_at", tz(org.getCreated()));
-                        o.writeStringField("updated_at", tz(org.getUpdated()));
-                        o.writeStringField("type", org.getType());
-                        o.writeEndObject();
-                    }
-                } else {
+            String[] segments = path.substring("/orgs/".length()).split("/");
+            MockOrganization org = github.getOrgs().get(segments[0]);
+            if (segments.length == 1 && !path.endsWith("/") && github.redirects) {
+                // Handle /orgs/{org} (redirect to /orgs/{org}/)
+                github.redirect(he, "/orgs/" + segments[0] + "/");
+            } else if (segments.length == 1) {
+                // Handle /orgs/{org} and /orgs/{org}/
+                if (org == null) {
                     he.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+                } else if (!github.notModified(he, org.getETag(), org.getUpdated())) {
+                    github.respond(he, org.payload("org", 0, o -> writeOrganization(o, github, org)));
                 }
+            } else if (segments.length == 2 && "installation".equals(segments[1])) {
+                // Handle /orgs/{org}/installation
+                github.sendInstallation(he, segments[0]);
+            } else if (segments.length == 2 && "repos".equals(segments[1]) && org != null) {
+                // Handle /orgs/{org}/repos, organization membership is not modelled so only public repositories
+                github.sendRepositories(he, path, org.publicRepositoryList());
             } else {
-                // Handle /orgs/{org} (redirect to /orgs/{org}/)
-                String orgName = path.substring("/orgs/".length());
-                he.getResponseHeaders().set("Location", "/orgs/" + orgName + "/");
-                he.sendResponseHeaders(HttpURLConnection.HTTP_MOVED_TEMP, -1);
+                he.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
             }
             he.close();
         }
@@ -224,82 +2134,535 @@ public class MockGitHub implements Closeable {
         @Override
         public void handle(HttpExchange he) throws IOException {
             String path = he.getRequestURI().getPath();
-            if (path.endsWith("/")) {
-                // Handle /users/{username}/
-                String userName = path.substring("/users/".length(), path.length() - 1);
-                MockOwner<?> owner = github.getUsers().get(userName);
+            String[] segments = path.substring("/users/".length()).split("/");
+            if (segments.length == 1 && !path.endsWith("/") && github.redirects) {
+                // Handle /users/{username} (redirect to /users/{username}/)
+                github.redirect(he, "/users/" + segments[0] + "/");
+            } else if (segments.length == 1) {
+                // Handle /users/{username} and /users/{username}/
+                MockOwner<?> owner = github.owner(segments[0]);
                 if (owner == null) {
-                    owner = github.getOrgs().get(userName);
+                    he.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+                } else if (!github.notModified(he, owner.getETag(), owner.getUpdated())) {
+                    github.respond(he, owner.payload("user", 0, o -> writeUser(o, github, owner)));
+                }
+            } else if (segments.length == 2 && "installation".equals(segments[1])) {
+                // Handle /users/{username}/installation
+                github.sendInstallation(he, segments[0]);
+            } else if (segments.length == 2 && "repos".equals(segments[1]) && github.owner(segments[0]) != null) {
+                // Handle /users/{username}/repos
+                MockOwner<?> owner = github.owner(segments[0]);
+                if (owner == github.authenticated(he)) {
+                    github.sendRepositories(he, path, owner.repositoryList());
+                } else {
+                    github.sendRepositories(he, path, owner.publicRepositoryList());
                 }
+            } else if (segments.length == 2 && "followers".equals(segments[1]) && github.owner(segments[0]) != null) {
+                // Handle /users/{username}/followers
+                List<String> followers = github.followerList(segments[0]);
+                sendOwners(he, path, followers, followers.size());
+            } else if (segments.length == 2 && "following".equals(segments[1]) && github.owner(segments[0]) != null) {
+                // Handle /users/{username}/following
+                List<String> following = github.owner(segments[0]).getFollowingLogins();
+                sendOwners(he, path, following, following.size());
+            } else {
+                he.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+            }
+            he.close();
+        }
+
+        private void sendOwners(HttpExchange he, String path, List<String> logins, int total)
+                throws IOException {
+            Map<String, String> query = query(he);
+            int page = page(query);
+            int perPage = perPage(query);
+            List<byte[]> items = new ArrayList<>(perPage);
+            for (String login : page(logins, false, page, perPage)) {
+                MockOwner<?> owner = github.owner(login);
                 if (owner != null) {
-                    he.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
-                    he.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
-                    try (JsonGenerator o = github.factory.createGenerator(he.getResponseBody())) {
+                    items.add(owner.payload("summary", 0, o -> writeOwnerSummary(o, github, owner)));
+                }
+            }
+            github.pageLinks(he, path, query, page, perPage, total);
+            github.respond(he, array(items));
+        }
+    }
+
+    private static class UserHandler implements HttpHandler {
+        private final MockGitHub github;
+
+        public UserHandler(MockGitHub github) {
+            this.github = Objects.requireNonNull(github);
+        }
+
+        @Override
+        public void handle(HttpExchange he) throws IOException {
+            String path = he.getRequestURI().getPath();
+            MockUser user = github.authenticated(he);
+            if (user == null) {
+                he.sendResponseHeaders(HttpURLConnection.HTTP_UNAUTHORIZED, -1);
+            } else if ("/user".equals(path) || "/user/".equals(path)) {
+                // Handle /user
+                if (!github.notModified(he, user.getETag(), user.getUpdated())) {
+                    github.respond(he, user.payload("user", 0, o -> writeUser(o, github, user)));
+                }
+            } else if ("/user/repos".equals(path)) {
+                // Handle /user/repos, organization membership is not modelled so only the user's own repositories
+                Map<String, String> query = query(he);
+                String visibility = query.getOrDefault("visibility", query.getOrDefault("type", "all"));
+                if ("public".equals(visibility)) {
+                    github.sendRepositories(he, path, user.publicRepositoryList());
+                } else if ("private".equals(visibility)) {
+                    github.sendRepositories(he, path, user.privateRepositoryList());
+                } else {
+                    github.sendRepositories(he, path, user.repositoryList());
+                }
+            } else {
+                he.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+            }
+            he.close();
+        }
+    }
+
+    private static class ReposHandler implements HttpHandler {
+        /**
+         * GitHub only inlines the content of files up to 1 MB in the contents API.
+         */
+        private static final long MAX_CONTENT_SIZE = 1024 * 1024;
+        /**
+         * GitHub serves blobs up to 100 MB through the blobs API.
+         */
+        private static final long MAX_BLOB_SIZE = 100L * 1024 * 1024;
+        /**
+         * GitHub truncates recursive trees at 100,000 entries.
+         */
+        private static final int MAX_TREE_ENTRIES = 100_000;
+        private static final Set<String> STATES = Set.of("error", "failure", "pending", "success");
+
+        private final MockGitHub github;
+
+        public ReposHandler(MockGitHub github) {
+            this.github = Objects.requireNonNull(github);
+        }
+
+        @Override
+        public void handle(HttpExchange he) throws IOException {
+            String path = he.getRequestURI().getPath();
+            String[] segments = path.substring("/repos/".length()).split("/", 4);
+            MockRepository repo =
+                    segments.length < 2 ? null : github.visibleRepository(he, segments[0], segments[1]);
+            if (repo == null) {
+                github.error(he, HttpURLConnection.HTTP_NOT_FOUND, "Not Found");
+            } else if (segments.length == 2 || segments.length == 3 && segments[2].isEmpty()) {
+                // Handle /repos/{owner}/{repo}
+                long dependency = repo.owner().getUpdated();
+                if (!github.notModified(he, repo.getETag(), Math.max(repo.getUpdated(), dependency))) {
+                    github.respond(he, repo.payload("repo", dependency, o -> writeRepository(o, github, repo)));
+                }
+            } else if ("contents".equals(segments[2])) {
+                // Handle /repos/{owner}/{repo}/contents and /repos/{owner}/{repo}/contents/{path}
+                contents(he, repo, segments.length == 4 ? segments[3] : "");
+            } else if ("branches".equals(segments[2])) {
+                // Handle /repos/{owner}/{repo}/branches and /repos/{owner}/{repo}/branches/{branch}
+                branches(he, repo, segments.length == 4 ? segments[3] : "");
+            } else if ("pulls".equals(segments[2])) {
+                // Handle /repos/{owner}/{repo}/pulls and /repos/{owner}/{repo}/pulls/{pull_number}
+                pulls(he, repo, segments.length == 4 ? segments[3] : "");
+            } else if (segments.length == 4 && "statuses".equals(segments[2])) {
+                // Handle /repos/{owner}/{repo}/statuses/{sha}
+                statuses(he, repo, segments[3]);
+            } else if (segments.length == 4 && segments[3].startsWith("trees/") && "git".equals(segments[2])) {
+                // Handle /repos/{owner}/{repo}/git/trees/{tree_sha}
+                tree(he, repo, segments[3].substring("trees/".length()));
+            } else if (segments.length == 4 && segments[3].startsWith("blobs/") && "git".equals(segments[2])) {
+                // Handle /repos/{owner}/{repo}/git/blobs/{file_sha}
+                blob(he, repo, segments[3].substring("blobs/".length()));
+            } else {
+                github.error(he, HttpURLConnection.HTTP_NOT_FOUND, "Not Found");
+            }
+            he.close();
+        }
+
+        private void contents(HttpExchange he, MockRepository repo, String path) throws IOException {
+            String ref = query(he).getOrDefault("ref", repo.getDefaultBranch());
+            MockFileTree files = repo.getFiles();
+            MockFileTree.Entry root = commit(repo, ref);
+            if (root == null) {
+                github.error(he, HttpURLConnection.HTTP_NOT_FOUND, "No commit found for the ref " + ref);
+                return;
+            }
+            MockFileTree.Entry entry = entry(files, root, path);
+            if (entry == null) {
+                github.error(he, HttpURLConnection.HTTP_NOT_FOUND, "Not Found");
+                return;
+            }
+            String accept = he.getRequestHeaders().getFirst("Accept");
+            if (accept != null && accept.contains(".raw") && !entry.isDirectory()) {
+                if (!github.notModified(he, "\"" + entry.getSha() + "-raw\"", repo.getUpdated())) {
+                    sendRaw(he, files, entry);
+                }
+            } else if (github.notModified(he, "\"" + entry.getSha() + "\"", repo.getUpdated())) {
+                return;
+            } else if (entry.isDirectory()) {
+                github.stream(he, o -> {
+                    o.writeStartArray();
+                    for (Iterator<MockFileTree.Entry> i = files.list(entry, false); i.hasNext(); ) {
                         o.writeStartObject();
-                        o.writeStringField("login", owner.getLogin());
-                        o.writeNumberField("id", owner.getId());
-                        o.writeStringField("avatar_url", owner.getAvatarUrl());
-                        o.writeStringField("gravatar_id", "");
-                        o.writeStringField("url", github.getUrl() + "/users/" + owner.getLogin());
-                        o.writeStringField("html_url", "https://github.com/" + owner.getLogin());
-                        o.writeStringField(
-                                "followers_url", github.getUrl() + "/users/" + owner.getLogin() + "/followers");
-                        o.writeStringField(
-                                "following_url",
-                                github.getUrl() + "/users/" + owner.getLogin() + "/following{/other_user}");
-                        o.writeStringField(
-                                "gists_url", github.getUrl() + "/users/" + owner.getLogin() + "/gists{/gist_id}");
-                        o.writeStringField(
-                                "starred_url",
-                                github.getUrl() + "/users/" + owner.getLogin() + "/starred{/owner}{/repo}");
-                        o.writeStringField(
-                                "subscriptions_url", github.getUrl() + "/users/" + owner.getLogin() + "/subscriptions");
-                        o.writeStringField(
-                                "organizations_url", github.getUrl() + "/users/" + owner.getLogin() + "/orgs");
-                        o.writeStringField("repos_url", github.getUrl() + "/users/" + owner.getLogin() + "/repos");
-                        o.writeStringField(
-                                "events_url", github.getUrl() + "/users/" + owner.getLogin() + "/events{/privacy}");
-                        o.writeStringField(
-                                "received_events_url",
-                                github.getUrl() + "/users/" + owner.getLogin() + "/received_events");
-                        o.writeStringField("type", owner.getType());
-                        if (owner instanceof MockUser user) {
-                            o.writeBooleanField("site_admin", user.isSiteAdmin());
-                        } else {
-                            o.writeBooleanField("site_admin", false);
-                        }
-                        o.writeStringField("name", owner.getName());
-                        if (owner instanceof MockUser user) {
-                            o.writeStringField("company", user.getCompany());
-                        } else {
-                            o.writeNullField("company");
+                        writeContent(o, github, repo, i.next(), ref);
+                        o.writeEndObject();
+                    }
+                    o.writeEndArray();
+                });
+            } else {
+                github.stream(he, o -> {
+                    o.writeStartObject();
+                    writeContent(o, github, repo, entry, ref);
+                    if (entry.getSize() <= MAX_CONTENT_SIZE) {
+                        o.writeStringField("encoding", "base64");
+                        o.writeFieldName("content");
+                        try (InputStream in = files.open(entry)) {
+                            o.writeBinary(in, (int) entry.getSize());
                         }
-                        o.writeStringField("blog", owner.getBlog());
-                        o.writeStringField("location", owner.getLocation());
-                        o.writeStringField("email", owner.getEmail());
-                        if (owner instanceof MockUser user) {
-                            o.writeBooleanField("hireable", user.isHireable());
-                            o.writeStringField("bio", user.getBio());
+                    } else {
+                        o.writeStringField("encoding", "none");
+                        o.writeStringField("content", "");
+                    }
+                    o.writeEndObject();
+                });
+            }
+        }
+
+        private void tree(HttpExchange he, MockRepository repo, String sha) throws IOException {
+            MockFileTree files = repo.getFiles();
+            MockFileTree.Entry tree = resolve(repo, sha);
+            if (tree == null || !tree.isDirectory()) {
+                github.error(he, HttpURLConnection.HTTP_NOT_FOUND, "Not Found");
+                return;
+            }
+            if (github.notModified(he, "\"" + tree.getSha() + "\"", repo.getUpdated())) {
+                return;
+            }
+            boolean recursive = query(he).containsKey("recursive");
+            String url = github.getUrl() + "/repos/" + repo.owner().getLogin() + "/" + repo.getName() + "/git/";
+            int prefix = tree.getPath().isEmpty() ? 0 : tree.getPath().length() + 1;
+            github.stream(he, o -> {
+                o.writeStartObject();
+                o.writeStringField("sha", tree.getSha());
+                o.writeStringField("url", url + "trees/" + tree.getSha());
+                o.writeArrayFieldStart("tree");
+                int count = 0;
+                Iterator<MockFileTree.Entry> i = files.list(tree, recursive);
+                for (; count < MAX_TREE_ENTRIES && i.hasNext(); count++) {
+                    MockFileTree.Entry entry = i.next();
+                    o.writeStartObject();
+                    o.writeStringField("path", entry.getPath().substring(prefix));
+                    o.writeStringField("mode", entry.isDirectory() ? "040000" : "100644");
+                    o.writeStringField("type", entry.isDirectory() ? "tree" : "blob");
+                    o.writeStringField("sha", entry.getSha());
+                    if (!entry.isDirectory()) {
+                        o.writeNumberField("size", entry.getSize());
+                    }
+                    o.writeStringField("url", url + (entry.isDirectory() ? "trees/" : "blobs/") + entry.getSha());
+                    o.writeEndObject();
+                }
+                o.writeEndArray();
+                o.writeBooleanField("truncated", i.hasNext());
+                o.writeEndObject();
+            });
+        }
+
+        private void blob(HttpExchange he, MockRepository repo, String sha) throws IOException {
+            MockFileTree files = repo.getFiles();
+            MockFileTree.Entry blob = files.entryBySha(sha);
+            String accept = he.getRequestHeaders().getFirst("Accept");
+            if (blob == null || blob.isDirectory()) {
+                github.error(he, HttpURLConnection.HTTP_NOT_FOUND, "Not Found");
+            } else if (blob.getSize() > MAX_BLOB_SIZE) {
+                github.error(he, HttpURLConnection.HTTP_FORBIDDEN, "This API returns blobs up to 100 MB in size.");
+            } else if (accept != null && accept.contains(".raw")) {
+                // blobs are immutable
+                if (!github.notModified(he, "\"" + sha + "-raw\"", repo.getCreated())) {
+                    sendRaw(he, files, blob);
+                }
+            } else if (!github.notModified(he, "\"" + sha + "\"", repo.getCreated())) {
+                String url = github.getUrl() + "/repos/" + repo.owner().getLogin() + "/" + repo.getName();
+                github.stream(he, o -> {
+                    o.writeStartObject();
+                    o.writeStringField("sha", sha);
+                    o.writeNumberField("size", blob.getSize());
+                    o.writeStringField("url", url + "/git/blobs/" + sha);
+                    o.writeStringField("encoding", "base64");
+                    o.writeFieldName("content");
+                    try (InputStream in = files.open(blob)) {
+                        o.writeBinary(in, (int) blob.getSize());
+                    }
+                    o.writeEndObject();
+                });
+            }
+        }
+
+        private void branches(HttpExchange he, MockRepository repo, String name) throws IOException {
+            if (!name.isEmpty()) {
+                MockBranch branch = repo.getBranch(name);
+                if (branch == null) {
+                    github.error(he, HttpURLConnection.HTTP_NOT_FOUND, "Branch not found");
+                } else if (!github.notModified(he, "\"" + branch.getSha() + "\"", repo.getUpdated())) {
+                    github.respond(he, github.serialize(o -> writeBranch(o, github, repo, branch, true)));
+                }
+                return;
+            }
+            Map<String, String> query = query(he);
+            int page = page(query);
+            int perPage = perPage(query);
+            List<MockBranch> branches = repo.branchList();
+            github.pageLinks(he, he.getRequestURI().getPath(), query, page, perPage, branches.size());
+            // the implicit default branch moves with every push
+            String etag = String.format("\"%x-%x-%x\"", repo.getId(), repo.getBranchVersion(), repo.getUpdated());
+            if (!github.notModified(he, etag, repo.getUpdated())) {
+                List<MockBranch> items = page(branches, false, page, perPage);
+                github.respond(he, github.serialize(o -> {
+                    o.writeStartArray();
+                    for (MockBranch branch : items) {
+                        writeBranch(o, github, repo, branch, false);
+                    }
+                    o.writeEndArray();
+                }));
+            }
+        }
+
+        private void pulls(HttpExchange he, MockRepository repo, String number) throws IOException {
+            if (!number.isEmpty()) {
+                MockPullRequest pullRequest;
+                try {
+                    pullRequest = repo.getPullRequest(Integer.parseInt(number));
+                } catch (NumberFormatException e) {
+                    pullRequest = null;
+                }
+                if (pullRequest == null) {
+                    github.error(he, HttpURLConnection.HTTP_NOT_FOUND, "Not Found");
+                } else if (!github.notModified(
+                        he,
+                        String.format("\"%x-%x-%x\"", pullRequest.getId(), pullRequest.getUpdated(),
+                                pullRequest.getDependency()),
+                        pullRequest.getUpdated())) {
+                    MockPullRequest p = pullRequest;
+                    github.respond(he, p.payload("pull", p.getDependency(), o -> writePullRequest(o, github, p)));
+                }
+                return;
+            }
+            Map<String, String> query = query(he);
+            int page = page(query);
+            int perPage = perPage(query);
+            List<MockPullRequest> pullRequests = repo.pullRequestList(query.getOrDefault("state", "open"));
+            String head = query.get("head");
+            String base = query.get("base");
+            if (head != null || base != null) {
+                List<MockPullRequest> filtered = new ArrayList<>();
+                for (MockPullRequest p : pullRequests) {
+                    String label = p.getHeadRepository().owner().getLogin() + ":" + p.getHeadRef();
+                    if ((head == null || head.equals(label)) && (base == null || base.equals(p.getBaseRef()))) {
+                        filtered.add(p);
+                    }
+                }
+                pullRequests = filtered;
+            }
+            // only sort=created is modelled, which is number order
+            boolean descending = !"asc".equals(query.getOrDefault("direction", "desc"));
+            List<MockPullRequest> items = page(pullRequests, descending, page, perPage);
+            github.pageLinks(he, he.getRequestURI().getPath(), query, page, perPage, pullRequests.size());
+            // the page is stale once any listed pull request, or the branches and repositories it embeds, changes
+            long hash = 31 * repo.getPullRequestVersion() + pullRequests.size();
+            long lastModified = repo.getUpdated();
+            for (MockPullRequest p : items) {
+                hash = 31 * hash + p.getId();
+                hash = 31 * hash + p.getUpdated();
+                hash = 31 * hash + p.getDependency();
+                lastModified = Math.max(lastModified, p.getUpdated());
+            }
+            if (!github.notModified(he, String.format("\"%016x\"", hash), lastModified)) {
+                List<byte[]> payloads = new ArrayList<>(items.size());
+                for (MockPullRequest p : items) {
+                    payloads.add(p.payload("pull", p.getDependency(), o -> writePullRequest(o, github, p)));
+                }
+                github.respond(he, array(payloads));
+            }
+        }
+
+        private void statuses(HttpExchange he, MockRepository repo, String sha) throws IOException {
+            if ("POST".equals(he.getRequestMethod())) {
+                MockUser user = github.authenticated(he);
+                MockApp app = github.app;
+                if (user == null
+                        && (app == null
+                                || app.verifyToken(he.getRequestHeaders().getFirst("Authorization")) == null)) {
+                    github.error(he, HttpURLConnection.HTTP_UNAUTHORIZED, "Requires authentication");
+                    return;
+                }
+                Map<String, String> fields = new HashMap<>();
+                try (JsonParser p = github.factory.createParser(he.getRequestBody())) {
+                    if (p.nextToken() != JsonToken.START_OBJECT) {
+                        throw new JsonParseException(p, "Expected an object");
+                    }
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String name = p.currentName();
+                        if (p.nextToken().isScalarValue()) {
+                            fields.put(name, p.getValueAsString());
                         } else {
-                            o.writeBooleanField("hireable", false);
-                            o.writeNullField("bio");
+                            p.skipChildren();
                         }
-                        o.writeNumberField("public_repos", owner.getPublicRepos());
-                        o.writeNumberField("public_gists", 0);
-                        o.writeNumberField("followers", owner.getFollowers());
-                        o.writeNumberField("following", owner.getFollowing());
-                        o.writeStringField("created_at", tz(owner.getCreated()));
-                        o.writeStringField("updated_at", tz(owner.getUpdated()));
-                        o.writeEndObject();
                     }
-                } else {
-                    he.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+                } catch (JsonProcessingException e) {
+                    github.error(he, HttpURLConnection.HTTP_BAD_REQUEST, "Problems parsing JSON");
+                    return;
+                }
+                String state = fields.get("state");
+                if (!STATES.contains(state)) {
+                    github.error(he, 422, "Validation Failed");
+                    return;
+                }
+                MockStatus status = repo.withStatus(
+                        sha, state, fields.get("target_url"), fields.get("description"), fields.get("context"), user);
+                byte[] body = github.serialize(o -> writeStatus(o, github, repo, status));
+                he.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+                he.getResponseHeaders().set("Location", github.getUrl() + he.getRequestURI().getPath());
+                he.sendResponseHeaders(HttpURLConnection.HTTP_CREATED, body.length);
+                he.getResponseBody().write(body);
+                return;
+            }
+            Map<String, String> query = query(he);
+            int page = page(query);
+            int perPage = perPage(query);
+            List<MockStatus> statuses = repo.getStatuses(sha);
+            github.pageLinks(he, he.getRequestURI().getPath(), query, page, perPage, statuses.size());
+            String etag = String.format("\"%x-%x-%s\"", repo.getId(), repo.getStatusVersion(sha), sha);
+            long lastModified = statuses.isEmpty() ? repo.getCreated() : statuses.get(0).getCreated();
+            if (!github.notModified(he, etag, lastModified)) {
+                List<MockStatus> items = page(statuses, false, page, perPage);
+                github.respond(he, github.serialize(o -> {
+                    o.writeStartArray();
+                    for (MockStatus status : items) {
+                        writeStatus(o, github, repo, status);
+                    }
+                    o.writeEndArray();
+                }));
+            }
+        }
+
+        /**
+         * Resolves a commit-ish to its root tree: {@code HEAD}, a branch, {@code refs/heads/} and a branch, or the
+         * SHA-1 of the head commit of a branch. Every branch holds the files of the repository.
+         */
+        private static MockFileTree.Entry commit(MockRepository repo, String ref) {
+            String name = ref.startsWith("refs/heads/") ? ref.substring("refs/heads/".length()) : ref;
+            if (ref.equals("HEAD") || repo.getBranch(name) != null) {
+                return repo.getFiles().entry("");
+            }
+            for (MockBranch branch : repo.branchList()) {
+                if (ref.equals(branch.getSha())) {
+                    return repo.getFiles().entry("");
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the entry at a path relative to a directory.
+         */
+        private static MockFileTree.Entry entry(MockFileTree files, MockFileTree.Entry directory, String path) {
+            return files.entry(directory.getPath().isEmpty() ? path : directory.getPath() + "/" + path);
+        }
+
+        /**
+         * Resolves a tree-ish: a commit-ish, see {@link #commit(MockRepository, String)}, or the SHA-1 of a tree.
+         */
+        private static MockFileTree.Entry resolve(MockRepository repo, String ref) {
+            MockFileTree.Entry tree = repo.getFiles().entryBySha(ref);
+            return tree != null ? tree : commit(repo, ref);
+        }
+    }
+
+    private static class RawHandler implements HttpHandler {
+        private final MockGitHub github;
+
+        public RawHandler(MockGitHub github) {
+            this.github = Objects.requireNonNull(github);
+        }
+
+        @Override
+        public void handle(HttpExchange he) throws IOException {
+            // Handle /raw/{owner}/{repo}/{ref}/{path}, the download_url of a file, as raw.githubusercontent.com does
+            String[] segments = he.getRequestURI().getPath().substring("/raw/".length()).split("/", 3);
+            MockRepository repo =
+                    segments.length < 3 ? null : github.visibleRepository(he, segments[0], segments[1]);
+            MockFileTree.Entry file = null;
+            if (repo != null) {
+                // the ref may contain slashes, as in feature/foo, so try every split between the ref and the path
+                String rest = segments[2];
+                for (int i = rest.indexOf('/'); file == null && i > 0; i = rest.indexOf('/', i + 1)) {
+                    MockFileTree.Entry root = ReposHandler.commit(repo, rest.substring(0, i));
+                    file = root == null ? null : ReposHandler.entry(repo.getFiles(), root, rest.substring(i + 1));
                 }
+            }
+            if (file == null || file.isDirectory()) {
+                he.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+            } else if (!github.notModified(he, "\"" + file.getSha() + "-raw\"", repo.getUpdated())) {
+                sendRaw(he, repo.getFiles(), file);
+            }
+            he.close();
+        }
+    }
+
+    private static class SearchHandler implements HttpHandler {
+        private final MockGitHub github;
+
+        public SearchHandler(MockGitHub github) {
+            this.github = Objects.requireNonNull(github);
+        }
+
+        @Override
+        public void handle(HttpExchange he) throws IOException {
+            String path = he.getRequestURI().getPath();
+            Map<String, String> query = query(he);
+            String q = query.get("q");
+            int page = page(query);
+            int perPage = perPage(query);
+            int from = (page - 1) * perPage;
+            if (!"/search/repositories".equals(path) && !"/search/users".equals(path)) {
+                github.error(he, HttpURLConnection.HTTP_NOT_FOUND, "Not Found");
+            } else if (q == null || q.isBlank()) {
+                github.error(he, 422, "Validation Failed");
+            } else if (from >= MockSearchIndex.MAX_RESULTS) {
+                github.error(he, 422, "Only the first 1000 search results are available");
             } else {
-                // Handle /users/{username} (redirect to /users/{username}/)
-                String userName = path.substring("/users/".length());
-                he.getResponseHeaders().set("Location", "/users/" + userName + "/");
-                he.sendResponseHeaders(HttpURLConnection.HTTP_MOVED_TEMP, -1);
+                int limit = Math.min(from + perPage, MockSearchIndex.MAX_RESULTS);
+                int total;
+                List<byte[]> items = new ArrayList<>(perPage);
+                if ("/search/repositories".equals(path)) {
+                    // Handle /search/repositories
+                    MockSearchIndex.Result<MockRepository> result =
+                            github.search.repositories(q, github.authenticated(he), limit);
+                    total = result.getTotal();
+                    List<MockRepository> matches = result.getItems();
+                    for (MockRepository r : matches.subList(Math.min(from, matches.size()), matches.size())) {
+                        items.add(r.payload("repo", r.owner().getUpdated(), o -> writeRepository(o, github, r)));
+                    }
+                } else {
+                    // Handle /search/users
+                    MockSearchIndex.Result<MockOwner<?>> result = github.search.owners(q, limit);
+                    total = result.getTotal();
+                    List<MockOwner<?>> matches = result.getItems();
+                    for (MockOwner<?> owner : matches.subList(Math.min(from, matches.size()), matches.size())) {
+                        items.add(owner.payload("summary", 0, o -> writeOwnerSummary(o, github, owner)));
+                    }
+                }
+                github.pageLinks(he, path, query, page, perPage, Math.min(total, MockSearchIndex.MAX_RESULTS));
+                he.getResponseHeaders().set("Cache-Control", "no-cache");
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                body.write(String.format("{\"total_count\":%d,\"incomplete_results\":false,\"items\":", total)
+                        .getBytes(StandardCharsets.UTF_8));
+                body.write(array(items));
+                body.write('}');
+                github.respond(he, body.toByteArray());
             }
             he.close();
         }
@@ -314,60 +2677,55 @@ public class MockGitHub implements Closeable {
 
         @Override
         public void handle(HttpExchange he) throws IOException {
-            String query = he.getRequestURI().getQuery();
-            long since = 0;
-            if (query != null) {
-                for (String param : query.split("&")) {
-                    String[] pair = param.split("=");
-                    if (pair.length == 2 && "since".equals(pair[0])) {
-                        since = Long.parseLong(pair[1]);
-                        break;
-                    }
-                }
+            Map<String, String> query = query(he);
+            long since;
+            try {
+                since = Long.parseLong(query.getOrDefault("since", "0"));
+            } catch (NumberFormatException e) {
+                since = 0;
             }
-            List<MockRepository> repositories = new ArrayList<>();
-            for (MockOwner<?> o : github.owners()) {
-                for (MockRepository r : o.repositories().values()) {
-                    if (r.getId() > since && !r.isPrivate()) {
-                        repositories.add(r);
-                    }
-                }
+            int perPage = perPage(query);
+            Iterator<MockRepository> iterator =
+                    github.publicRepositories().tailMap(since, false).values().iterator();
+            List<MockRepository> repositories = new ArrayList<>(perPage);
+            while (repositories.size() < perPage && iterator.hasNext()) {
+                repositories.add(iterator.next());
             }
-            repositories.sort(Comparator.comparingLong(MockObject::getId));
-            if (repositories.size() > 30) {
+            String pageSize = query.containsKey("per_page") ? "&per_page=" + perPage : "";
+            if (iterator.hasNext()) {
                 he.getResponseHeaders()
                         .set(
                                 "Link",
                                 String.format(
-                                        "<%s/repositories?since=%d>; rel=\"next\", <%s/repositories{?since}>; rel=\"first\"",
-                                        github.getUrl(), repositories.get(30).getId(), github.getUrl()));
+                                        "<%s/repositories?since=%d%s>; rel=\"next\", <%s/repositories{?since}>; rel=\"first\"",
+                                        github.getUrl(),
+                                        repositories.get(repositories.size() - 1).getId(),
+                                        pageSize,
+                                        github.getUrl()));
             } else {
                 he.getResponseHeaders()
                         .set("Link", String.format("<%s/repositories{?since}>; rel=\"first\"", github.getUrl()));
             }
-            he.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
-            he.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
-            try (JsonGenerator o = github.factory.createGenerator(he.getResponseBody())) {
-                o.writeStartArray();
-                for (MockRepository r : repositories.subList(0, Math.min(30, repositories.size()))) {
-                    o.writeStartObject();
-                    o.writeNumberField("id", r.getId());
-                    o.writeStringField("name", r.getName());
-                    o.writeStringField("full_name", r.owner().getLogin() + "/" + r.getName());
-                    o.writeFieldName("owner");
-                    o.writeStartObject();
-                    o.writeStringField("login", r.owner().getLogin());
-                    o.writeNumberField("id", r.owner().getId());
-                    o.writeStringField("avatar_url", r.owner().getAvatarUrl());
-                    o.writeStringField("type", r.owner().getType());
-                    o.writeEndObject();
-                    o.writeBooleanField("private", r.isPrivate());
-                    o.writeStringField(
-                            "html_url", "https://github.com/" + r.owner().getLogin() + "/" + r.getName());
-                    o.writeEndObject();
-                }
-                o.writeEndArray();
+            // the page is stale once any listed repository, or the owner details embedded in it, changes
+            long hash = 31 * since + perPage;
+            long lastModified = 0;
+            for (MockRepository r : repositories) {
+                hash = 31 * hash + r.getId();
+                hash = 31 * hash + r.getUpdated();
+                hash = 31 * hash + r.owner().getUpdated();
+                lastModified = Math.max(lastModified, Math.max(r.getUpdated(), r.owner().getUpdated()));
+            }
+            hash = 31 * hash + (iterator.hasNext() ? 1 : 0);
+            if (github.notModified(he, String.format("\"%016x\"", hash), lastModified)) {
+                he.close();
+                return;
+            }
+            List<byte[]> items = new ArrayList<>(repositories.size());
+            for (MockRepository r : repositories) {
+                // the summary embeds owner details, so it is also stale once the owner changes
+                items.add(r.payload("summary", r.owner().getUpdated(), o -> writeRepositorySummary(o, r)));
             }
+            github.respond(he, array(items));
             he.close();
         }
     }
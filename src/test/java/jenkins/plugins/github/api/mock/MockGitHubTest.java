@@ -0,0 +1,716 @@
+package jenkins.plugins.github.api.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.github.GHCommitState;
+import org.kohsuke.github.GHContent;
+import org.kohsuke.github.GHFileNotFoundException;
+import org.kohsuke.github.GHIssueState;
+import org.kohsuke.github.GHMyself;
+import org.kohsuke.github.GHOrganization;
+import org.kohsuke.github.GHPullRequest;
+import org.kohsuke.github.GHRateLimit;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GHTree;
+import org.kohsuke.github.GHTreeEntry;
+import org.kohsuke.github.GHUser;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.PagedSearchIterable;
+import org.kohsuke.github.authorization.AppInstallationAuthorizationProvider;
+import org.kohsuke.github.extras.authorization.JWTTokenProvider;
+import org.kohsuke.github.extras.okhttp3.OkHttpGitHubConnector;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertThrows;
+
+public class MockGitHubTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void given__mockGitHub__when__conditionalRequest__then__notModifiedUntilTouched() throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            MockUser user = mock.withUser("user1").withName("User One");
+            String url = mock.open() + "/users/user1/";
+            HttpURLConnection first = (HttpURLConnection) new URL(url).openConnection();
+            assertThat(first.getResponseCode(), is(200));
+            String etag = first.getHeaderField("ETag");
+            assertThat(etag, notNullValue());
+            first.getInputStream().close();
+
+            HttpURLConnection second = (HttpURLConnection) new URL(url).openConnection();
+            second.setRequestProperty("If-None-Match", etag);
+            assertThat(second.getResponseCode(), is(304));
+
+            user.withName("User 1");
+            HttpURLConnection third = (HttpURLConnection) new URL(url).openConnection();
+            third.setRequestProperty("If-None-Match", etag);
+            assertThat(third.getResponseCode(), is(200));
+            third.getInputStream().close();
+
+            assertThat(mock.getFullResponseCount(), is(2L));
+            assertThat(mock.getNotModifiedCount(), is(1L));
+        }
+    }
+
+    @Test
+    public void given__cachingClient__when__listingReposTwice__then__secondWalkRevalidated() throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            MockOrganization org1 = mock.withOrg("org1");
+            for (int i = 0; i < 95; i++) {
+                org1.withPublicRepo("repo" + i);
+            }
+            OkHttpClient client =
+                    new OkHttpClient.Builder().cache(new Cache(tmp.newFolder(), 10 * 1024 * 1024)).build();
+            GitHub github = new GitHubBuilder()
+                    .withConnector(new OkHttpGitHubConnector(client))
+                    .withEndpoint(mock.open())
+                    .build();
+            Set<String> first = new TreeSet<>();
+            for (GHRepository r : github.listAllPublicRepositories()) {
+                first.add(r.getFullName());
+            }
+            long pages = mock.getFullResponseCount();
+            Set<String> second = new TreeSet<>();
+            for (GHRepository r : github.listAllPublicRepositories()) {
+                second.add(r.getFullName());
+            }
+            assertThat(second, is(first));
+            assertThat(mock.getFullResponseCount(), is(pages));
+            assertThat(mock.getNotModifiedCount(), is(pages));
+        }
+    }
+
+    @Test
+    public void given__rateLimitedMock__when__bucketExhausted__then__refusedWithRetryAfter() throws Exception {
+        try (MockGitHub mock = new MockGitHub().withRateLimit(3, Duration.ofHours(1))) {
+            mock.withUser("user1");
+            String url = mock.open();
+            for (int i = 2; i >= 0; i--) {
+                HttpURLConnection c = (HttpURLConnection) new URL(url + "/users/user1/").openConnection();
+                assertThat(c.getResponseCode(), is(200));
+                assertThat(c.getHeaderField("X-RateLimit-Limit"), is("3"));
+                assertThat(c.getHeaderField("X-RateLimit-Remaining"), is(Integer.toString(i)));
+                c.getInputStream().close();
+            }
+            HttpURLConnection refused = (HttpURLConnection) new URL(url + "/users/user1/").openConnection();
+            assertThat(refused.getResponseCode(), is(403));
+            assertThat(refused.getHeaderField("Retry-After"), notNullValue());
+
+            HttpURLConnection other = (HttpURLConnection) new URL(url + "/users/user1/").openConnection();
+            other.setRequestProperty("Authorization", "token other");
+            assertThat(other.getResponseCode(), is(200));
+            other.getInputStream().close();
+
+            GHRateLimit rateLimit = GitHub.connectToEnterpriseAnonymously(url).getRateLimit();
+            assertThat(rateLimit.getCore().getLimit(), is(3));
+            assertThat(rateLimit.getCore().getRemaining(), is(0));
+            assertThat(mock.getRateLimit().getAccepted(), is(4L));
+            assertThat(mock.getRateLimit().getRejected(), is(1L));
+        }
+    }
+
+    @Test
+    public void given__token__when__listingOwnRepos__then__privateReposIncluded() throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            MockUser user1 = mock.withUser("user1").withPublicRepo("repo1").withPrivateRepo("repo2");
+            mock.withToken("secret", user1);
+            String url = mock.open();
+            GitHub anonymous = GitHub.connectToEnterpriseAnonymously(url);
+            assertThat(anonymous.getUser("user1").listRepositories().toList().size(), is(1));
+            GitHub authenticated = new GitHubBuilder()
+                    .withEndpoint(url)
+                    .withOAuthToken("secret")
+                    .build();
+            GHMyself myself = authenticated.getMyself();
+            assertThat(names(myself.listRepositories()), is(Set.of("repo1", "repo2")));
+            assertThat(names(myself.listRepositories(10, GHMyself.RepositoryListFilter.PRIVATE)), is(Set.of("repo2")));
+
+            user1.repositories().get("repo2").withPrivate(false);
+            assertThat(names(myself.listRepositories(10, GHMyself.RepositoryListFilter.PRIVATE)), is(Set.of()));
+            assertThat(
+                    names(myself.listRepositories(10, GHMyself.RepositoryListFilter.PUBLIC)),
+                    is(Set.of("repo1", "repo2")));
+        }
+    }
+
+    private static Set<String> names(Iterable<GHRepository> repositories) {
+        Set<String> names = new TreeSet<>();
+        for (GHRepository r : repositories) {
+            names.add(r.getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void given__ndjsonSnapshot__when__loaded__then__idsAndTimestampsPreserved() throws Exception {
+        String snapshot = "{\"type\":\"User\",\"id\":583231,\"login\":\"octocat\",\"following\":[\"github\"],"
+                + "\"created_at\":\"2011-01-25T18:44:36Z\",\"updated_at\":\"2020-01-01T00:00:00Z\",\"plan\":{}}\n"
+                + "{\"type\":\"Organization\",\"id\":9919,\"login\":\"github\",\"created_at\":1210000000000}\n"
+                + "{\"type\":\"Repository\",\"id\":1296269,\"owner\":{\"login\":\"octocat\"},\"name\":\"Hello-World\","
+                + "\"created_at\":\"2011-01-26T19:01:12Z\",\"topics\":[\"demo\"]}\n"
+                + "{\"type\":\"Repository\",\"id\":17,\"owner\":\"octocat\",\"name\":\"secret\",\"private\":true}\n";
+        try (MockGitHub mock = new MockGitHub()) {
+            mock.load(new ByteArrayInputStream(snapshot.getBytes(StandardCharsets.UTF_8)));
+            assertThat(mock.withUser("user1").getId(), greaterThan(1296269L));
+
+            GitHub github = GitHub.connectToEnterpriseAnonymously(mock.open());
+            GHUser octocat = github.getUser("octocat");
+            assertThat(octocat.getId(), is(583231L));
+            assertThat(octocat.getCreatedAt().toInstant(), is(Instant.parse("2011-01-25T18:44:36Z")));
+            assertThat(octocat.getUpdatedAt().toInstant(), is(Instant.parse("2020-01-01T00:00:00Z")));
+            assertThat(octocat.getPublicRepoCount(), is(1));
+            GHOrganization org = github.getOrganization("github");
+            assertThat(org.getId(), is(9919L));
+            assertThat(org.getFollowersCount(), is(1));
+            GHRepository repo = octocat.listRepositories().toList().get(0);
+            assertThat(repo.getName(), is("Hello-World"));
+            assertThat(repo.getId(), is(1296269L));
+        }
+    }
+
+    @Test
+    public void given__seededFaultProfile__when__replayed__then__sameFaultsAndLatency() throws Exception {
+        List<Integer> first = statuses(42);
+        assertThat(first, hasItems(200, 502));
+        assertThat(statuses(42), is(first));
+    }
+
+    private static List<Integer> statuses(long seed) throws Exception {
+        try (MockGitHub mock = new MockGitHub().withSeed(seed)) {
+            mock.withUser("user1");
+            mock.profile("/users")
+                    .withLatency(MockLatency.fixed(Duration.ofMillis(20)))
+                    .withFault(0.3, MockFault.status(502));
+            String url = mock.open();
+            List<Integer> statuses = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < 20; i++) {
+                HttpURLConnection c = (HttpURLConnection) new URL(url + "/users/user1/").openConnection();
+                statuses.add(c.getResponseCode());
+                (c.getResponseCode() == 200 ? c.getInputStream() : c.getErrorStream()).close();
+            }
+            assertThat(System.nanoTime() - start, greaterThanOrEqualTo(Duration.ofMillis(20 * 20).toNanos()));
+            assertThat(mock.profile("/users").getRequests(), is(20L));
+            return statuses;
+        }
+    }
+
+    @Test
+    public void given__slowDripProfile__when__gettingUser__then__bodyIntactButSlow() throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            mock.withUser("user1");
+            String url = mock.open() + "/users/user1";
+            byte[] expected;
+            try (InputStream in = new URL(url).openStream()) {
+                expected = in.readAllBytes();
+            }
+            mock.profile("/users").withFault(1.0, MockFault.slowDrip(16, Duration.ofMillis(5)));
+            long start = System.nanoTime();
+            byte[] actual;
+            try (InputStream in = new URL(url).openStream()) {
+                actual = in.readAllBytes();
+            }
+            long elapsed = System.nanoTime() - start;
+            assertThat(new String(actual, StandardCharsets.UTF_8), is(new String(expected, StandardCharsets.UTF_8)));
+            assertThat(elapsed, greaterThanOrEqualTo(Duration.ofMillis(5 * (expected.length / 16)).toNanos()));
+        }
+    }
+
+    @Test
+    public void given__resetProfile__when__gettingUser__then__clientFails() throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            mock.withUser("user1");
+            mock.profile("/users").withFault(1.0, MockFault.reset());
+            GitHub github = GitHub.connectToEnterpriseAnonymously(mock.open());
+            assertThrows(IOException.class, () -> github.getUser("user1"));
+            assertThat(mock.profile("/users").getRequests(), greaterThanOrEqualTo(1L));
+            assertThat(mock.getMetrics().get("/users/{user}").getStatusCount(200), is(0L));
+        }
+    }
+
+    @Test
+    public void given__metrics__when__listingRepos__then__requestsCountedPerRoute() throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            MockOrganization org1 = mock.withOrg("org1");
+            for (int i = 0; i < 250; i++) {
+                org1.withPublicRepo("repo" + i);
+            }
+            GitHub github = GitHub.connectToEnterpriseAnonymously(mock.open());
+            assertThat(github.getOrganization("org1").listRepositories().withPageSize(100).toList().size(), is(250));
+
+            MockMetrics metrics = mock.getMetrics();
+            MockMetrics.Route repos = metrics.get("/orgs/{org}/repos");
+            assertThat(repos.getRequests(), is(3L));
+            assertThat(repos.getStatusCount(200), is(3L));
+            assertThat(repos.getBytesWritten(), greaterThan(0L));
+            assertThat(repos.getLatency().getCount(), is(3L));
+            assertThat(metrics.get("/orgs/{org}").getRequests(), is(1L));
+            assertThat(metrics.getStatusCount(302), is(0L));
+        }
+    }
+
+    @Test
+    public void given__redirectMode__when__gettingOwners__then__redirectFollowed() throws Exception {
+        try (MockGitHub mock = new MockGitHub().withRedirects(true)) {
+            mock.withUser("user1");
+            mock.withOrg("org1");
+            GitHub github = GitHub.connectToEnterpriseAnonymously(mock.open());
+            assertThat(github.getUser("user1").getLogin(), is("user1"));
+            assertThat(github.getOrganization("org1").getLogin(), is("org1"));
+            assertThat(mock.getMetrics().getStatusCount(302), is(2L));
+            assertThat(mock.getMetrics().get("/users/{user}/").getStatusCount(200), is(1L));
+        }
+    }
+
+    @Test
+    public void given__graphQL__when__paginatingOrgRepositories__then__hundredPerRequest() throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            MockOrganization org1 = mock.withOrg("org1");
+            for (int i = 0; i < 250; i++) {
+                org1.withPublicRepo("repo" + i);
+            }
+            String url = mock.open();
+            ObjectMapper mapper = new ObjectMapper();
+            Set<String> names = new TreeSet<>();
+            String after = null;
+            do {
+                ObjectNode request = mapper.createObjectNode();
+                request.put("query", "query($login: String!, $after: String) { organization(login: $login) { "
+                        + "repositories(first: 100, after: $after) { totalCount pageInfo { hasNextPage endCursor } "
+                        + "nodes { id nameWithOwner } } } }");
+                request.putObject("variables").put("login", "org1").put("after", after);
+                JsonNode repositories =
+                        graphQL(url, mapper, request).path("data").path("organization").path("repositories");
+                assertThat(repositories.path("totalCount").asInt(), is(250));
+                for (JsonNode node : repositories.path("nodes")) {
+                    names.add(node.path("nameWithOwner").asText());
+                }
+                after = repositories.path("pageInfo").path("hasNextPage").asBoolean()
+                        ? repositories.path("pageInfo").path("endCursor").asText()
+                        : null;
+            } while (after != null);
+            assertThat(names.size(), is(250));
+            assertThat(mock.getMetrics().get("/graphql").getRequests(), is(3L));
+
+            ObjectNode request = mapper.createObjectNode();
+            request.put("query", "{ organization(login: \"org1\") { nope } }");
+            JsonNode response = graphQL(url, mapper, request);
+            assertThat(response.path("errors").size(), is(1));
+            assertThat(response.get("data"), nullValue());
+        }
+    }
+
+    private static JsonNode graphQL(String url, ObjectMapper mapper, JsonNode request) throws Exception {
+        HttpURLConnection c = (HttpURLConnection) new URL(url + "/graphql").openConnection();
+        c.setRequestMethod("POST");
+        c.setDoOutput(true);
+        try (OutputStream out = c.getOutputStream()) {
+            mapper.writeValue(out, request);
+        }
+        assertThat(c.getResponseCode(), is(200));
+        try (InputStream in = c.getInputStream()) {
+            return mapper.readTree(in);
+        }
+    }
+
+    @Test
+    public void given__acceptEncodingGzip__when__listingRepos__then__compressed() throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            MockOrganization org1 = mock.withOrg("org1");
+            for (int i = 0; i < 100; i++) {
+                org1.withPublicRepo("repo" + i);
+            }
+            String url = mock.open() + "/orgs/org1/repos?per_page=100";
+            HttpURLConnection plain = (HttpURLConnection) new URL(url).openConnection();
+            byte[] expected;
+            try (InputStream in = plain.getInputStream()) {
+                expected = in.readAllBytes();
+            }
+            assertThat(plain.getHeaderField("Content-Encoding"), nullValue());
+
+            HttpURLConnection gzip = (HttpURLConnection) new URL(url).openConnection();
+            gzip.setRequestProperty("Accept-Encoding", "br, gzip;q=0.8");
+            byte[] actual;
+            try (InputStream in = new GZIPInputStream(gzip.getInputStream())) {
+                actual = in.readAllBytes();
+            }
+            assertThat(gzip.getHeaderField("Content-Encoding"), is("gzip"));
+            assertThat(new String(actual, StandardCharsets.UTF_8), is(new String(expected, StandardCharsets.UTF_8)));
+
+            MockMetrics.Route route = mock.getMetrics().get("/orgs/{org}/repos");
+            assertThat(route.getBytesWritten() - expected.length, lessThan(expected.length / 4L));
+        }
+    }
+
+    @Test
+    public void given__slowDripProfile__when__gzipAccepted__then__compressedBodyTrickled() throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            MockOrganization org1 = mock.withOrg("org1");
+            for (int i = 0; i < 100; i++) {
+                org1.withPublicRepo("repo" + i);
+            }
+            String url = mock.open() + "/orgs/org1/repos?per_page=100";
+            HttpURLConnection plain = (HttpURLConnection) new URL(url).openConnection();
+            byte[] expected;
+            try (InputStream in = plain.getInputStream()) {
+                expected = in.readAllBytes();
+            }
+            mock.profile("/orgs/org1/repos").withFault(1.0, MockFault.slowDrip(256, Duration.ofMillis(5)));
+
+            HttpURLConnection gzip = (HttpURLConnection) new URL(url).openConnection();
+            gzip.setRequestProperty("Accept-Encoding", "gzip");
+            long start = System.nanoTime();
+            byte[] compressed;
+            try (InputStream in = gzip.getInputStream()) {
+                compressed = in.readAllBytes();
+            }
+            long elapsed = System.nanoTime() - start;
+            byte[] actual;
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+                actual = in.readAllBytes();
+            }
+            assertThat(gzip.getHeaderField("Content-Encoding"), is("gzip"));
+            assertThat(new String(actual, StandardCharsets.UTF_8), is(new String(expected, StandardCharsets.UTF_8)));
+            // the compressed bytes went through the slow drip, 256 at a time
+            assertThat(compressed.length, lessThan(expected.length / 4));
+            assertThat(elapsed, greaterThanOrEqualTo(Duration.ofMillis(5 * (compressed.length / 256)).toNanos()));
+        }
+    }
+
+    @Test
+    public void given__orgHook__when__reposCreatedAndChanged__then__signedEventsDelivered() throws Exception {
+        ConcurrentMap<String, AtomicInteger> events = new ConcurrentHashMap<>();
+        AtomicInteger badSignatures = new AtomicInteger();
+        HttpServer receiver = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        receiver.createContext("/hook", he -> {
+            byte[] body = he.getRequestBody().readAllBytes();
+            String expected = "sha256=" + MockWebhooks.hmac("HmacSHA256", "s3cret", body);
+            if (!expected.equals(he.getRequestHeaders().getFirst("X-Hub-Signature-256"))) {
+                badSignatures.incrementAndGet();
+            }
+            events.computeIfAbsent(he.getRequestHeaders().getFirst("X-GitHub-Event"), k -> new AtomicInteger())
+                    .incrementAndGet();
+            he.sendResponseHeaders(204, -1);
+            he.close();
+        });
+        receiver.start();
+        try (MockGitHub mock = new MockGitHub()) {
+            mock.getWebhooks().withConcurrency(4).withBatchSize(10);
+            String url = "http://" + receiver.getAddress().getHostString() + ":" + receiver.getAddress().getPort();
+            MockOrganization org1 = mock.withOrg("org1").withHook(url + "/hook", "s3cret");
+            for (int i = 0; i < 50; i++) {
+                org1.withPublicRepo("repo" + i);
+            }
+            org1.repositories().get("repo1").withDescription("changed");
+            org1.repositories().get("repo2").withPrivate(true);
+            assertThat(mock.getWebhooks().awaitIdle(Duration.ofSeconds(30)), is(true));
+
+            assertThat(events.get("repository").get(), is(51));
+            assertThat(events.get("push").get(), is(1));
+            assertThat(badSignatures.get(), is(0));
+            assertThat(mock.getWebhooks().getDelivered(), is(52L));
+            assertThat(mock.getWebhooks().getDeliveries().get(0).getStatus(), is(204));
+        } finally {
+            receiver.stop(0);
+        }
+    }
+
+    @Test
+    public void given__queuedDeliveries__when__closed__then__failedAndLaterEventsDropped() throws Exception {
+        CountDownLatch received = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<byte[]> bodies = new CopyOnWriteArrayList<>();
+        HttpServer receiver = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        receiver.createContext("/hook", he -> {
+            bodies.add(he.getRequestBody().readAllBytes());
+            received.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            he.sendResponseHeaders(204, -1);
+            he.close();
+        });
+        ExecutorService executor = Executors.newCachedThreadPool();
+        receiver.setExecutor(executor);
+        receiver.start();
+        MockGitHub mock = new MockGitHub();
+        try {
+            MockWebhooks webhooks = mock.getWebhooks().withConcurrency(1);
+            String url = "http://" + receiver.getAddress().getHostString() + ":" + receiver.getAddress().getPort();
+            MockOrganization org1 = mock.withOrg("org1");
+            MockRepository repo0 = org1.withPublicRepo("repo0").repositories().get("repo0").withDefaultBranch("dev");
+            org1.withHook(url + "/hook", null);
+            repo0.withDescription("changed");
+            assertThat(received.await(10, TimeUnit.SECONDS), is(true));
+            for (int i = 1; i <= 4; i++) {
+                org1.withPublicRepo("repo" + i);
+            }
+
+            mock.close();
+            release.countDown();
+            assertThat(webhooks.awaitIdle(Duration.ofSeconds(10)), is(true));
+            assertThat(webhooks.getDelivered(), is(1L));
+            assertThat(webhooks.getFailed(), is(4L));
+            assertThat(new ObjectMapper().readTree(bodies.get(0)).get("ref").asText(), is("refs/heads/dev"));
+
+            org1.withPublicRepo("repo5");
+            assertThat(webhooks.getPending(), is(0));
+            assertThat(webhooks.getDeliveries().size(), is(5));
+            assertThat(bodies.size(), is(1));
+        } finally {
+            release.countDown();
+            mock.close();
+            receiver.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void given__githubApp__when__listingInstallationReposRepeatedly__then__tokenExchangedOnce()
+            throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keys = generator.generateKeyPair();
+        try (MockGitHub mock = new MockGitHub()) {
+            MockOrganization org1 = mock.withOrg("org1").withPublicRepo("repo1").withPrivateRepo("repo2");
+            MockApp app = mock.withApp(42, "app1", keys.getPublic());
+            long installationId = app.withInstallation(org1);
+            AppInstallationAuthorizationProvider provider = new AppInstallationAuthorizationProvider(
+                    gitHubApp -> gitHubApp.getInstallationById(installationId),
+                    new JWTTokenProvider("42", keys.getPrivate()));
+            GitHub github = new GitHubBuilder()
+                    .withEndpoint(mock.open())
+                    .withAuthorizationProvider(provider)
+                    .build();
+            for (int i = 0; i < 3; i++) {
+                assertThat(github.getInstallation().listRepositories().toList().size(), is(2));
+            }
+            assertThat(app.getJwtCount(), is(1L));
+            assertThat(app.getTokenExchanges(), is(1L));
+            assertThat(app.getTokenRequests(), is(3L));
+            assertThat(app.getRejected(), is(0L));
+        }
+    }
+
+    @Test
+    public void given__largeSyntheticTree__when__readingTreeAndFiles__then__streamedAndTruncated() throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            MockFileTree files = MockFileTree.synthetic(42, 150_000).withFile("Jenkinsfile", "pipeline {}\n");
+            mock.withOrg("org1").withPublicRepo("repo1").repositories().get("repo1").withFiles(files);
+            GitHub github = new GitHubBuilder().withEndpoint(mock.open()).build();
+            GHRepository repo = github.getRepository("org1/repo1");
+
+            GHTree tree = repo.getTreeRecursive("main", 1);
+            assertThat(tree.isTruncated(), is(true));
+            assertThat(tree.getTree().size(), is(100_000));
+            assertThat(tree.getTree().get(0).getPath(), is("Jenkinsfile"));
+            assertThat(repo.getFileContent("Jenkinsfile").getContent(), is("pipeline {}\n"));
+
+            GHTreeEntry entry = tree.getTree().get(tree.getTree().size() - 1);
+            for (int i = tree.getTree().size() - 2; !"blob".equals(entry.getType()); i--) {
+                entry = tree.getTree().get(i);
+            }
+            byte[] blob;
+            try (InputStream in = entry.readAsBlob()) {
+                blob = in.readAllBytes();
+            }
+            assertThat((long) blob.length, is(entry.getSize()));
+            try (InputStream in = files.open(files.entryBySha(entry.getSha()))) {
+                assertThat(blob, is(in.readAllBytes()));
+            }
+            // the content does not depend on how it is read, and ends with a newline
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (InputStream in = files.open(files.entryBySha(entry.getSha()))) {
+                for (int b = in.read(); b != -1; b = in.read()) {
+                    bytes.write(b);
+                }
+            }
+            assertThat(bytes.toByteArray(), is(blob));
+            assertThat(blob[blob.length - 1], is((byte) '\n'));
+            assertThat(repo.getFileContent(entry.getPath()).read().readAllBytes(), is(blob));
+        }
+    }
+
+    @Test
+    public void given__ref__when__readingContents__then__pathResolvedInTheCommitTree() throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            MockFileTree files = MockFileTree.empty().withFile("dir/Jenkinsfile", "pipeline {}\n");
+            mock.withOrg("org1").withPublicRepo("repo1").repositories().get("repo1").withFiles(files);
+            GitHub github = new GitHubBuilder().withEndpoint(mock.open()).build();
+            GHRepository repo = github.getRepository("org1/repo1");
+
+            assertThat(repo.getFileContent("dir/Jenkinsfile", "refs/heads/main").getContent(), is("pipeline {}\n"));
+            assertThat(
+                    repo.getFileContent("dir/Jenkinsfile", "HEAD").read().readAllBytes(),
+                    is("pipeline {}\n".getBytes(StandardCharsets.UTF_8)));
+            // a tree is not a commit
+            String tree = files.getRootSha();
+            assertThrows(GHFileNotFoundException.class, () -> repo.getFileContent("dir/Jenkinsfile", tree));
+            assertThrows(GHFileNotFoundException.class, () -> repo.getFileContent("dir/Jenkinsfile", "nope"));
+        }
+    }
+
+    @Test
+    public void given__branchesAndPullRequests__when__scanning__then__pagedAndStatusesPosted() throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            MockUser user1 = mock.withUser("user1");
+            mock.withToken("token1", user1);
+            user1.withRepo("repo1", false);
+            MockRepository repo1 = user1.repositories().get("repo1");
+            for (int i = 0; i < 250; i++) {
+                repo1.withBranch(String.format("feature/%03d", i));
+            }
+            for (int i = 0; i < 120; i++) {
+                repo1.withPullRequest(String.format("feature/%03d", i), "main", "Change " + i);
+            }
+            repo1.getPullRequest(7).close();
+            GitHub github = new GitHubBuilder().withEndpoint(mock.open()).withOAuthToken("token1").build();
+            GHRepository repo = github.getRepository("user1/repo1");
+
+            assertThat(repo.getBranches().size(), is(251));
+            assertThat(repo.getBranch("feature/042").getSHA1(), is(repo1.getBranch("feature/042").getSha()));
+            List<GHPullRequest> open = repo.queryPullRequests()
+                    .state(GHIssueState.OPEN)
+                    .list()
+                    .withPageSize(100)
+                    .toList();
+            assertThat(open.size(), is(119));
+            assertThat(open.get(0).getNumber(), is(120));
+            assertThat(open.get(0).getHead().getRef(), is("feature/119"));
+            assertThat(mock.getMetrics().get("/repos/{owner}/{repo}/pulls").getRequests(), is(2L));
+
+            String sha = open.get(0).getHead().getSha();
+            repo.createCommitStatus(sha, GHCommitState.PENDING, null, "Building", "ci");
+            repo.createCommitStatus(sha, GHCommitState.SUCCESS, "https://ci.example.com/1", "Passed", "ci");
+            assertThat(repo.getLastCommitStatus(sha).getState(), is(GHCommitState.SUCCESS));
+            assertThat(repo1.getStatuses(sha).size(), is(2));
+            assertThat(repo1.getStatuses(sha).get(1).getCreator(), is(user1));
+        }
+    }
+
+    @Test
+    public void given__branch__when__readingFilesAtBranch__then__resolvedToItsTree() throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            MockRepository repo1 = mock.withOrg("org1").withPublicRepo("repo1").repositories().get("repo1");
+            repo1.withFiles(MockFileTree.empty().withFile("Jenkinsfile", "pipeline {}\n")).withBranch("feature/1");
+            GitHub github = new GitHubBuilder().withEndpoint(mock.open()).build();
+            GHRepository repo = github.getRepository("org1/repo1");
+
+            for (String ref : List.of("feature/1", "refs/heads/feature/1", repo1.getBranch("feature/1").getSha())) {
+                GHContent content = repo.getFileContent("Jenkinsfile", ref);
+                assertThat(content.getContent(), is("pipeline {}\n"));
+                assertThat(content.read().readAllBytes(), is("pipeline {}\n".getBytes(StandardCharsets.UTF_8)));
+                assertThat(repo.getTree(ref).getTree().size(), is(1));
+            }
+            assertThrows(GHFileNotFoundException.class, () -> repo.getFileContent("Jenkinsfile", "feature/2"));
+        }
+    }
+
+    @Test
+    public void given__manyRepositories__when__searching__then__countedAndPaged() throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            MockOrganization org1 = mock.withOrg("org1");
+            for (int i = 0; i < 2500; i++) {
+                org1.withPublicRepo("repo" + i + "-plugin");
+                org1.repositories().get("repo" + i + "-plugin").withLanguage(i % 5 == 0 ? "Java" : "Go");
+            }
+            mock.withUser("user1").withName("Alice Smith");
+            GitHub github = new GitHubBuilder().withEndpoint(mock.open()).build();
+
+            PagedSearchIterable<GHRepository> java = github.searchRepositories()
+                    .q("plugin")
+                    .language("java")
+                    .org("org1")
+                    .list()
+                    .withPageSize(100);
+            assertThat(java.getTotalCount(), is(500));
+            assertThat(java.toList().size(), is(500));
+            assertThat(github.searchRepositories().q("plugin").list().getTotalCount(), is(2500));
+
+            mock.getMetrics().reset();
+            assertThat(github.searchRepositories().q("plugin").list().withPageSize(100).toList().size(), is(1000));
+            assertThat(mock.getMetrics().get("/search/repositories").getRequests(), is(10L));
+
+            org1.repositories().get("repo42-plugin").withDescription("A zebra");
+            List<GHRepository> zebra = github.searchRepositories().q("zebra").list().toList();
+            assertThat(zebra.size(), is(1));
+            assertThat(zebra.get(0).getName(), is("repo42-plugin"));
+            assertThat(github.searchUsers().q("smith").list().toList().get(0).getLogin(), is("user1"));
+        }
+    }
+
+    @Test
+    public void given__privateRepositories__when__searching__then__foundByTheirOwnerOnly() throws Exception {
+        try (MockGitHub mock = new MockGitHub()) {
+            MockUser user1 = mock.withUser("user1").withPublicRepo("zebra-public").withPrivateRepo("zebra-private");
+            MockUser user2 = mock.withUser("user2").withPrivateRepo("zebra-other");
+            mock.withToken("token1", user1);
+            mock.withToken("token2", user2);
+            String url = mock.open();
+            GitHub anonymous = new GitHubBuilder().withEndpoint(url).build();
+            GitHub authenticated = new GitHubBuilder().withEndpoint(url).withOAuthToken("token1").build();
+
+            assertThat(names(anonymous.searchRepositories().q("zebra").list()), is(Set.of("zebra-public")));
+            assertThat(
+                    names(authenticated.searchRepositories().q("zebra").list()),
+                    is(Set.of("zebra-public", "zebra-private")));
+            assertThat(
+                    names(authenticated.searchRepositories().q("zebra is:private").list()),
+                    is(Set.of("zebra-private")));
+
+            user1.repositories().get("zebra-private").withPrivate(false);
+            user1.repositories().get("zebra-public").withPrivate(true);
+            assertThat(names(anonymous.searchRepositories().q("zebra").list()), is(Set.of("zebra-private")));
+            assertThat(
+                    names(authenticated.searchRepositories().q("zebra is:private").list()),
+                    is(Set.of("zebra-public")));
+        }
+    }
+}
@@ -0,0 +1,756 @@
+package jenkins.plugins.github.api.mock;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+
+/**
+ * Answers the subset of the GitHub GraphQL API that fetches owners and repositories in bulk:
+ * <pre>
+ * query($login: String!, $after: String) {
+ *   organization(login: $login) {
+ *     repositories(first: 100, after: $after) {
+ *       totalCount
+ *       pageInfo { hasNextPage endCursor }
+ *       nodes { databaseId nameWithOwner isPrivate updatedAt }
+ *     }
+ *   }
+ * }
+ * </pre>
+ * The root fields are {@code organization}, {@code user}, {@code repositoryOwner}, {@code repository}, {@code node},
+ * {@code nodes} and {@code viewer}. Aliases, variables and inline fragments are supported, named fragments,
+ * directives and mutations are not. Node ids use GitHub's legacy format, e.g. {@code MDQ6VXNlcjE=} for
+ * {@code 04:User1}.
+ */
+final class MockGraphQL {
+    private static final Set<String> OWNER_INTERFACES = Set.of("RepositoryOwner", "Node", "Actor", "ProfileOwner");
+    private static final Set<String> REPOSITORY_INTERFACES = Set.of("Node", "RepositoryInfo");
+
+    private final MockGitHub github;
+    private final MockUser viewer;
+
+    /**
+     * Constructor.
+     *
+     * @param github the mock to query.
+     * @param viewer the authenticated user, who may see their private repositories, or {@code null}.
+     */
+    MockGraphQL(MockGitHub github, MockUser viewer) {
+        this.github = github;
+        this.viewer = viewer;
+    }
+
+    /**
+     * Executes a request.
+     *
+     * @param p the parser positioned before the request body, {@code {"query": "...", "variables": {...}}}.
+     * @param o the generator to write the response to.
+     * @throws IOException if the response could not be written.
+     */
+    void execute(JsonParser p, JsonGenerator o) throws IOException {
+        try {
+            Map<String, Object> request = readRequest(p);
+            Object query = request.get("query");
+            if (!(query instanceof String)) {
+                throw new QueryException("A query attribute must be specified");
+            }
+            Object variables = request.get("variables");
+            List<Field> selections = new Parser(
+                            (String) query, variables instanceof Map ? (Map<String, Object>) variables : Map.of())
+                    .document();
+            // resolve everything before writing so that a failed query does not produce a partial response
+            Object data = resolveObject(null, "Query", selections);
+            o.writeStartObject();
+            o.writeFieldName("data");
+            write(o, data);
+            o.writeEndObject();
+        } catch (QueryException e) {
+            o.writeStartObject();
+            o.writeArrayFieldStart("errors");
+            o.writeStartObject();
+            o.writeStringField("message", e.getMessage());
+            o.writeEndObject();
+            o.writeEndArray();
+            o.writeEndObject();
+        }
+    }
+
+    static String nodeId(MockObject object) {
+        String type = object instanceof MockRepository ? "Repository" : ((MockOwner<?>) object).getType();
+        String legacy = "0" + type.length() + ":" + type + object.getId();
+        return Base64.getEncoder().encodeToString(legacy.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Long nodeDatabaseId(String nodeId) {
+        try {
+            String legacy = new String(Base64.getDecoder().decode(nodeId), StandardCharsets.UTF_8);
+            int colon = legacy.indexOf(':');
+            int length = Integer.parseInt(legacy.substring(0, colon));
+            return Long.parseLong(legacy.substring(colon + 1 + length));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private static Map<String, Object> readRequest(JsonParser p) throws IOException {
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+            throw new QueryException("Problems parsing JSON");
+        }
+        return (Map<String, Object>) readValue(p);
+    }
+
+    private static Object readValue(JsonParser p) throws IOException {
+        switch (p.currentToken()) {
+            case START_OBJECT:
+                Map<String, Object> map = new LinkedHashMap<>();
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = p.currentName();
+                    p.nextToken();
+                    map.put(name, readValue(p));
+                }
+                return map;
+            case START_ARRAY:
+                List<Object> list = new ArrayList<>();
+                while (p.nextToken() != JsonToken.END_ARRAY) {
+                    list.add(readValue(p));
+                }
+                return list;
+            case VALUE_STRING:
+                return p.getText();
+            case VALUE_NUMBER_INT:
+                return p.getLongValue();
+            case VALUE_NUMBER_FLOAT:
+                return p.getDoubleValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            default:
+                return null;
+        }
+    }
+
+    private static void write(JsonGenerator o, Object value) throws IOException {
+        if (value == null) {
+            o.writeNull();
+        } else if (value instanceof Map) {
+            o.writeStartObject();
+            for (Map.Entry<String, Object> e : ((Map<String, Object>) value).entrySet()) {
+                o.writeFieldName(e.getKey());
+                write(o, e.getValue());
+            }
+            o.writeEndObject();
+        } else if (value instanceof List) {
+            o.writeStartArray();
+            for (Object item : (List<Object>) value) {
+                write(o, item);
+            }
+            o.writeEndArray();
+        } else if (value instanceof Boolean) {
+            o.writeBoolean((Boolean) value);
+        } else if (value instanceof Number) {
+            o.writeNumber(((Number) value).longValue());
+        } else {
+            o.writeString(value.toString());
+        }
+    }
+
+    private Map<String, Object> resolveObject(Object source, String type, List<Field> selections) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        resolveInto(result, source, type, selections);
+        return result;
+    }
+
+    private void resolveInto(Map<String, Object> result, Object source, String type, List<Field> selections) {
+        for (Field field : selections) {
+            if (field.name == null) {
+                // an inline fragment
+                if (field.typeCondition == null
+                        || field.typeCondition.equals(type)
+                        || ("User".equals(type) || "Organization".equals(type))
+                                && OWNER_INTERFACES.contains(field.typeCondition)
+                        || "Repository".equals(type) && REPOSITORY_INTERFACES.contains(field.typeCondition)) {
+                    resolveInto(result, source, type, field.selections);
+                }
+            } else if ("__typename".equals(field.name)) {
+                result.put(field.key(), type);
+            } else {
+                result.put(field.key(), resolve(source, type, field));
+            }
+        }
+    }
+
+    private Object resolve(Object source, String type, Field field) {
+        switch (type) {
+            case "Query":
+                return query(field);
+            case "User":
+            case "Organization":
+                return owner((MockOwner<?>) source, type, field);
+            case "Repository":
+                return repository((MockRepository) source, field);
+            case "RepositoryConnection":
+                return connection((Page) source, field);
+            case "RepositoryEdge":
+                return edge((MockRepository) source, field);
+            case "PageInfo":
+                return pageInfo((Page) source, field);
+            case "Language":
+                return "name".equals(field.name) ? source : unknown(type, field);
+            default:
+                return unknown(type, field);
+        }
+    }
+
+    private Object query(Field field) {
+        switch (field.name) {
+            case "organization":
+                return ownerObject(github.getOrgs().get(field.string("login")), field);
+            case "user":
+                return ownerObject(github.getUsers().get(field.string("login")), field);
+            case "repositoryOwner":
+                return ownerObject(github.owner(field.string("login")), field);
+            case "viewer":
+                if (viewer == null) {
+                    throw new QueryException("This endpoint requires you to be authenticated.");
+                }
+                return ownerObject(viewer, field);
+            case "repository":
+                MockOwner<?> owner = github.owner(field.string("owner"));
+                return nodeObject(owner == null ? null : owner.repositories().get(field.string("name")), field);
+            case "node":
+                return nodeObject(lookup(field.string("id")), field);
+            case "nodes":
+                Object ids = field.arguments.get("ids");
+                if (!(ids instanceof List)) {
+                    throw new QueryException("Argument 'ids' on Field 'nodes' is missing or not a list");
+                }
+                List<Object> nodes = new ArrayList<>();
+                for (Object id : (List<Object>) ids) {
+                    nodes.add(nodeObject(lookup(String.valueOf(id)), field));
+                }
+                return nodes;
+            default:
+                return unknown("Query", field);
+        }
+    }
+
+    private MockObject lookup(String nodeId) {
+        Long id = nodeId == null ? null : nodeDatabaseId(nodeId);
+        MockObject node = id == null ? null : github.node(id);
+        return node != null && nodeId.equals(nodeId(node)) ? node : null;
+    }
+
+    private Object nodeObject(MockObject node, Field field) {
+        if (node instanceof MockRepository repo) {
+            return visible(repo) ? resolveObject(repo, "Repository", field.selections) : null;
+        }
+        return ownerObject((MockOwner<?>) node, field);
+    }
+
+    private Object ownerObject(MockOwner<?> owner, Field field) {
+        return owner == null ? null : resolveObject(owner, owner.getType(), field.selections);
+    }
+
+    private boolean visible(MockRepository repo) {
+        return !repo.isPrivate() || repo.owner() == viewer;
+    }
+
+    private Object owner(MockOwner<?> owner, String type, Field field) {
+        switch (field.name) {
+            case "id":
+                return nodeId(owner);
+            case "databaseId":
+                return owner.getId();
+            case "login":
+                return owner.getLogin();
+            case "name":
+                return owner.getName();
+            case "url":
+                return "https://github.com/" + owner.getLogin();
+            case "avatarUrl":
+                return owner.getAvatarUrl();
+            case "email":
+                return owner.getEmail();
+            case "location":
+                return owner.getLocation();
+            case "websiteUrl":
+                return owner.getBlog();
+            case "createdAt":
+                return MockGitHub.tz(owner.getCreated());
+            case "updatedAt":
+                return MockGitHub.tz(owner.getUpdated());
+            case "repositories":
+                return repositories(owner, field);
+            default:
+                if (owner instanceof MockOrganization org && "description".equals(field.name)) {
+                    return org.getDescription();
+                }
+                if (owner instanceof MockUser user && "bio".equals(field.name)) {
+                    return user.getBio();
+                }
+                if (owner instanceof MockUser user && "company".equals(field.name)) {
+                    return user.getCompany();
+                }
+                return unknown(type, field);
+        }
+    }
+
+    private Object repositories(MockOwner<?> owner, Field field) {
+        Object first = field.arguments.get("first");
+        if (!(first instanceof Number) || ((Number) first).intValue() < 0 || ((Number) first).intValue() > 100) {
+            throw new QueryException("You must provide a `first` value between 0 and 100 to properly paginate the "
+                    + "`repositories` connection.");
+        }
+        NavigableMap<String, MockRepository> repos =
+                owner == viewer ? owner.repositories() : owner.publicRepositories();
+        String after = field.string("after");
+        NavigableMap<String, MockRepository> tail = repos;
+        if (after != null) {
+            String name = cursorName(after);
+            if (name == null) {
+                throw new QueryException("`" + after + "` does not appear to be a valid cursor.");
+            }
+            tail = repos.tailMap(name, false);
+        }
+        List<MockRepository> items = new ArrayList<>();
+        Iterator<MockRepository> iterator = tail.values().iterator();
+        while (items.size() < ((Number) first).intValue() && iterator.hasNext()) {
+            items.add(iterator.next());
+        }
+        Page page = new Page(
+                items, iterator.hasNext(), after != null, owner == viewer ? repos.size() : owner.getPublicRepos());
+        return resolveObject(page, "RepositoryConnection", field.selections);
+    }
+
+    private Object connection(Page page, Field field) {
+        switch (field.name) {
+            case "totalCount":
+                return page.totalCount;
+            case "pageInfo":
+                return resolveObject(page, "PageInfo", field.selections);
+            case "nodes":
+                List<Object> nodes = new ArrayList<>(page.items.size());
+                for (MockRepository repo : page.items) {
+                    nodes.add(resolveObject(repo, "Repository", field.selections));
+                }
+                return nodes;
+            case "edges":
+                List<Object> edges = new ArrayList<>(page.items.size());
+                for (MockRepository repo : page.items) {
+                    edges.add(resolveObject(repo, "RepositoryEdge", field.selections));
+                }
+                return edges;
+            default:
+                return unknown("RepositoryConnection", field);
+        }
+    }
+
+    private Object edge(MockRepository repo, Field field) {
+        switch (field.name) {
+            case "cursor":
+                return cursor(repo);
+            case "node":
+                return resolveObject(repo, "Repository", field.selections);
+            default:
+                return unknown("RepositoryEdge", field);
+        }
+    }
+
+    private Object pageInfo(Page page, Field field) {
+        switch (field.name) {
+            case "hasNextPage":
+                return page.hasNextPage;
+            case "hasPreviousPage":
+                return page.hasPreviousPage;
+            case "startCursor":
+                return page.items.isEmpty() ? null : cursor(page.items.get(0));
+            case "endCursor":
+                return page.items.isEmpty() ? null : cursor(page.items.get(page.items.size() - 1));
+            default:
+                return unknown("PageInfo", field);
+        }
+    }
+
+    private Object repository(MockRepository repo, Field field) {
+        switch (field.name) {
+            case "id":
+                return nodeId(repo);
+            case "databaseId":
+                return repo.getId();
+            case "name":
+                return repo.getName();
+            case "nameWithOwner":
+                return repo.owner().getLogin() + "/" + repo.getName();
+            case "description":
+                return repo.getDescription();
+            case "url":
+                return "https://github.com/" + repo.owner().getLogin() + "/" + repo.getName();
+            case "homepageUrl":
+                return repo.getHomepage();
+            case "isPrivate":
+                return repo.isPrivate();
+            case "isFork":
+                return repo.isFork();
+            case "visibility":
+                return repo.isPrivate() ? "PRIVATE" : "PUBLIC";
+            case "primaryLanguage":
+                return repo.getLanguage() == null
+                        ? null
+                        : resolveObject(repo.getLanguage(), "Language", field.selections);
+            case "owner":
+                return ownerObject(repo.owner(), field);
+            case "createdAt":
+                return MockGitHub.tz(repo.getCreated());
+            case "updatedAt":
+            case "pushedAt":
+                return MockGitHub.tz(repo.getUpdated());
+            default:
+                return unknown("Repository", field);
+        }
+    }
+
+    private static Object unknown(String type, Field field) {
+        throw new QueryException("Field '" + field.name + "' doesn't exist on type '" + type + "'");
+    }
+
+    private static String cursor(MockRepository repo) {
+        return Base64.getEncoder().encodeToString(("cursor:" + repo.getName()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String cursorName(String cursor) {
+        try {
+            String decoded = new String(Base64.getDecoder().decode(cursor), StandardCharsets.UTF_8);
+            return decoded.startsWith("cursor:") ? decoded.substring("cursor:".length()) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static final class Page {
+        private final List<MockRepository> items;
+        private final boolean hasNextPage;
+        private final boolean hasPreviousPage;
+        private final int totalCount;
+
+        Page(List<MockRepository> items, boolean hasNextPage, boolean hasPreviousPage, int totalCount) {
+            this.items = items;
+            this.hasNextPage = hasNextPage;
+            this.hasPreviousPage = hasPreviousPage;
+            this.totalCount = totalCount;
+        }
+    }
+
+    /**
+     * A field, or an inline fragment if {@link #name} is {@code null}, with its arguments already bound to the
+     * variables of the request.
+     */
+    private static final class Field {
+        private final String alias;
+        private final String name;
+        private final String typeCondition;
+        private final Map<String, Object> arguments;
+        private final List<Field> selections;
+
+        Field(String alias, String name, String typeCondition, Map<String, Object> arguments, List<Field> selections) {
+            this.alias = alias;
+            this.name = name;
+            this.typeCondition = typeCondition;
+            this.arguments = arguments;
+            this.selections = selections;
+        }
+
+        String key() {
+            return alias == null ? name : alias;
+        }
+
+        String string(String argument) {
+            Object value = arguments.get(argument);
+            return value == null ? null : value.toString();
+        }
+    }
+
+    /**
+     * A recursive descent parser of a single anonymous or named query operation.
+     */
+    private static final class Parser {
+        private final String text;
+        private final Map<String, Object> variables;
+        private int pos;
+
+        Parser(String text, Map<String, Object> variables) {
+            this.text = text;
+            this.variables = new HashMap<>(variables);
+        }
+
+        List<Field> document() {
+            skipIgnored();
+            if (peek() != '{') {
+                String operation = name();
+                if (!"query".equals(operation)) {
+                    throw new QueryException("Unsupported operation: " + operation);
+                }
+                skipIgnored();
+                if (isNameStart(peek())) {
+                    name();
+                }
+                skipIgnored();
+                if (peek() == '(') {
+                    variableDefinitions();
+                }
+            }
+            List<Field> selections = selectionSet();
+            skipIgnored();
+            if (pos < text.length()) {
+                throw error("Only a single operation is supported");
+            }
+            return selections;
+        }
+
+        private void variableDefinitions() {
+            expect('(');
+            while (!consume(')')) {
+                expect('$');
+                String variable = name();
+                expect(':');
+                // the type is not checked
+                while (consume('[')) {
+                    // list type
+                }
+                name();
+                while (consume('!') || consume(']')) {
+                    // non-null or end of list type
+                }
+                if (consume('=')) {
+                    Object defaultValue = value();
+                    variables.putIfAbsent(variable, defaultValue);
+                }
+            }
+        }
+
+        private List<Field> selectionSet() {
+            expect('{');
+            List<Field> selections = new ArrayList<>();
+            while (!consume('}')) {
+                if (consume('.')) {
+                    expect('.');
+                    expect('.');
+                    String on = name();
+                    if (!"on".equals(on)) {
+                        throw error("Named fragments are not supported");
+                    }
+                    String type = name();
+                    selections.add(new Field(null, null, type, Map.of(), selectionSet()));
+                    continue;
+                }
+                String alias = null;
+                String name = name();
+                if (consume(':')) {
+                    alias = name;
+                    name = name();
+                }
+                Map<String, Object> arguments = Map.of();
+                if (consume('(')) {
+                    arguments = new HashMap<>();
+                    while (!consume(')')) {
+                        String argument = name();
+                        expect(':');
+                        arguments.put(argument, value());
+                    }
+                }
+                skipIgnored();
+                if (peek() == '@') {
+                    throw error("Directives are not supported");
+                }
+                List<Field> children = peek() == '{' ? selectionSet() : Collections.emptyList();
+                selections.add(new Field(alias, name, null, arguments, children));
+            }
+            return selections;
+        }
+
+        private Object value() {
+            skipIgnored();
+            char c = peek();
+            if (c == '$') {
+                pos++;
+                return variables.get(name());
+            }
+            if (c == '"') {
+                return string();
+            }
+            if (c == '[') {
+                pos++;
+                List<Object> list = new ArrayList<>();
+                while (!consume(']')) {
+                    list.add(value());
+                }
+                return list;
+            }
+            if (c == '{') {
+                pos++;
+                Map<String, Object> map = new LinkedHashMap<>();
+                while (!consume('}')) {
+                    String key = name();
+                    expect(':');
+                    map.put(key, value());
+                }
+                return map;
+            }
+            if (c == '-' || Character.isDigit(c)) {
+                int start = pos++;
+                while (pos < text.length() && (Character.isDigit(peek()) || "+-.eE".indexOf(peek()) >= 0)) {
+                    pos++;
+                }
+                String number = text.substring(start, pos);
+                try {
+                    return number.matches("-?\\d+") ? (Object) Long.parseLong(number) : Double.parseDouble(number);
+                } catch (NumberFormatException e) {
+                    throw error("Malformed number " + number);
+                }
+            }
+            String name = name();
+            switch (name) {
+                case "true":
+                    return Boolean.TRUE;
+                case "false":
+                    return Boolean.FALSE;
+                case "null":
+                    return null;
+                default:
+                    // an enum value
+                    return name;
+            }
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder result = new StringBuilder();
+            while (true) {
+                if (pos >= text.length()) {
+                    throw error("Unterminated string");
+                }
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return result.toString();
+                }
+                if (c != '\\') {
+                    result.append(c);
+                    continue;
+                }
+                if (pos >= text.length()) {
+                    throw error("Unterminated string");
+                }
+                char escaped = text.charAt(pos++);
+                switch (escaped) {
+                    case 'n':
+                        result.append('\n');
+                        break;
+                    case 't':
+                        result.append('\t');
+                        break;
+                    case 'r':
+                        result.append('\r');
+                        break;
+                    case 'b':
+                        result.append('\b');
+                        break;
+                    case 'f':
+                        result.append('\f');
+                        break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw error("Malformed unicode escape");
+                        }
+                        try {
+                            result.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Malformed unicode escape");
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        result.append(escaped);
+                        break;
+                }
+            }
+        }
+
+        private String name() {
+            skipIgnored();
+            int start = pos;
+            if (pos < text.length() && isNameStart(peek())) {
+                pos++;
+                while (pos < text.length() && (isNameStart(peek()) || Character.isDigit(peek()))) {
+                    pos++;
+                }
+            }
+            if (start == pos) {
+                throw error("Expected a name");
+            }
+            return text.substring(start, pos);
+        }
+
+        private static boolean isNameStart(char c) {
+            return c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+
+        private void expect(char c) {
+            if (!consume(c)) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+        private boolean consume(char c) {
+            skipIgnored();
+            if (peek() == c) {
+                pos++;
+                return true;
+            }
+            if (pos >= text.length()) {
+                throw error("Unexpected end of document");
+            }
+            return false;
+        }
+
+        private char peek() {
+            return pos < text.length() ? text.charAt(pos) : '\0';
+        }
+
+        private void skipIgnored() {
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (c == '#') {
+                    while (pos < text.length() && text.charAt(pos) != '\n') {
+                        pos++;
+                    }
+                } else if (c == ',' || Character.isWhitespace(c) || c == '\uFEFF') {
+                    pos++;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private QueryException error(String message) {
+            return new QueryException("Parse error at offset " + pos + ": " + message);
+        }
+    }
+
+    private static final class QueryException extends IllegalArgumentException {
+        QueryException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package jenkins.plugins.github.api.mock;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative values in the style of HdrHistogram: values are counted in log-linear buckets
+ * whose width is at most 1/64th of their lower bound, so percentiles are accurate to within about 1.6% whatever the
+ * magnitude of the values.
+ */
+public final class MockHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS) * HALF + SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Counts a value.
+     *
+     * @param value the value, negative values are counted as {@code 0}.
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(index(v));
+        count.increment();
+        sum.add(v);
+        max.accumulateAndGet(v, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Returns the value below which the supplied percentage of the values fall.
+     *
+     * @param percentile the percentile between {@code 0.0} and {@code 100.0}.
+     * @return the highest value that is equivalent, within the precision of the histogram, to the value at the
+     *         percentile, or {@code 0} if no values have been counted.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(100.0, percentile) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highest(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    static int index(long value) {
+        int bits = 64 - Long.numberOfLeadingZeros(value);
+        if (bits <= SUB_BUCKET_BITS) {
+            return (int) value;
+        }
+        int shift = bits - SUB_BUCKET_BITS;
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    static long highest(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / HALF - 1;
+        long mantissa = index - (long) shift * HALF;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,50 @@
+package jenkins.plugins.github.api.mock;
+
+import java.util.Set;
+
+/**
+ * A webhook registered on a {@link MockOrganization} or a {@link MockRepository}.
+ */
+public final class MockHook {
+    private final long id;
+    private final String url;
+    private final String secret;
+    private final Set<String> events;
+
+    MockHook(long id, String url, String secret, Set<String> events) {
+        this.id = id;
+        this.url = url;
+        this.secret = secret;
+        this.events = Set.copyOf(events);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the secret that deliveries are signed with.
+     *
+     * @return the secret or {@code null} if deliveries are not signed.
+     */
+    public String getSecret() {
+        return secret;
+    }
+
+    /**
+     * Returns the events delivered to this hook.
+     *
+     * @return the event names, {@code *} for every event.
+     */
+    public Set<String> getEvents() {
+        return events;
+    }
+
+    boolean accepts(String event) {
+        return events.contains("*") || events.contains(event);
+    }
+}
@@ -0,0 +1,67 @@
+package jenkins.plugins.github.api.mock;
+
+import java.time.Duration;
+import java.util.random.RandomGenerator;
+
+/**
+ * A distribution of the delay before the response headers of a request are sent.
+ */
+@FunctionalInterface
+public interface MockLatency {
+
+    /**
+     * Answers instantly.
+     */
+    MockLatency NONE = random -> 0L;
+
+    /**
+     * Draws the delay of one request.
+     *
+     * @param random the source of randomness, seeded per request so that runs are reproducible.
+     * @return the delay in nanoseconds.
+     */
+    long sample(RandomGenerator random);
+
+    /**
+     * Delays every request by the same amount.
+     *
+     * @param delay the delay.
+     * @return the distribution.
+     */
+    static MockLatency fixed(Duration delay) {
+        long nanos = delay.toNanos();
+        return random -> nanos;
+    }
+
+    /**
+     * Delays each request by an amount drawn uniformly between the bounds.
+     *
+     * @param min the shortest delay.
+     * @param max the longest delay.
+     * @return the distribution.
+     */
+    static MockLatency uniform(Duration min, Duration max) {
+        long lo = min.toNanos();
+        long hi = max.toNanos();
+        if (hi < lo) {
+            throw new IllegalArgumentException("Maximum latency " + max + " is less than the minimum " + min);
+        }
+        return random -> lo == hi ? lo : random.nextLong(lo, hi + 1);
+    }
+
+    /**
+     * Delays each request by an amount drawn from a log-normal distribution, which has the long tail of real
+     * network and server latency.
+     *
+     * @param median the median delay.
+     * @param sigma  the standard deviation of the logarithm of the delay, e.g. {@code 0.5} puts the 99th percentile
+     *               at roughly three times the median.
+     * @param max    the longest delay, to keep the tail from stalling a test.
+     * @return the distribution.
+     */
+    static MockLatency logNormal(Duration median, double sigma, Duration max) {
+        double mu = Math.log(median.toNanos());
+        long cap = max.toNanos();
+        return random -> Math.min(cap, (long) Math.exp(mu + sigma * random.nextGaussian()));
+    }
+}
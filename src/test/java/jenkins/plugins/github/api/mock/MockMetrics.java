@@ -0,0 +1,308 @@
+package jenkins.plugins.github.api.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What clients did against a {@link MockGitHub}: per route request counts, latency histograms, bytes written and
+ * status codes, plus an optional log of the most recent requests. Routes are path templates such as
+ * {@code /users/{user}/repos}, see {@link #route(String)}.
+ */
+public final class MockMetrics {
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+    private final Queue<Entry> accessLog = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger accessLogSize = new AtomicInteger();
+    private volatile int accessLogCapacity;
+
+    MockMetrics() {}
+
+    /**
+     * Returns the path template of a request path, replacing the owner and repository names, branch names, numbers,
+     * SHA-1s and file paths with placeholders.
+     *
+     * @param path the request path.
+     * @return the route.
+     */
+    public static String route(String path) {
+        String[] segments = path.split("/", -1);
+        if (segments.length > 2) {
+            switch (segments[1]) {
+                case "users":
+                    segments[2] = "{user}";
+                    break;
+                case "orgs":
+                    segments[2] = "{org}";
+                    break;
+                case "app":
+                    if (segments.length > 3 && "installations".equals(segments[2])) {
+                        segments[3] = "{installation_id}";
+                    }
+                    break;
+                case "repos":
+                    segments[2] = "{owner}";
+                    if (segments.length > 3) {
+                        segments[3] = "{repo}";
+                    }
+                    if (segments.length > 5 && "contents".equals(segments[4])) {
+                        return String.join("/", Arrays.copyOf(segments, 5)) + "/{path}";
+                    }
+                    if (segments.length > 5 && "branches".equals(segments[4])) {
+                        return String.join("/", Arrays.copyOf(segments, 5)) + "/{branch}";
+                    }
+                    if (segments.length > 5 && "pulls".equals(segments[4])) {
+                        segments[5] = "{pull_number}";
+                    }
+                    if (segments.length > 5 && "statuses".equals(segments[4])) {
+                        segments[5] = "{sha}";
+                    }
+                    if (segments.length > 6 && "git".equals(segments[4])) {
+                        segments[6] = "trees".equals(segments[5]) ? "{tree_sha}" : "{sha}";
+                    }
+                    break;
+                case "raw":
+                    return "/raw/{owner}/{repo}/{ref}/{path}";
+                default:
+                    break;
+            }
+        }
+        return String.join("/", segments);
+    }
+
+    /**
+     * Returns the metrics of a route.
+     *
+     * @param route the route, e.g. {@code /users/{user}/repos}.
+     * @return the metrics, empty if the route has not been requested.
+     */
+    public Route get(String route) {
+        Route result = routes.get(route);
+        return result == null ? new Route() : result;
+    }
+
+    /**
+     * Returns the metrics of each route that has been requested.
+     *
+     * @return the metrics keyed by route.
+     */
+    public NavigableMap<String, Route> getRoutes() {
+        return Collections.unmodifiableNavigableMap(new TreeMap<>(routes));
+    }
+
+    /**
+     * Returns the number of requests to all routes.
+     *
+     * @return the number of requests.
+     */
+    public long getRequests() {
+        long total = 0;
+        for (Route r : routes.values()) {
+            total += r.getRequests();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of response body bytes written on all routes.
+     *
+     * @return the number of bytes written.
+     */
+    public long getBytesWritten() {
+        long total = 0;
+        for (Route r : routes.values()) {
+            total += r.getBytesWritten();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of responses with the supplied status on all routes.
+     *
+     * @param status the status, e.g. {@code 302} to count the redirects.
+     * @return the number of responses.
+     */
+    public long getStatusCount(int status) {
+        long total = 0;
+        for (Route r : routes.values()) {
+            total += r.getStatusCount(status);
+        }
+        return total;
+    }
+
+    /**
+     * Keeps a log of the most recent requests.
+     *
+     * @param capacity the number of requests to keep, {@code 0} to disable the log.
+     */
+    public void setAccessLogCapacity(int capacity) {
+        this.accessLogCapacity = Math.max(0, capacity);
+    }
+
+    /**
+     * Returns the most recent requests, oldest first.
+     *
+     * @return the most recent requests.
+     */
+    public List<Entry> getAccessLog() {
+        return new ArrayList<>(accessLog);
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    public void reset() {
+        routes.clear();
+        accessLog.clear();
+        accessLogSize.set(0);
+    }
+
+    /**
+     * Counts a response, just before its headers are sent.
+     *
+     * @param path   the request path.
+     * @param status the status or {@code 0} if the request was dropped without a response.
+     * @param nanos  the time from receiving the request.
+     */
+    void responded(String path, int status, long nanos) {
+        Route route = routes.computeIfAbsent(route(path), k -> new Route());
+        route.requests.increment();
+        route.statuses.incrementAndGet(status >= 100 && status < 600 ? status : 0);
+        route.latency.record(nanos);
+    }
+
+    /**
+     * Records the body of a response once it has been written.
+     *
+     * @param method the request method.
+     * @param path   the request path.
+     * @param status the status or {@code 0} if the request was dropped without a response.
+     * @param bytes  the number of body bytes written.
+     * @param nanos  the time from receiving the request.
+     */
+    void completed(String method, String path, int status, long bytes, long nanos) {
+        routes.computeIfAbsent(route(path), k -> new Route()).bytesWritten.add(bytes);
+        int capacity = accessLogCapacity;
+        if (capacity > 0) {
+            accessLog.add(new Entry(System.currentTimeMillis(), method, path, status, bytes, nanos));
+            accessLogSize.incrementAndGet();
+            while (accessLogSize.get() > capacity && accessLog.poll() != null) {
+                accessLogSize.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * The metrics of a single route.
+     */
+    public static final class Route {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+        private final AtomicLongArray statuses = new AtomicLongArray(600);
+        private final MockHistogram latency = new MockHistogram();
+
+        Route() {}
+
+        public long getRequests() {
+            return requests.sum();
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten.sum();
+        }
+
+        /**
+         * Returns the number of responses with the supplied status.
+         *
+         * @param status the status or {@code 0} for the requests that were dropped without a response.
+         * @return the number of responses.
+         */
+        public long getStatusCount(int status) {
+            return status >= 0 && status < statuses.length() ? statuses.get(status) : 0;
+        }
+
+        /**
+         * Returns the number of responses of each status that has been sent.
+         *
+         * @return the number of responses keyed by status.
+         */
+        public NavigableMap<Integer, Long> getStatusCounts() {
+            NavigableMap<Integer, Long> result = new TreeMap<>();
+            for (int i = 0; i < statuses.length(); i++) {
+                long n = statuses.get(i);
+                if (n > 0) {
+                    result.put(i, n);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Returns the histogram of the time from receiving each request to sending its response headers.
+         *
+         * @return the latency histogram in nanoseconds.
+         */
+        public MockHistogram getLatency() {
+            return latency;
+        }
+    }
+
+    /**
+     * A request in the access log.
+     */
+    public static final class Entry {
+        private final long timestamp;
+        private final String method;
+        private final String path;
+        private final int status;
+        private final long bytes;
+        private final long nanos;
+
+        Entry(long timestamp, String method, String path, int status, long bytes, long nanos) {
+            this.timestamp = timestamp;
+            this.method = method;
+            this.path = path;
+            this.status = status;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return method + " " + path + " " + status + " " + bytes + "B " + nanos / 1000 + "us";
+        }
+    }
+}
@@ -1,5 +1,10 @@
 package jenkins.plugins.github.api.mock;
 
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * @author Stephen Connolly
  */
@@ -7,14 +12,33 @@ public class MockObject {
     private final MockGitHub app;
 
     private final long id;
-    private long created;
-    private long updated;
+    private final long created;
+    private final AtomicLong updated;
+    /**
+     * The serialized representations of this object keyed by view.
+     */
+    private final Map<String, Payload> payloads = new ConcurrentHashMap<>();
 
     public MockObject(MockGitHub app) {
         this.app = app;
         this.id = app.nextId();
-        this.created = System.currentTimeMillis();
-        this.updated = System.currentTimeMillis();
+        long now = System.currentTimeMillis();
+        this.created = now;
+        this.updated = new AtomicLong(now);
+    }
+
+    /**
+     * Restores an object from a snapshot.
+     *
+     * @param app     the mock.
+     * @param id      the original id.
+     * @param created the original creation time.
+     */
+    MockObject(MockGitHub app, long id, long created) {
+        this.app = app;
+        this.id = app.reserveId(id);
+        this.created = created;
+        this.updated = new AtomicLong(created);
     }
 
     public MockGitHub app() {
@@ -30,10 +54,72 @@ public class MockObject {
     }
 
     public long getUpdated() {
-        return updated;
+        return updated.get();
+    }
+
+    /**
+     * Returns the entity tag of the current representation of this object, which changes on every {@link #touch()}.
+     *
+     * @return the entity tag.
+     */
+    public String getETag() {
+        return String.format("\"%x-%x\"", id, updated.get());
     }
 
     public void touch() {
-        updated = System.currentTimeMillis();
+        // keep updated strictly increasing so that changes within the same millisecond still change the entity tag
+        long now = System.currentTimeMillis();
+        updated.updateAndGet(previous -> Math.max(now, previous + 1));
+        payloads.clear();
+    }
+
+    /**
+     * Restores the original modification time of an object loaded from a snapshot, after its fields have been set.
+     *
+     * @param updated the original modification time.
+     */
+    void restoreUpdated(long updated) {
+        this.updated.set(updated);
+        payloads.clear();
+    }
+
+    /**
+     * Drops the cached serialized representations without changing the modification time.
+     */
+    void invalidate() {
+        payloads.clear();
+    }
+
+    /**
+     * Returns the cached serialized representation of this object, serializing it if this object or the state it
+     * depends on has changed since it was cached.
+     *
+     * @param view       the name of the representation.
+     * @param dependency a timestamp of other state the representation embeds, {@code 0} if none.
+     * @param writer     the writer of the representation.
+     * @return the UTF-8 encoded JSON.
+     * @throws IOException if the representation could not be written.
+     */
+    byte[] payload(String view, long dependency, MockGitHub.PayloadWriter writer) throws IOException {
+        // read updated before serializing, so a concurrent touch() leaves a payload that is never considered current
+        long updated = this.updated.get();
+        Payload payload = payloads.get(view);
+        if (payload == null || payload.updated != updated || payload.dependency != dependency) {
+            payload = new Payload(updated, dependency, app.serialize(writer));
+            payloads.put(view, payload);
+        }
+        return payload.bytes;
+    }
+
+    private static final class Payload {
+        private final long updated;
+        private final long dependency;
+        private final byte[] bytes;
+
+        Payload(long updated, long dependency, byte[] bytes) {
+            this.updated = updated;
+            this.dependency = dependency;
+            this.bytes = bytes;
+        }
     }
 }
@@ -1,15 +1,25 @@
 package jenkins.plugins.github.api.mock;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  * @author Stephen Connolly
  */
 public class MockOrganization extends MockOwner<MockOrganization> {
-    private String description;
+    private volatile String description;
+    private final List<MockHook> hooks = new CopyOnWriteArrayList<>();
 
     MockOrganization(MockGitHub app, String login) {
         super(app, login);
     }
 
+    MockOrganization(MockGitHub app, long id, String login, long created) {
+        super(app, id, login, created);
+    }
+
     @Override
     public String getType() {
         return "Organization";
@@ -25,4 +35,31 @@ public class MockOrganization extends MockOwner<MockOrganization> {
         return this;
     }
 
+    public List<MockHook> getHooks() {
+        return Collections.unmodifiableList(hooks);
+    }
+
+    /**
+     * Registers a webhook that receives every event, see {@link MockWebhooks}.
+     *
+     * @param url    the URL to post the events to.
+     * @param secret the secret to sign the deliveries with or {@code null} to leave them unsigned.
+     * @return {@code this} for method chaining.
+     */
+    public MockOrganization withHook(String url, String secret) {
+        return withHook(url, secret, Set.of("*"));
+    }
+
+    /**
+     * Registers a webhook, see {@link MockWebhooks}.
+     *
+     * @param url    the URL to post the events to.
+     * @param secret the secret to sign the deliveries with or {@code null} to leave them unsigned.
+     * @param events the events to deliver, {@code *} for every event.
+     * @return {@code this} for method chaining.
+     */
+    public MockOrganization withHook(String url, String secret, Set<String> events) {
+        hooks.add(new MockHook(app().getWebhooks().nextHookId(), url, secret, events));
+        return this;
+    }
 }
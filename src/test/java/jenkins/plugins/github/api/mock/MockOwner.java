@@ -1,27 +1,113 @@
 package jenkins.plugins.github.api.mock;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class MockOwner<T> extends MockObject {
-    private final Map<String, MockRepository> repositories = new HashMap<>();
+    /**
+     * The repositories keyed by name, sorted so that the repository lists can be paginated.
+     */
+    private final MockPagedIndex<String, MockRepository> repositories =
+            new MockPagedIndex<>(Comparator.naturalOrder());
+    /**
+     * The public subset of {@link #repositories}, maintained by {@link MockGitHub#reindex(MockRepository)}.
+     */
+    private final MockPagedIndex<String, MockRepository> publicRepositories =
+            new MockPagedIndex<>(Comparator.naturalOrder());
+    /**
+     * The private subset of {@link #repositories}, maintained alongside {@link #publicRepositories}.
+     */
+    private final MockPagedIndex<String, MockRepository> privateRepositories =
+            new MockPagedIndex<>(Comparator.naturalOrder());
+    // ConcurrentSkipListMap.size() is linear, so keep the count separately
+    private final AtomicInteger publicRepoCount = new AtomicInteger();
     private final String login;
-    private String name;
-    private String avatarUrl;
-    private String blog;
-    private String location;
-    private String email;
-    private Set<String> following = new HashSet<>();
+    private volatile String name;
+    private volatile String avatarUrl;
+    private volatile String blog;
+    private volatile String location;
+    private volatile String email;
+    /**
+     * The logins this owner follows, in login order.
+     */
+    private volatile List<String> following = List.of();
 
     MockOwner(MockGitHub app, String login) {
         super(app);
         this.login = login;
     }
 
-    public Map<String, MockRepository> repositories() {
-        return repositories;
+    MockOwner(MockGitHub app, long id, String login, long created) {
+        super(app, id, created);
+        this.login = login;
+    }
+
+    /**
+     * Records a change of this owner and, once it is registered with the mock, reindexes it for search.
+     */
+    @Override
+    public void touch() {
+        super.touch();
+        if (app().owner(login) == this) {
+            app().search().update(this);
+        }
+    }
+
+    public NavigableMap<String, MockRepository> repositories() {
+        return repositories.map();
+    }
+
+    public NavigableMap<String, MockRepository> publicRepositories() {
+        return publicRepositories.map();
+    }
+
+    /**
+     * Returns the repositories in name order, as a list to page through by position.
+     *
+     * @return an immutable copy of the repositories.
+     */
+    List<MockRepository> repositoryList() {
+        return repositories.list();
+    }
+
+    /**
+     * Returns the public repositories in name order, as a list to page through by position.
+     *
+     * @return an immutable copy of the public repositories.
+     */
+    List<MockRepository> publicRepositoryList() {
+        return publicRepositories.list();
+    }
+
+    /**
+     * Returns the private repositories in name order, as a list to page through by position.
+     *
+     * @return an immutable copy of the private repositories.
+     */
+    List<MockRepository> privateRepositoryList() {
+        return privateRepositories.list();
+    }
+
+    void indexPublic(MockRepository repo) {
+        if (publicRepositories.put(repo.getName(), repo) == null) {
+            publicRepoCount.incrementAndGet();
+        }
+        privateRepositories.remove(repo.getName(), repo);
+    }
+
+    void unindexPublic(MockRepository repo) {
+        if (publicRepositories.remove(repo.getName(), repo)) {
+            publicRepoCount.decrementAndGet();
+        }
+        if (repo.isPrivate() && repositories.get(repo.getName()) == repo) {
+            privateRepositories.put(repo.getName(), repo);
+        } else {
+            privateRepositories.remove(repo.getName(), repo);
+        }
     }
 
     public T withPublicRepo(String name) {
@@ -33,11 +119,24 @@ public abstract class MockOwner<T> extends MockObject {
     }
 
     public T withRepo(String name, boolean isPrivate) {
-        MockRepository repo = new MockRepository(app(), this, name).withPrivate(isPrivate);
-        repositories.put(name, repo);
+        MockRepository repo = new MockRepository(app(), this, name);
+        repo.withPrivate(isPrivate);
+        attach(repo);
+        // the public_repos count has changed
+        touch();
+        app().getWebhooks().repository(repo, "created");
         return (T) this;
     }
 
+    /**
+     * Adds a repository, replacing any repository with the same name, without touching this owner.
+     *
+     * @param repo the repository.
+     */
+    void attach(MockRepository repo) {
+        app().attached(repo, repositories.put(repo.getName(), repo));
+    }
+
     public String getLogin() {
         return login;
     }
@@ -95,32 +194,37 @@ public abstract class MockOwner<T> extends MockObject {
     }
 
     public int getPublicRepos() {
-        int result = 0;
-        for (MockRepository r : repositories.values()) {
-            if (!r.isPrivate()) {
-                result++;
-            }
-        }
-        return result;
+        return publicRepoCount.get();
     }
 
     public int getFollowers() {
-        int count = 0;
-        for (MockOwner<?> owner : app().owners()) {
-            if (owner.following.contains(login)) {
-                count++;
-            }
-        }
-        return 0;
+        return app().followerCount(login);
     }
 
     public int getFollowing() {
         return following.size();
     }
 
+    public List<String> getFollowingLogins() {
+        return following;
+    }
+
     public T withFollowing(Set<String> following) {
-        this.following = following;
+        restoreFollowing(following, true);
         touch();
         return (T) this;
     }
+
+    /**
+     * Replaces the logins this owner follows.
+     *
+     * @param following     the logins now followed.
+     * @param touchFollowed {@code true} to touch the owners whose follower count changes, {@code false} to keep their
+     *                      modification time, as when loading a snapshot.
+     */
+    synchronized void restoreFollowing(Set<String> following, boolean touchFollowed) {
+        List<String> before = this.following;
+        this.following = List.copyOf(new TreeSet<>(following));
+        app().follow(login, Set.copyOf(before), following, touchFollowed);
+    }
 }
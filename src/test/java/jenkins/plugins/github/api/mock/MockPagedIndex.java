@@ -0,0 +1,106 @@
+package jenkins.plugins.github.api.mock;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A concurrent sorted map that also serves its values as a list, so that a page of a listing is found by offset
+ * rather than by skipping every entry before it. The list is copied on the first read after an entry is added or
+ * removed, so a burst of mutations costs one copy and repeated scans of an unchanged index cost none. Values changed in
+ * place keep the list, as it holds the values themselves.
+ *
+ * @param <K> the type of the keys.
+ * @param <V> the type of the values.
+ */
+final class MockPagedIndex<K, V> {
+    private final ConcurrentSkipListMap<K, V> map;
+    private final AtomicLong version = new AtomicLong();
+    /**
+     * Changes when an entry is added or removed, unlike {@link #version} which also changes with the values.
+     */
+    private final AtomicLong structure = new AtomicLong();
+    private volatile Snapshot<V> snapshot = new Snapshot<>(0, List.of());
+
+    MockPagedIndex(Comparator<? super K> comparator) {
+        this.map = new ConcurrentSkipListMap<>(comparator);
+    }
+
+    V get(K key) {
+        return map.get(key);
+    }
+
+    V put(K key, V value) {
+        V previous = map.put(key, value);
+        structure.incrementAndGet();
+        version.incrementAndGet();
+        return previous;
+    }
+
+    V remove(K key) {
+        V previous = map.remove(key);
+        if (previous != null) {
+            structure.incrementAndGet();
+            version.incrementAndGet();
+        }
+        return previous;
+    }
+
+    boolean remove(K key, V value) {
+        if (map.remove(key, value)) {
+            structure.incrementAndGet();
+            version.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records that a value changed in place, so that the entity tags of listings of the index change.
+     */
+    void changed() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * Returns a counter that changes on every mutation, for use in entity tags.
+     *
+     * @return the version.
+     */
+    long getVersion() {
+        return version.get();
+    }
+
+    NavigableMap<K, V> map() {
+        return Collections.unmodifiableNavigableMap(map);
+    }
+
+    /**
+     * Returns the values in key order.
+     *
+     * @return an immutable copy of the values as of a recent addition or removal.
+     */
+    List<V> list() {
+        Snapshot<V> current = snapshot;
+        // read the counter before copying, so that a concurrent mutation leaves a snapshot that is never current
+        long v = structure.get();
+        if (current.version != v) {
+            current = new Snapshot<>(v, List.copyOf(map.values()));
+            snapshot = current;
+        }
+        return current.values;
+    }
+
+    private static final class Snapshot<V> {
+        private final long version;
+        private final List<V> values;
+
+        Snapshot(long version, List<V> values) {
+            this.version = version;
+            this.values = values;
+        }
+    }
+}
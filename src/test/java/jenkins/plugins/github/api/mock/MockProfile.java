@@ -0,0 +1,116 @@
+package jenkins.plugins.github.api.mock;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The latency and faults of the requests to one route of a {@link MockGitHub}, see {@link MockGitHub#profile(String)}.
+ * <p>
+ * Each request draws from its own random generator, seeded from {@link MockGitHub#withSeed(long)}, the route and the
+ * number of requests to the route so far, so a client that issues the same requests in the same order sees the same
+ * latencies and faults on every run.
+ */
+public final class MockProfile {
+    private final String route;
+    private volatile MockLatency latency = MockLatency.NONE;
+    private final List<Weighted> faults = new CopyOnWriteArrayList<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injected = new AtomicLong();
+
+    MockProfile(String route) {
+        this.route = route;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    /**
+     * Delays the response headers of each request.
+     *
+     * @param latency the distribution of the delay.
+     * @return {@code this} for method chaining.
+     */
+    public MockProfile withLatency(MockLatency latency) {
+        this.latency = latency == null ? MockLatency.NONE : latency;
+        return this;
+    }
+
+    /**
+     * Injects a fault into a fraction of the requests. At most one fault is injected into each request, the
+     * probabilities of all faults of a route should therefore add up to no more than {@code 1.0}.
+     *
+     * @param probability the fraction of the requests to inject the fault into.
+     * @param fault       the fault.
+     * @return {@code this} for method chaining.
+     */
+    public MockProfile withFault(double probability, MockFault fault) {
+        if (probability < 0.0 || probability > 1.0) {
+            throw new IllegalArgumentException("Probability must be between 0 and 1: " + probability);
+        }
+        faults.add(new Weighted(probability, fault));
+        return this;
+    }
+
+    /**
+     * Returns the number of requests to this route.
+     *
+     * @return the number of requests.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Returns the number of requests to this route that a fault was injected into.
+     *
+     * @return the number of faulty requests.
+     */
+    public long getInjected() {
+        return injected.get();
+    }
+
+    /**
+     * Returns the generator of the next request to this route.
+     */
+    SplittableRandom next(long seed) {
+        long n = requests.getAndIncrement();
+        return new SplittableRandom(seed ^ (31L * route.hashCode() + n) * 0x9E3779B97F4A7C15L);
+    }
+
+    long delay(SplittableRandom random) {
+        return latency.sample(random);
+    }
+
+    /**
+     * Draws the fault of a request.
+     *
+     * @return the fault or {@code null} to serve the request normally.
+     */
+    MockFault fault(SplittableRandom random) {
+        if (faults.isEmpty()) {
+            return null;
+        }
+        double roll = random.nextDouble();
+        for (Weighted w : faults) {
+            roll -= w.probability;
+            if (roll < 0.0) {
+                injected.incrementAndGet();
+                return w.fault;
+            }
+        }
+        return null;
+    }
+
+    private static final class Weighted {
+        private final double probability;
+        private final MockFault fault;
+
+        Weighted(double probability, MockFault fault) {
+            this.probability = probability;
+            this.fault = fault;
+        }
+    }
+}
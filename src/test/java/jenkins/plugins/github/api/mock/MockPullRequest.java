@@ -0,0 +1,166 @@
+package jenkins.plugins.github.api.mock;
+
+/**
+ * A pull request of a {@link MockRepository}, see {@link MockRepository#withPullRequest(String, String, String)}.
+ * The head commit is that of the head branch for as long as the branch exists.
+ */
+public class MockPullRequest extends MockObject {
+    private final MockRepository repository;
+    private final int number;
+    private final MockRepository headRepository;
+    private final String headRef;
+    private final String baseRef;
+    private final MockUser user;
+    private volatile String title;
+    private volatile String body;
+    private volatile boolean draft;
+    /**
+     * The head commit when the head branch was last seen, for once the branch has been deleted.
+     */
+    private volatile String headSha;
+    private volatile long closed;
+
+    MockPullRequest(
+            MockRepository repository,
+            int number,
+            MockRepository headRepository,
+            String headRef,
+            String baseRef,
+            MockUser user,
+            String title) {
+        super(repository.app());
+        this.repository = repository;
+        this.number = number;
+        this.headRepository = headRepository;
+        this.headRef = headRef;
+        this.baseRef = baseRef;
+        this.user = user;
+        this.title = title;
+        MockBranch head = headRepository.getBranch(headRef);
+        this.headSha = head == null ? null : head.getSha();
+    }
+
+    public MockRepository repository() {
+        return repository;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    public MockRepository getHeadRepository() {
+        return headRepository;
+    }
+
+    public String getHeadRef() {
+        return headRef;
+    }
+
+    /**
+     * Returns the head commit.
+     *
+     * @return the SHA-1 of the head commit.
+     */
+    public String getHeadSha() {
+        MockBranch head = headRepository.getBranch(headRef);
+        if (head != null) {
+            headSha = head.getSha();
+        }
+        return headSha;
+    }
+
+    public String getBaseRef() {
+        return baseRef;
+    }
+
+    /**
+     * Returns the author.
+     *
+     * @return the author or {@code null} if the pull request was opened by the owner of an organization repository.
+     */
+    public MockUser getUser() {
+        return user;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public MockPullRequest withTitle(String title) {
+        this.title = title;
+        touch();
+        return this;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public MockPullRequest withBody(String body) {
+        this.body = body;
+        touch();
+        return this;
+    }
+
+    public boolean isDraft() {
+        return draft;
+    }
+
+    public MockPullRequest withDraft(boolean draft) {
+        this.draft = draft;
+        touch();
+        return this;
+    }
+
+    public boolean isOpen() {
+        return closed == 0;
+    }
+
+    /**
+     * Returns when the pull request was closed.
+     *
+     * @return the time the pull request was closed or {@code 0} if it is open.
+     */
+    public long getClosed() {
+        return closed;
+    }
+
+    public MockPullRequest close() {
+        closed = System.currentTimeMillis();
+        repository.pullRequestStateChanged(this);
+        touch();
+        return this;
+    }
+
+    public MockPullRequest reopen() {
+        closed = 0;
+        repository.pullRequestStateChanged(this);
+        touch();
+        return this;
+    }
+
+    /**
+     * Records a change of this pull request, which also makes the listings of the pull requests of its repository
+     * stale.
+     */
+    @Override
+    public void touch() {
+        super.touch();
+        repository.pullRequestChanged();
+    }
+
+    /**
+     * Returns a timestamp of the state that the representation of this pull request embeds besides its own: the head
+     * and base branches, either of which may be an implicit default branch, and the repositories and their owners.
+     *
+     * @return a value that changes whenever that state changes.
+     */
+    long getDependency() {
+        return headRepository.getBranchVersion()
+                + headRepository.getUpdated()
+                + headRepository.owner().getUpdated()
+                + repository.getBranchVersion()
+                + repository.getUpdated()
+                + repository.owner().getUpdated();
+    }
+}
@@ -0,0 +1,162 @@
+package jenkins.plugins.github.api.mock;
+
+import java.net.HttpURLConnection;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket per {@code Authorization} header that refills continuously at {@code limit} requests per window.
+ */
+public class MockRateLimit {
+    private final int limit;
+    private final long windowMillis;
+    private final int exhaustedStatus;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param limit           the number of requests each token may make per window.
+     * @param window          the window over which the bucket refills completely.
+     * @param exhaustedStatus the status to respond with once a bucket is empty, either {@code 403} or {@code 429}.
+     */
+    public MockRateLimit(int limit, Duration window, int exhaustedStatus) {
+        if (limit <= 0 || window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("Rate limit must allow at least one request per non-empty window");
+        }
+        if (exhaustedStatus != HttpURLConnection.HTTP_FORBIDDEN && exhaustedStatus != 429) {
+            throw new IllegalArgumentException("Exhausted status must be 403 or 429: " + exhaustedStatus);
+        }
+        this.limit = limit;
+        this.windowMillis = window.toMillis();
+        this.exhaustedStatus = exhaustedStatus;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getExhaustedStatus() {
+        return exhaustedStatus;
+    }
+
+    /**
+     * Returns the number of requests that were allowed through.
+     *
+     * @return the number of accepted requests.
+     */
+    public long getAccepted() {
+        return accepted.get();
+    }
+
+    /**
+     * Returns the number of requests that were refused because their bucket was empty.
+     *
+     * @return the number of rejected requests.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Takes a token from the bucket of the supplied authorization.
+     *
+     * @param authorization the {@code Authorization} header of the request or {@code null} if anonymous.
+     * @return the state of the bucket after the request.
+     */
+    public Snapshot consume(String authorization) {
+        Snapshot result = bucket(authorization).take(System.currentTimeMillis(), true);
+        (result.isAllowed() ? accepted : rejected).incrementAndGet();
+        return result;
+    }
+
+    /**
+     * Returns the state of the bucket of the supplied authorization without taking a token.
+     *
+     * @param authorization the {@code Authorization} header of the request or {@code null} if anonymous.
+     * @return the state of the bucket.
+     */
+    public Snapshot peek(String authorization) {
+        return bucket(authorization).take(System.currentTimeMillis(), false);
+    }
+
+    private Bucket bucket(String authorization) {
+        return buckets.computeIfAbsent(authorization == null ? "" : authorization, k -> new Bucket());
+    }
+
+    private class Bucket {
+        private double tokens = limit;
+        private long refilled = System.currentTimeMillis();
+
+        synchronized Snapshot take(long now, boolean consume) {
+            tokens = Math.min(limit, tokens + (double) (now - refilled) * limit / windowMillis);
+            refilled = now;
+            boolean allowed = tokens >= 1.0;
+            if (consume && allowed) {
+                tokens -= 1.0;
+            }
+            int remaining = (int) tokens;
+            long untilFull = (long) Math.ceil((limit - tokens) * windowMillis / limit);
+            long untilNext = tokens >= 1.0 ? 0 : (long) Math.ceil((1.0 - tokens) * windowMillis / limit);
+            return new Snapshot(
+                    !consume || allowed,
+                    remaining,
+                    limit - remaining,
+                    (now + untilFull + 999) / 1000,
+                    (untilNext + 999) / 1000);
+        }
+    }
+
+    /**
+     * The state of a bucket.
+     */
+    public static final class Snapshot {
+        private final boolean allowed;
+        private final int remaining;
+        private final int used;
+        private final long reset;
+        private final long retryAfter;
+
+        Snapshot(boolean allowed, int remaining, int used, long reset, long retryAfter) {
+            this.allowed = allowed;
+            this.remaining = remaining;
+            this.used = used;
+            this.reset = reset;
+            this.retryAfter = retryAfter;
+        }
+
+        public boolean isAllowed() {
+            return allowed;
+        }
+
+        public int getRemaining() {
+            return remaining;
+        }
+
+        public int getUsed() {
+            return used;
+        }
+
+        /**
+         * Returns when the bucket will be full again.
+         *
+         * @return the epoch second at which the bucket is full again.
+         */
+        public long getReset() {
+            return reset;
+        }
+
+        /**
+         * Returns how long until the next token is available.
+         *
+         * @return the number of seconds until the next token is available.
+         */
+        public long getRetryAfter() {
+            return retryAfter;
+        }
+    }
+}
@@ -1,16 +1,50 @@
 package jenkins.plugins.github.api.mock;
 
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MockRepository extends MockObject {
     private final MockOwner<?> owner;
     private final String name;
-    private String description;
-    private boolean _private;
-    private boolean fork;
-    private String homepage;
-    private String language;
-    private Set<String> topics;
+    private volatile String description;
+    private volatile boolean _private;
+    private volatile boolean fork;
+    private volatile String homepage;
+    private volatile String language;
+    private volatile Set<String> topics;
+    private volatile String defaultBranch = "main";
+    private volatile MockFileTree files = MockFileTree.empty();
+    private final List<MockHook> hooks = new CopyOnWriteArrayList<>();
+    /**
+     * The branches other than an implicit default branch, see {@link #branchList()}.
+     */
+    private final MockPagedIndex<String, MockBranch> branches = new MockPagedIndex<>(Comparator.naturalOrder());
+    private final MockPagedIndex<Integer, MockPullRequest> pullRequests =
+            new MockPagedIndex<>(Comparator.naturalOrder());
+    /**
+     * The open and the closed pull requests, so that listing either does not filter the other.
+     */
+    private final MockPagedIndex<Integer, MockPullRequest> openPullRequests =
+            new MockPagedIndex<>(Comparator.naturalOrder());
+    private final MockPagedIndex<Integer, MockPullRequest> closedPullRequests =
+            new MockPagedIndex<>(Comparator.naturalOrder());
+    private final AtomicInteger nextNumber = new AtomicInteger();
+    /**
+     * The commit statuses keyed by commit, newest first.
+     */
+    private final Map<String, MockPagedIndex<Long, MockStatus>> statuses = new ConcurrentHashMap<>();
 
     public MockRepository(MockGitHub app, MockOwner<?> owner, String name) {
         super(app);
@@ -18,6 +52,12 @@ public class MockRepository extends MockObject {
         this.name = name;
     }
 
+    MockRepository(MockGitHub app, long id, MockOwner<?> owner, String name, long created) {
+        super(app, id, created);
+        this.owner = owner;
+        this.name = name;
+    }
+
     public MockOwner<?> owner() {
         return owner;
     }
@@ -41,11 +81,39 @@ public class MockRepository extends MockObject {
     }
 
     public MockRepository withPrivate(boolean _private) {
+        boolean changed = this._private != _private;
         this._private = _private;
-        touch();
+        // a change of visibility is not a push
+        super.touch();
+        if (isAttached()) {
+            // the owner's public_repos count has changed
+            owner.touch();
+            app().reindex(this);
+            if (changed) {
+                app().getWebhooks().repository(this, _private ? "privatized" : "publicized");
+            }
+        }
         return this;
     }
 
+    /**
+     * Records a change of this repository and, once it is attached to its owner, reindexes it for search and emits a
+     * {@code push} event for it.
+     */
+    @Override
+    public void touch() {
+        long before = getUpdated();
+        super.touch();
+        if (isAttached()) {
+            app().search().update(this);
+            app().getWebhooks().push(this, before, getUpdated());
+        }
+    }
+
+    private boolean isAttached() {
+        return owner.repositories().get(name) == this;
+    }
+
     public boolean isFork() {
         return fork;
     }
@@ -85,4 +153,299 @@ public class MockRepository extends MockObject {
         touch();
         return this;
     }
+
+    public String getDefaultBranch() {
+        return defaultBranch;
+    }
+
+    public MockRepository withDefaultBranch(String defaultBranch) {
+        this.defaultBranch = defaultBranch;
+        touch();
+        return this;
+    }
+
+    public MockFileTree getFiles() {
+        return files;
+    }
+
+    /**
+     * Replaces the files of the default branch, which counts as a push. The tree should not be changed once set.
+     *
+     * @param files the files, e.g. {@code MockFileTree.synthetic(seed, 100_000).withFile("Jenkinsfile", "...")}.
+     * @return {@code this} for method chaining.
+     */
+    public MockRepository withFiles(MockFileTree files) {
+        this.files = files;
+        touch();
+        return this;
+    }
+
+    /**
+     * Returns a branch. Unless it was replaced with {@link #withBranch(String, String)}, the default branch exists
+     * implicitly and points at the commit of the last push, see {@link #touch()}.
+     *
+     * @param name the name of the branch.
+     * @return the branch or {@code null} if there is no such branch.
+     */
+    public MockBranch getBranch(String name) {
+        MockBranch branch = branches.get(name);
+        return branch == null && name.equals(defaultBranch) ? implicitDefaultBranch() : branch;
+    }
+
+    /**
+     * Returns the explicitly created branches.
+     *
+     * @return the branches keyed by name.
+     */
+    public NavigableMap<String, MockBranch> branches() {
+        return branches.map();
+    }
+
+    /**
+     * Returns every branch including the implicit default branch, in name order.
+     *
+     * @return an immutable list that supports lookups by position.
+     */
+    List<MockBranch> branchList() {
+        List<MockBranch> explicit = branches.list();
+        String name = defaultBranch;
+        if (branches.get(name) != null) {
+            return explicit;
+        }
+        MockBranch implicit = implicitDefaultBranch();
+        int index = -Collections.binarySearch(explicit, implicit, Comparator.comparing(MockBranch::getName)) - 1;
+        return new AbstractList<>() {
+            @Override
+            public MockBranch get(int i) {
+                return i < index ? explicit.get(i) : i == index ? implicit : explicit.get(i - 1);
+            }
+
+            @Override
+            public int size() {
+                return explicit.size() + 1;
+            }
+        };
+    }
+
+    private MockBranch implicitDefaultBranch() {
+        return new MockBranch(defaultBranch, MockWebhooks.sha(this, getUpdated()), false);
+    }
+
+    /**
+     * Creates or moves a branch to a new synthetic commit.
+     *
+     * @param name the name of the branch.
+     * @return {@code this} for method chaining.
+     */
+    public MockRepository withBranch(String name) {
+        return withBranch(name, sha(name + ":" + branches.getVersion()));
+    }
+
+    /**
+     * Creates or moves a branch.
+     *
+     * @param name the name of the branch.
+     * @param sha  the SHA-1 of the commit the branch points at.
+     * @return {@code this} for method chaining.
+     */
+    public MockRepository withBranch(String name, String sha) {
+        MockBranch previous = branches.get(name);
+        branches.put(name, new MockBranch(name, sha, previous != null && previous.isProtected()));
+        return this;
+    }
+
+    public MockRepository withProtectedBranch(String name, boolean _protected) {
+        MockBranch branch = getBranch(name);
+        if (branch == null) {
+            throw new IllegalArgumentException("No branch " + name);
+        }
+        branches.put(name, new MockBranch(name, branch.getSha(), _protected));
+        return this;
+    }
+
+    public MockRepository withoutBranch(String name) {
+        branches.remove(name);
+        return this;
+    }
+
+    /**
+     * Returns a counter that changes whenever a branch is created, moved or deleted.
+     *
+     * @return the version of the branches.
+     */
+    long getBranchVersion() {
+        return branches.getVersion();
+    }
+
+    /**
+     * Opens a pull request from a branch of this repository.
+     *
+     * @param head  the name of the head branch.
+     * @param base  the name of the base branch.
+     * @param title the title.
+     * @return {@code this} for method chaining.
+     */
+    public MockRepository withPullRequest(String head, String base, String title) {
+        return withPullRequest(this, head, base, title, null);
+    }
+
+    /**
+     * Opens a pull request.
+     *
+     * @param headRepository the repository of the head branch, e.g. a fork.
+     * @param head           the name of the head branch.
+     * @param base           the name of the base branch.
+     * @param title          the title.
+     * @param user           the author or {@code null} for the owner.
+     * @return {@code this} for method chaining.
+     */
+    public MockRepository withPullRequest(
+            MockRepository headRepository, String head, String base, String title, MockUser user) {
+        int number = nextNumber.incrementAndGet();
+        MockPullRequest pullRequest = new MockPullRequest(this, number, headRepository, head, base, user, title);
+        pullRequests.put(number, pullRequest);
+        openPullRequests.put(number, pullRequest);
+        return this;
+    }
+
+    public MockPullRequest getPullRequest(int number) {
+        return pullRequests.get(number);
+    }
+
+    /**
+     * Returns the pull requests.
+     *
+     * @return the pull requests keyed by number.
+     */
+    public NavigableMap<Integer, MockPullRequest> pullRequests() {
+        return pullRequests.map();
+    }
+
+    /**
+     * Returns pull requests in number order.
+     *
+     * @param state {@code open}, {@code closed} or {@code all}.
+     * @return an immutable list that supports lookups by position.
+     */
+    List<MockPullRequest> pullRequestList(String state) {
+        switch (state) {
+            case "open":
+                return openPullRequests.list();
+            case "closed":
+                return closedPullRequests.list();
+            default:
+                return pullRequests.list();
+        }
+    }
+
+    /**
+     * Returns a counter that changes whenever a pull request is opened, closed or changed.
+     *
+     * @return the version of the pull requests.
+     */
+    long getPullRequestVersion() {
+        return pullRequests.getVersion();
+    }
+
+    void pullRequestStateChanged(MockPullRequest pullRequest) {
+        if (pullRequest.isOpen()) {
+            closedPullRequests.remove(pullRequest.getNumber());
+            openPullRequests.put(pullRequest.getNumber(), pullRequest);
+        } else {
+            openPullRequests.remove(pullRequest.getNumber());
+            closedPullRequests.put(pullRequest.getNumber(), pullRequest);
+        }
+    }
+
+    void pullRequestChanged() {
+        pullRequests.changed();
+        openPullRequests.changed();
+        closedPullRequests.changed();
+    }
+
+    /**
+     * Posts a commit status.
+     *
+     * @param sha         the SHA-1 of the commit.
+     * @param state       {@code error}, {@code failure}, {@code pending} or {@code success}.
+     * @param targetUrl   the URL of the details or {@code null}.
+     * @param description the description or {@code null}.
+     * @param context     the context, {@code default} if {@code null}.
+     * @param creator     the user posting the status or {@code null} for an app installation.
+     * @return the status.
+     */
+    public MockStatus withStatus(
+            String sha, String state, String targetUrl, String description, String context, MockUser creator) {
+        MockStatus status = new MockStatus(
+                app().nextId(),
+                sha,
+                state,
+                targetUrl,
+                description,
+                context == null ? "default" : context,
+                creator,
+                System.currentTimeMillis());
+        statuses.computeIfAbsent(sha, k -> new MockPagedIndex<>(Comparator.reverseOrder()))
+                .put(status.getId(), status);
+        return status;
+    }
+
+    /**
+     * Returns the statuses of a commit.
+     *
+     * @param sha the SHA-1 of the commit.
+     * @return the statuses, newest first.
+     */
+    public List<MockStatus> getStatuses(String sha) {
+        MockPagedIndex<Long, MockStatus> index = statuses.get(sha);
+        return index == null ? List.of() : index.list();
+    }
+
+    /**
+     * Returns a counter that changes whenever a status is posted for a commit.
+     *
+     * @param sha the SHA-1 of the commit.
+     * @return the version of the statuses of the commit.
+     */
+    long getStatusVersion(String sha) {
+        MockPagedIndex<Long, MockStatus> index = statuses.get(sha);
+        return index == null ? 0 : index.getVersion();
+    }
+
+    private String sha(String seed) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return HexFormat.of().formatHex(digest.digest((getId() + ":" + seed).getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-1 is a mandatory JCA algorithm", e);
+        }
+    }
+
+    public List<MockHook> getHooks() {
+        return Collections.unmodifiableList(hooks);
+    }
+
+    /**
+     * Registers a webhook that receives every event, see {@link MockWebhooks}.
+     *
+     * @param url    the URL to post the events to.
+     * @param secret the secret to sign the deliveries with or {@code null} to leave them unsigned.
+     * @return {@code this} for method chaining.
+     */
+    public MockRepository withHook(String url, String secret) {
+        return withHook(url, secret, Set.of("*"));
+    }
+
+    /**
+     * Registers a webhook, see {@link MockWebhooks}.
+     *
+     * @param url    the URL to post the events to.
+     * @param secret the secret to sign the deliveries with or {@code null} to leave them unsigned.
+     * @param events the events to deliver, {@code *} for every event.
+     * @return {@code this} for method chaining.
+     */
+    public MockRepository withHook(String url, String secret, Set<String> events) {
+        hooks.add(new MockHook(app().getWebhooks().nextHookId(), url, secret, events));
+        return this;
+    }
 }
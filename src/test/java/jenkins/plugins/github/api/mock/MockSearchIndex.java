@@ -0,0 +1,482 @@
+package jenkins.plugins.github.api.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Pattern;
+
+/**
+ * An inverted index of the repositories and owners of a {@link MockGitHub} that answers {@code /search/repositories}
+ * and {@code /search/users}. Every object is indexed under the words of its text fields and under its qualifiers, e.g.
+ * {@code language:java}. Postings are bitsets of ids, so a query intersects and counts the postings of its terms a word
+ * at a time over the chunks of its smallest term, and a query of a single term is counted without visiting its
+ * postings beyond the requested page.
+ * <p>
+ * Objects are reindexed as they change, by diffing their previous terms against their current ones. Public
+ * repositories, public forks and owners are indexed in separate namespaces, because forks are only searched on
+ * request. Private repositories and forks are indexed in namespaces of their owner, as only their owner may find them,
+ * and are searched with the same postings when their owner is the authenticated user.
+ * <p>
+ * Results are in id order; relevance ranking and the {@code sort} parameter are not modelled.
+ */
+final class MockSearchIndex {
+    /**
+     * GitHub serves only the first 1000 results of a search.
+     */
+    static final int MAX_RESULTS = 1000;
+
+    private static final String REPOSITORY = "R";
+    private static final String FORK = "F";
+    private static final String PRIVATE = "P";
+    private static final String PRIVATE_FORK = "Q";
+    private static final String OWNER = "O";
+    private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Set<String> REPOSITORY_FIELDS = Set.of("name", "description", "topics");
+    private static final Set<String> OWNER_FIELDS = Set.of("login", "name", "email");
+    private static final Set<String> REPOSITORY_QUALIFIERS =
+            Set.of("language", "topic", "user", "org", "repo", "is", "fork");
+
+    private final Map<String, Posting> postings = new ConcurrentHashMap<>();
+    /**
+     * The terms each object is currently indexed under, keyed by id and prefixed by the namespace.
+     */
+    private final Map<Long, Set<String>> indexed = new ConcurrentHashMap<>();
+    private final Map<Long, MockObject> objects = new ConcurrentHashMap<>();
+
+    void update(MockRepository repo) {
+        String namespace = repo.isPrivate()
+                ? namespace(repo.isFork() ? PRIVATE_FORK : PRIVATE, repo.owner())
+                : repo.isFork() ? FORK : REPOSITORY;
+        Set<String> terms = new HashSet<>();
+        terms.add(namespace);
+        text(terms, namespace, "name", repo.getName());
+        text(terms, namespace, "description", repo.getDescription());
+        if (repo.getTopics() != null) {
+            for (String topic : repo.getTopics()) {
+                terms.add(namespace + "topic:" + topic.toLowerCase(Locale.ROOT));
+                text(terms, namespace, "topics", topic);
+            }
+        }
+        if (repo.getLanguage() != null) {
+            terms.add(namespace + "language:" + repo.getLanguage().toLowerCase(Locale.ROOT));
+        }
+        String login = repo.owner().getLogin().toLowerCase(Locale.ROOT);
+        terms.add(namespace + (repo.owner() instanceof MockOrganization ? "org:" : "user:") + login);
+        terms.add(namespace + "repo:" + login + "/" + repo.getName().toLowerCase(Locale.ROOT));
+        terms.add(namespace + (repo.isPrivate() ? "is:private" : "is:public"));
+        apply(repo, terms);
+    }
+
+    void update(MockOwner<?> owner) {
+        Set<String> terms = new HashSet<>();
+        terms.add(OWNER);
+        text(terms, OWNER, "login", owner.getLogin());
+        text(terms, OWNER, "name", owner.getName());
+        text(terms, OWNER, "email", owner.getEmail());
+        terms.add(OWNER + "type:" + owner.getType().toLowerCase(Locale.ROOT));
+        apply(owner, terms);
+    }
+
+    void remove(MockObject object) {
+        indexed.computeIfPresent(object.getId(), (id, previous) -> {
+            for (String term : previous) {
+                unpost(term, object);
+            }
+            objects.remove(id, object);
+            return null;
+        });
+    }
+
+    private void apply(MockObject object, Set<String> terms) {
+        // compute() serializes the updates of each object while other objects are updated concurrently
+        indexed.compute(object.getId(), (id, previous) -> {
+            // the postings hold ids only, so the object must be resolvable before it is posted
+            objects.put(id, object);
+            if (terms.equals(previous)) {
+                return previous;
+            }
+            if (previous != null) {
+                for (String term : previous) {
+                    if (!terms.contains(term)) {
+                        unpost(term, object);
+                    }
+                }
+            }
+            for (String term : terms) {
+                if (previous == null || !previous.contains(term)) {
+                    post(term, object);
+                }
+            }
+            return Collections.unmodifiableSet(terms);
+        });
+    }
+
+    /**
+     * Returns the namespace of the private repositories or forks of an owner.
+     */
+    private static String namespace(String kind, MockOwner<?> owner) {
+        // ids are digits, so the namespace ends at the first slash
+        return kind + owner.getId() + "/";
+    }
+
+    private void post(String term, MockObject object) {
+        postings.computeIfAbsent(term, t -> new Posting()).add(object.getId());
+    }
+
+    private void unpost(String term, MockObject object) {
+        Posting posting = postings.get(term);
+        if (posting != null) {
+            posting.remove(object.getId());
+        }
+    }
+
+    /**
+     * Adds a text field under both its words, which match unqualified queries, and its field qualified words, which
+     * match queries with an {@code in:} qualifier.
+     */
+    private static void text(Set<String> terms, String namespace, String field, String value) {
+        for (String word : words(value)) {
+            terms.add(namespace + word);
+            terms.add(namespace + field + "/" + word);
+        }
+    }
+
+    private static List<String> words(String value) {
+        List<String> result = new ArrayList<>();
+        if (value != null) {
+            for (String word : SEPARATOR.split(value.toLowerCase(Locale.ROOT))) {
+                if (!word.isEmpty()) {
+                    result.add(word);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Searches the repositories.
+     *
+     * @param q      the query, e.g. {@code jenkins in:name org:jenkinsci language:java}.
+     * @param viewer the authenticated user, whose private repositories are searched too, or {@code null}.
+     * @param limit  the number of matches to return at most.
+     * @return the number of matches and the first matches in id order.
+     */
+    Result<MockRepository> repositories(String q, MockUser viewer, int limit) {
+        Query query = Query.parse(q, REPOSITORY_FIELDS, REPOSITORY_QUALIFIERS);
+        List<String> namespaces = new ArrayList<>(4);
+        if (!"only".equals(query.fork)) {
+            namespaces.add(REPOSITORY);
+            if (viewer != null) {
+                namespaces.add(namespace(PRIVATE, viewer));
+            }
+        }
+        if ("true".equals(query.fork) || "only".equals(query.fork)) {
+            namespaces.add(FORK);
+            if (viewer != null) {
+                namespaces.add(namespace(PRIVATE_FORK, viewer));
+            }
+        }
+        List<MockObject> items = new ArrayList<>();
+        int total = 0;
+        for (String namespace : namespaces) {
+            // each namespace contributes its first matches, the first of all of them are picked below
+            List<MockObject> found = new ArrayList<>();
+            total += evaluate(namespace, query, limit, found);
+            items.addAll(found);
+        }
+        items.sort(Comparator.comparingLong(MockObject::getId));
+        List<MockRepository> result = new ArrayList<>(Math.min(limit, items.size()));
+        for (int i = 0; i < items.size() && result.size() < limit; i++) {
+            result.add((MockRepository) items.get(i));
+        }
+        return new Result<>(total, result);
+    }
+
+    /**
+     * Searches the users and organizations.
+     *
+     * @param q     the query, e.g. {@code jenkins in:login type:org}.
+     * @param limit the number of matches to return at most.
+     * @return the number of matches and the first matches in id order.
+     */
+    Result<MockOwner<?>> owners(String q, int limit) {
+        Query query = Query.parse(q, OWNER_FIELDS, Set.of("type"));
+        List<MockObject> items = new ArrayList<>();
+        int total = evaluate(OWNER, query, limit, items);
+        List<MockOwner<?>> result = new ArrayList<>(items.size());
+        for (MockObject item : items) {
+            result.add((MockOwner<?>) item);
+        }
+        return new Result<>(total, result);
+    }
+
+    /**
+     * Evaluates a query against the postings of a namespace.
+     *
+     * @return the number of matches, of which the first {@code limit} in id order are added to {@code items}.
+     */
+    private int evaluate(String namespace, Query query, int limit, List<MockObject> items) {
+        List<Posting[]> requirements = new ArrayList<>();
+        for (List<String> alternatives : query.required) {
+            List<Posting> found = new ArrayList<>(alternatives.size());
+            for (String term : alternatives) {
+                Posting posting = postings.get(namespace + term);
+                if (posting != null && posting.count.get() > 0) {
+                    found.add(posting);
+                }
+            }
+            if (found.isEmpty()) {
+                return 0;
+            }
+            requirements.add(found.toArray(new Posting[0]));
+        }
+        if (requirements.isEmpty()) {
+            Posting all = postings.get(namespace);
+            if (all == null) {
+                return 0;
+            }
+            requirements.add(new Posting[] {all});
+        }
+        List<Posting> excluded = new ArrayList<>();
+        for (String term : query.excluded) {
+            Posting posting = postings.get(namespace + term);
+            if (posting != null) {
+                excluded.add(posting);
+            }
+        }
+        Posting[] driver = requirements.get(0);
+        for (Posting[] requirement : requirements) {
+            if (size(requirement) < size(driver)) {
+                driver = requirement;
+            }
+        }
+        boolean single = requirements.size() == 1 && driver.length == 1 && excluded.isEmpty();
+        Set<Long> keys = new HashSet<>();
+        for (Posting posting : driver) {
+            keys.addAll(posting.chunks.keySet());
+        }
+        long[] chunks = new long[keys.size()];
+        int n = 0;
+        for (long key : keys) {
+            chunks[n++] = key;
+        }
+        Arrays.sort(chunks);
+        int count = 0;
+        AtomicLongArray[][] required = new AtomicLongArray[requirements.size()][];
+        AtomicLongArray[] exclusions = new AtomicLongArray[excluded.size()];
+        for (long chunk : chunks) {
+            if (single && items.size() >= limit) {
+                break;
+            }
+            for (int r = 0; r < required.length; r++) {
+                required[r] = chunks(requirements.get(r), chunk);
+            }
+            for (int x = 0; x < exclusions.length; x++) {
+                exclusions[x] = excluded.get(x).chunks.get(chunk);
+            }
+            for (int i = 0; i < Posting.WORDS; i++) {
+                long bits = -1L;
+                for (AtomicLongArray[] requirement : required) {
+                    long any = 0;
+                    for (AtomicLongArray words : requirement) {
+                        any |= words == null ? 0 : words.get(i);
+                    }
+                    bits &= any;
+                }
+                for (AtomicLongArray words : exclusions) {
+                    bits &= words == null ? -1L : ~words.get(i);
+                }
+                count += Long.bitCount(bits);
+                while (bits != 0 && items.size() < limit) {
+                    long id = chunk << Posting.SHIFT | i << 6 | Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    MockObject object = objects.get(id);
+                    if (object != null) {
+                        items.add(object);
+                    }
+                }
+            }
+        }
+        // counting a single term needs no intersection, so stop at the requested page
+        return single ? driver[0].count.get() : count;
+    }
+
+    private static AtomicLongArray[] chunks(Posting[] alternatives, long chunk) {
+        AtomicLongArray[] result = new AtomicLongArray[alternatives.length];
+        for (int i = 0; i < alternatives.length; i++) {
+            result[i] = alternatives[i].chunks.get(chunk);
+        }
+        return result;
+    }
+
+    private static int size(Posting[] alternatives) {
+        int size = 0;
+        for (Posting posting : alternatives) {
+            size += posting.count.get();
+        }
+        return size;
+    }
+
+    /**
+     * The ids indexed under a term, as a bitset in chunks of 256 ids, so that queries intersect and count 64 ids at a
+     * time and updates only flip a bit.
+     */
+    private static final class Posting {
+        private static final int SHIFT = 8;
+        private static final int WORDS = 1 << SHIFT >> 6;
+        private final Map<Long, AtomicLongArray> chunks = new ConcurrentHashMap<>();
+        private final AtomicInteger count = new AtomicInteger();
+
+        void add(long id) {
+            AtomicLongArray words = chunks.computeIfAbsent(id >>> SHIFT, k -> new AtomicLongArray(WORDS));
+            long bit = 1L << id;
+            int i = (int) (id >>> 6) & (WORDS - 1);
+            if ((words.getAndAccumulate(i, bit, (a, b) -> a | b) & bit) == 0) {
+                count.incrementAndGet();
+            }
+        }
+
+        void remove(long id) {
+            AtomicLongArray words = chunks.get(id >>> SHIFT);
+            long bit = 1L << id;
+            int i = (int) (id >>> 6) & (WORDS - 1);
+            if (words != null && (words.getAndAccumulate(i, bit, (a, b) -> a & ~b) & bit) != 0) {
+                count.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * A parsed search query: words, which match the text fields or the fields named by {@code in:}, qualifiers, which
+     * match exactly, and exclusions prefixed by {@code -}.
+     */
+    private static final class Query {
+        /**
+         * The terms that must match, each given as alternatives of which one must match.
+         */
+        private final List<List<String>> required = new ArrayList<>();
+        private final List<String> excluded = new ArrayList<>();
+        /**
+         * Whether forks are searched: {@code false}, the default, {@code true} or {@code only}.
+         */
+        private String fork = "false";
+
+        static Query parse(String q, Set<String> fields, Set<String> qualifiers) {
+            Query query = new Query();
+            List<String> words = new ArrayList<>();
+            List<String> excludedWords = new ArrayList<>();
+            Set<String> in = new HashSet<>();
+            for (String token : tokens(q)) {
+                boolean negated = token.length() > 1 && token.startsWith("-");
+                String body = negated ? token.substring(1) : token;
+                int colon = body.indexOf(':');
+                String key = colon > 0 ? body.substring(0, colon).toLowerCase(Locale.ROOT) : null;
+                String value = colon > 0 ? unquote(body.substring(colon + 1)).toLowerCase(Locale.ROOT) : null;
+                if (key == null) {
+                    (negated ? excludedWords : words).addAll(words(unquote(body)));
+                } else if (key.equals("in")) {
+                    for (String field : value.split(",")) {
+                        if (fields.contains(field.trim())) {
+                            in.add(field.trim());
+                        }
+                    }
+                } else if (key.equals("fork") && qualifiers.contains("fork")) {
+                    query.fork = value;
+                } else if (key.equals("type") && qualifiers.contains("type")) {
+                    // GitHub calls organizations org in the qualifier but Organization in the type field
+                    String type = value.startsWith("org") ? "organization" : value;
+                    (negated ? query.excluded : query.requiredTerm()).add("type:" + type);
+                } else if (qualifiers.contains(key)) {
+                    (negated ? query.excluded : query.requiredTerm()).add(key + ":" + value);
+                }
+                // qualifiers of state that is not modelled, such as stars:, are ignored
+            }
+            for (String word : words) {
+                List<String> alternatives = query.requiredTerm();
+                if (in.isEmpty()) {
+                    alternatives.add(word);
+                } else {
+                    for (String field : in) {
+                        alternatives.add(field + "/" + word);
+                    }
+                }
+            }
+            query.excluded.addAll(excludedWords);
+            return query;
+        }
+
+        private List<String> requiredTerm() {
+            List<String> alternatives = new ArrayList<>(1);
+            required.add(alternatives);
+            return alternatives;
+        }
+
+        /**
+         * Splits a query on whitespace outside of double quotes.
+         */
+        private static List<String> tokens(String q) {
+            List<String> result = new ArrayList<>();
+            StringBuilder token = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < q.length(); i++) {
+                char c = q.charAt(i);
+                if (c == '"') {
+                    quoted = !quoted;
+                    token.append(c);
+                } else if (Character.isWhitespace(c) && !quoted) {
+                    if (token.length() > 0) {
+                        result.add(token.toString());
+                        token.setLength(0);
+                    }
+                } else {
+                    token.append(c);
+                }
+            }
+            if (token.length() > 0) {
+                result.add(token.toString());
+            }
+            return result;
+        }
+
+        private static String unquote(String value) {
+            return value.replace("\"", "");
+        }
+    }
+
+    /**
+     * The outcome of a search.
+     *
+     * @param <T> the type of the matches.
+     */
+    static final class Result<T> {
+        private final int total;
+        private final List<T> items;
+
+        Result(int total, List<T> items) {
+            this.total = total;
+            this.items = items;
+        }
+
+        int getTotal() {
+            return total;
+        }
+
+        /**
+         * Returns the first matches.
+         *
+         * @return the first matches in id order.
+         */
+        List<T> getItems() {
+            return items;
+        }
+    }
+}
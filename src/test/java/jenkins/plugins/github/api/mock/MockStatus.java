@@ -0,0 +1,76 @@
+package jenkins.plugins.github.api.mock;
+
+/**
+ * A commit status posted to a {@link MockRepository}.
+ */
+public final class MockStatus {
+    private final long id;
+    private final String sha;
+    private final String state;
+    private final String targetUrl;
+    private final String description;
+    private final String context;
+    private final MockUser creator;
+    private final long created;
+
+    MockStatus(
+            long id,
+            String sha,
+            String state,
+            String targetUrl,
+            String description,
+            String context,
+            MockUser creator,
+            long created) {
+        this.id = id;
+        this.sha = sha;
+        this.state = state;
+        this.targetUrl = targetUrl;
+        this.description = description;
+        this.context = context;
+        this.creator = creator;
+        this.created = created;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getSha() {
+        return sha;
+    }
+
+    /**
+     * Returns the state.
+     *
+     * @return one of {@code error}, {@code failure}, {@code pending} or {@code success}.
+     */
+    public String getState() {
+        return state;
+    }
+
+    public String getTargetUrl() {
+        return targetUrl;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getContext() {
+        return context;
+    }
+
+    /**
+     * Returns the user that posted the status.
+     *
+     * @return the user or {@code null} if it was posted by an app installation.
+     */
+    public MockUser getCreator() {
+        return creator;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+}
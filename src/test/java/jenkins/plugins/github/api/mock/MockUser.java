@@ -1,21 +1,23 @@
 package jenkins.plugins.github.api.mock;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MockUser extends MockOwner<MockUser> {
-    private Set<String> organizations = new HashSet<>();
-    private boolean siteAdmin;
-    private String company;
-    private boolean hireable;
-    private String bio;
+    private Set<String> organizations = ConcurrentHashMap.newKeySet();
+    private volatile boolean siteAdmin;
+    private volatile String company;
+    private volatile boolean hireable;
+    private volatile String bio;
 
     MockUser(MockGitHub app, String login) {
         super(app, login);
     }
 
+    MockUser(MockGitHub app, long id, String login, long created) {
+        super(app, id, login, created);
+    }
+
     public boolean isSiteAdmin() {
         return siteAdmin;
     }
@@ -0,0 +1,438 @@
+package jenkins.plugins.github.api.mock;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Delivers the webhook events of a {@link MockGitHub}. Mutations enqueue events, a dispatcher thread drains the queue
+ * in batches and posts each delivery asynchronously, with at most {@link #withConcurrency(int)} deliveries in flight.
+ * Deliveries are signed like GitHub's with {@code X-Hub-Signature-256} (and the legacy {@code X-Hub-Signature}) when
+ * the hook has a secret. The events are:
+ * <ul>
+ *     <li>{@code repository} with action {@code created} when {@link MockOwner#withRepo(String, boolean)} adds a
+ *     repository and {@code privatized} or {@code publicized} on {@link MockRepository#withPrivate(boolean)}</li>
+ *     <li>{@code push} to the default branch on {@link MockRepository#touch()}, which every other change of a
+ *     repository implies</li>
+ * </ul>
+ */
+public final class MockWebhooks {
+    private final MockGitHub github;
+    private final AtomicLong nextHookId = new AtomicLong();
+    private final BlockingQueue<Delivery> queue = new LinkedBlockingQueue<>();
+    private final Queue<Delivery> log = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile int concurrency = 8;
+    private volatile int batchSize = 100;
+    private volatile Duration timeout = Duration.ofSeconds(10);
+    private HttpClient client;
+    private ExecutorService dispatcher;
+    private boolean closed;
+
+    MockWebhooks(MockGitHub github) {
+        this.github = github;
+    }
+
+    /**
+     * Sets how many deliveries may be in flight at once. Must be called before the first event.
+     *
+     * @param concurrency the maximum number of concurrent deliveries.
+     * @return {@code this} for method chaining.
+     */
+    public MockWebhooks withConcurrency(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+        }
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Sets how many queued deliveries the dispatcher takes at a time.
+     *
+     * @param batchSize the maximum number of deliveries per batch.
+     * @return {@code this} for method chaining.
+     */
+    public MockWebhooks withBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets how long a receiver may take to answer a delivery before it is logged as failed.
+     *
+     * @param timeout the timeout.
+     * @return {@code this} for method chaining.
+     */
+    public MockWebhooks withTimeout(Duration timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Returns every delivery attempted so far, oldest first.
+     *
+     * @return the delivery log.
+     */
+    public List<Delivery> getDeliveries() {
+        return new ArrayList<>(log);
+    }
+
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Returns the number of events that are queued or in flight.
+     *
+     * @return the number of pending deliveries.
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * Waits until every event emitted so far has been delivered or has failed.
+     *
+     * @param timeout how long to wait.
+     * @return {@code true} if no deliveries are pending.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (pending) {
+            while (pending.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(pending, remaining);
+            }
+        }
+        return true;
+    }
+
+    long nextHookId() {
+        return nextHookId.incrementAndGet();
+    }
+
+    void repository(MockRepository repo, String action) {
+        List<MockHook> hooks = hooks(repo, "repository");
+        if (hooks.isEmpty()) {
+            return;
+        }
+        enqueue(hooks, "repository", action, o -> {
+            o.writeStartObject();
+            o.writeStringField("action", action);
+            writeCommon(o, repo);
+            o.writeEndObject();
+        });
+    }
+
+    void push(MockRepository repo, long before, long after) {
+        List<MockHook> hooks = hooks(repo, "push");
+        if (hooks.isEmpty()) {
+            return;
+        }
+        enqueue(hooks, "push", null, o -> {
+            o.writeStartObject();
+            o.writeStringField("ref", "refs/heads/" + repo.getDefaultBranch());
+            o.writeStringField("before", sha(repo, before));
+            o.writeStringField("after", sha(repo, after));
+            o.writeBooleanField("created", false);
+            o.writeBooleanField("deleted", false);
+            o.writeBooleanField("forced", false);
+            o.writeArrayFieldStart("commits");
+            o.writeEndArray();
+            o.writeObjectFieldStart("pusher");
+            o.writeStringField("name", repo.owner().getLogin());
+            o.writeEndObject();
+            writeCommon(o, repo);
+            o.writeEndObject();
+        });
+    }
+
+    /**
+     * Returns the synthetic commit that a repository's default branch pointed at when it was updated.
+     */
+    static String sha(MockRepository repo, long updated) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return HexFormat.of().formatHex(digest.digest(
+                    (repo.getId() + ":" + updated).getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-1 is a mandatory JCA algorithm", e);
+        }
+    }
+
+    private void writeCommon(JsonGenerator o, MockRepository repo) throws IOException {
+        o.writeFieldName("repository");
+        MockGitHub.writeRepositorySummary(o, repo);
+        if (repo.owner() instanceof MockOrganization) {
+            o.writeFieldName("organization");
+            MockGitHub.writeOwnerSummary(o, github, repo.owner());
+        }
+        o.writeFieldName("sender");
+        MockGitHub.writeOwnerSummary(o, github, repo.owner());
+    }
+
+    private static List<MockHook> hooks(MockRepository repo, String event) {
+        List<MockHook> result = new ArrayList<>();
+        for (MockHook hook : repo.getHooks()) {
+            if (hook.accepts(event)) {
+                result.add(hook);
+            }
+        }
+        if (repo.owner() instanceof MockOrganization org) {
+            for (MockHook hook : org.getHooks()) {
+                if (hook.accepts(event)) {
+                    result.add(hook);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void enqueue(List<MockHook> hooks, String event, String action, MockGitHub.PayloadWriter writer) {
+        byte[] body;
+        try {
+            body = github.serialize(writer);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not serialize " + event + " event", e);
+        }
+        synchronized (this) {
+            if (closed) {
+                // nobody is listening any more
+                return;
+            }
+            start();
+            for (MockHook hook : hooks) {
+                pending.incrementAndGet();
+                queue.add(new Delivery(UUID.randomUUID().toString(), hook, event, action, body));
+            }
+        }
+    }
+
+    private synchronized void start() {
+        if (dispatcher != null) {
+            return;
+        }
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+        dispatcher = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "MockGitHub webhook dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Semaphore permits = new Semaphore(concurrency);
+        int size = batchSize;
+        dispatcher.execute(() -> {
+            Queue<Delivery> batch = new ArrayDeque<>(size);
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, size - 1);
+                    while (!batch.isEmpty()) {
+                        permits.acquire();
+                        Delivery delivery = batch.remove();
+                        send(delivery).whenComplete((response, error) -> {
+                            permits.release();
+                            complete(delivery, response == null ? 0 : response.statusCode(), error);
+                        });
+                    }
+                }
+            } catch (InterruptedException e) {
+                // closed, the deliveries of the batch that were not sent fail like the queued ones
+                batch.forEach(MockWebhooks.this::cancel);
+            }
+        });
+    }
+
+    private CompletableFuture<HttpResponse<Void>> send(Delivery delivery) {
+        delivery.started = System.nanoTime();
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(delivery.hook.getUrl()))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .header("User-Agent", "GitHub-Hookshot/mock")
+                .header("X-GitHub-Event", delivery.event)
+                .header("X-GitHub-Delivery", delivery.id)
+                .header("X-GitHub-Hook-ID", Long.toString(delivery.hook.getId()))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(delivery.body));
+        String secret = delivery.hook.getSecret();
+        if (secret != null) {
+            request.header("X-Hub-Signature", "sha1=" + hmac("HmacSHA1", secret, delivery.body));
+            request.header("X-Hub-Signature-256", "sha256=" + hmac("HmacSHA256", secret, delivery.body));
+        }
+        try {
+            return client.sendAsync(request.build(), HttpResponse.BodyHandlers.discarding());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Computes a webhook signature.
+     *
+     * @param algorithm the {@link Mac} algorithm.
+     * @param secret    the secret of the hook.
+     * @param body      the body of the delivery.
+     * @return the hex encoded signature.
+     */
+    static String hmac(String algorithm, String secret, byte[] body) {
+        try {
+            Mac mac = Mac.getInstance(algorithm);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), algorithm));
+            return HexFormat.of().formatHex(mac.doFinal(body));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(algorithm + " is a mandatory JCA algorithm", e);
+        }
+    }
+
+    private void cancel(Delivery delivery) {
+        complete(delivery, 0, new IOException("MockGitHub closed before the delivery was sent"));
+    }
+
+    private void complete(Delivery delivery, int status, Throwable error) {
+        delivery.nanos = delivery.started == 0 ? 0 : System.nanoTime() - delivery.started;
+        delivery.status = status;
+        delivery.error = error == null ? null : error.toString();
+        (error == null && status >= 200 && status < 300 ? delivered : failed).incrementAndGet();
+        log.add(delivery);
+        synchronized (pending) {
+            if (pending.decrementAndGet() == 0) {
+                pending.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Stops the dispatcher. The queued deliveries fail without being sent, the deliveries in flight complete, and the
+     * events emitted from now on are dropped.
+     */
+    synchronized void close() {
+        closed = true;
+        if (dispatcher != null) {
+            dispatcher.shutdownNow();
+            dispatcher = null;
+        }
+        for (Delivery delivery; (delivery = queue.poll()) != null; ) {
+            cancel(delivery);
+        }
+    }
+
+    /**
+     * A delivery of an event to a hook.
+     */
+    public static final class Delivery {
+        private final String id;
+        private final MockHook hook;
+        private final String event;
+        private final String action;
+        private final byte[] body;
+        private volatile long started;
+        private volatile long nanos;
+        private volatile int status;
+        private volatile String error;
+
+        Delivery(String id, MockHook hook, String event, String action, byte[] body) {
+            this.id = id;
+            this.hook = hook;
+            this.event = event;
+            this.action = action;
+            this.body = body;
+        }
+
+        /**
+         * Returns the {@code X-GitHub-Delivery} header of this delivery.
+         *
+         * @return the delivery id.
+         */
+        public String getId() {
+            return id;
+        }
+
+        public MockHook getHook() {
+            return hook;
+        }
+
+        public String getEvent() {
+            return event;
+        }
+
+        /**
+         * Returns the action of the event.
+         *
+         * @return the action or {@code null} if the event has no action, like {@code push}.
+         */
+        public String getAction() {
+            return action;
+        }
+
+        public byte[] getBody() {
+            return body.clone();
+        }
+
+        /**
+         * Returns the status the receiver answered with.
+         *
+         * @return the status or {@code 0} if the delivery failed without a response.
+         */
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * Returns how long the receiver took to answer.
+         *
+         * @return the duration in nanoseconds.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Returns why the delivery failed without a response.
+         *
+         * @return the error or {@code null}.
+         */
+        public String getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package jenkins.plugins.github.api.mock;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams a snapshot into a {@link MockGitHub}. A snapshot is either a JSON array of records or one record per line
+ * (newline delimited JSON). Each record is a flat object in the shape of the GitHub REST API with a {@code type} of
+ * {@code User}, {@code Organization} or {@code Repository}, for example:
+ * <pre>
+ * {"type":"User","id":583231,"login":"octocat","created_at":"2011-01-25T18:44:36Z","following":["github"]}
+ * {"type":"Organization","id":9919,"login":"github","description":"How people build software."}
+ * {"type":"Repository","id":1296269,"owner":"octocat","name":"Hello-World","private":false,"topics":["demo"]}
+ * </pre>
+ * Owners must appear before their repositories. Timestamps are either ISO-8601 instants or epoch milliseconds and
+ * unknown fields are skipped, so that API responses can be loaded as they are. Only one record is held in memory at a
+ * time.
+ */
+final class SnapshotLoader {
+    private final MockGitHub github;
+    private final Map<String, String> fields = new HashMap<>();
+    private final List<String> topics = new ArrayList<>();
+    private final List<String> following = new ArrayList<>();
+    private boolean hasTopics;
+    private boolean hasFollowing;
+
+    SnapshotLoader(MockGitHub github) {
+        this.github = github;
+    }
+
+    /**
+     * Loads every record of the snapshot.
+     *
+     * @param p the parser positioned before the first token.
+     * @throws IOException if the snapshot could not be read or is malformed.
+     */
+    void load(JsonParser p) throws IOException {
+        JsonToken token = p.nextToken();
+        boolean array = token == JsonToken.START_ARRAY;
+        if (array) {
+            token = p.nextToken();
+        }
+        while (token != null && !(array && token == JsonToken.END_ARRAY)) {
+            if (token != JsonToken.START_OBJECT) {
+                throw new JsonParseException(p, "Expected a record but found " + token);
+            }
+            read(p);
+            apply(p);
+            token = p.nextToken();
+        }
+    }
+
+    private void read(JsonParser p) throws IOException {
+        fields.clear();
+        topics.clear();
+        following.clear();
+        hasTopics = false;
+        hasFollowing = false;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            JsonToken value = p.nextToken();
+            if ("topics".equals(name) && value == JsonToken.START_ARRAY) {
+                hasTopics = true;
+                readStrings(p, topics);
+            } else if ("following".equals(name) && value == JsonToken.START_ARRAY) {
+                hasFollowing = true;
+                readStrings(p, following);
+            } else if ("owner".equals(name) && value == JsonToken.START_OBJECT) {
+                // the owner as embedded in API responses
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String ownerField = p.currentName();
+                    if (p.nextToken().isScalarValue() && "login".equals(ownerField)) {
+                        fields.put("owner", p.getText());
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            } else if (value == JsonToken.VALUE_NULL) {
+                fields.remove(name);
+            } else if (value.isScalarValue()) {
+                fields.put(name, p.getText());
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    private static void readStrings(JsonParser p, List<String> values) throws IOException {
+        JsonToken token;
+        while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+            if (token.isScalarValue()) {
+                values.add(p.getText());
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    private void apply(JsonParser p) throws IOException {
+        String type = fields.get("type");
+        long id = number(p, "id");
+        long created = timestamp(p, "created_at", timestamp(p, "updated_at", System.currentTimeMillis()));
+        long updated = timestamp(p, "updated_at", created);
+        if ("User".equals(type)) {
+            MockUser user = new MockUser(github, id, required(p, "login"), created);
+            owner(user);
+            user.withSiteAdmin(Boolean.parseBoolean(fields.get("site_admin")))
+                    .withCompany(fields.get("company"))
+                    .withHireable(Boolean.parseBoolean(fields.get("hireable")))
+                    .withBio(fields.get("bio"));
+            github.restore(user);
+            if (hasFollowing) {
+                user.restoreFollowing(new LinkedHashSet<>(following), false);
+            }
+            user.restoreUpdated(updated);
+        } else if ("Organization".equals(type)) {
+            MockOrganization org = new MockOrganization(github, id, required(p, "login"), created);
+            owner(org);
+            org.withDescription(fields.get("description"));
+            github.restore(org);
+            if (hasFollowing) {
+                org.restoreFollowing(new LinkedHashSet<>(following), false);
+            }
+            org.restoreUpdated(updated);
+        } else if ("Repository".equals(type)) {
+            String login = required(p, "owner");
+            MockOwner<?> owner = github.owner(login);
+            if (owner == null) {
+                throw new JsonParseException(p, "Unknown owner " + login + " of repository " + id);
+            }
+            MockRepository repo = new MockRepository(github, id, owner, required(p, "name"), created);
+            repo.withDescription(fields.get("description"))
+                    .withPrivate(Boolean.parseBoolean(fields.get("private")))
+                    .withFork(Boolean.parseBoolean(fields.get("fork")))
+                    .withHomepage(fields.get("homepage"))
+                    .withLanguage(fields.get("language"));
+            if (hasTopics) {
+                repo.withTopics(new LinkedHashSet<>(topics));
+            }
+            repo.restoreUpdated(updated);
+            owner.attach(repo);
+        } else {
+            throw new JsonParseException(p, "Unknown record type " + type);
+        }
+    }
+
+    private void owner(MockOwner<?> owner) {
+        owner.withName(fields.get("name"));
+        owner.withAvatarUrl(fields.get("avatar_url"));
+        owner.withBlog(fields.get("blog"));
+        owner.withLocation(fields.get("location"));
+        owner.withEmail(fields.get("email"));
+    }
+
+    private String required(JsonParser p, String name) throws JsonParseException {
+        String value = fields.get(name);
+        if (value == null) {
+            throw new JsonParseException(p, "Record " + fields.get("id") + " has no " + name);
+        }
+        return value;
+    }
+
+    private long number(JsonParser p, String name) throws JsonParseException {
+        String value = required(p, name);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new JsonParseException(p, "Record has a malformed " + name + ": " + value, e);
+        }
+    }
+
+    private long timestamp(JsonParser p, String name, long defaultValue) throws JsonParseException {
+        String value = fields.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Character.isDigit(value.charAt(0)) && value.indexOf('-') < 0
+                    ? Long.parseLong(value)
+                    : Instant.parse(value).toEpochMilli();
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new JsonParseException(
+                    p, "Record " + fields.get("id") + " has a malformed " + name + ": " + value, e);
+        }
+    }
+}